@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ExplodedExporter;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
+/**
+ * Creates the archives the benchmarks operate on.
+ *
+ * @version $Revision: $
+ */
+final class Archives {
+
+    static final String NAME = "benchmark.war";
+
+    private static final int ENTRY_SIZE = 4096;
+
+    private static final int ENTRIES_PER_LIBRARY = 100;
+
+    private Archives() {
+    }
+
+    /**
+     * A web archive of the given number of entries, a tenth of them packaged in libraries under WEB-INF/lib.
+     */
+    static WebArchive war(int entries) {
+        Random random = new Random(entries);
+        WebArchive war = ShrinkWrap.create(WebArchive.class, NAME);
+        int libraryEntries = entries / 10;
+        for (int i = 0; i < entries - libraryEntries; i++) {
+            war.addAsWebResource(new ByteArrayAsset(content(random)), "resources/" + i + ".txt");
+        }
+        for (int library = 0; library * ENTRIES_PER_LIBRARY < libraryEntries; library++) {
+            JavaArchive jar = ShrinkWrap.create(JavaArchive.class, "library-" + library + ".jar");
+            for (int i = 0; i < Math.min(ENTRIES_PER_LIBRARY, libraryEntries - library * ENTRIES_PER_LIBRARY); i++) {
+                jar.addAsResource(new ByteArrayAsset(content(random)), "library/" + library + "/" + i + ".txt");
+            }
+            war.addAsLibrary(jar);
+        }
+        return war;
+    }
+
+    /**
+     * A jar of the given number of class files, for class path benchmarks.
+     */
+    static File jar(File directory, String name, int entries) {
+        Random random = new Random(name.hashCode());
+        JavaArchive jar = ShrinkWrap.create(JavaArchive.class, name);
+        for (int i = 0; i < entries; i++) {
+            jar.add(new ByteArrayAsset(content(random)), "org/example/" + name.replace('.', '_') + "/Type" + i + ".class");
+        }
+        File file = new File(directory, name);
+        jar.as(ZipExporter.class).exportTo(file, true);
+        return file;
+    }
+
+    /**
+     * A jar of a META-INF/services file for the service, listing a provider.
+     */
+    static File serviceJar(File directory, String name, String service) {
+        JavaArchive jar = ShrinkWrap.create(JavaArchive.class, name);
+        jar.addAsManifestResource(new StringAsset("org.example." + name.replace('.', '_') + ".Provider\n"), "services/"
+                + service);
+        File file = new File(directory, name);
+        jar.as(ZipExporter.class).exportTo(file, true);
+        return file;
+    }
+
+    /**
+     * Export the archive both packaged and exploded into the directory.
+     */
+    static void export(WebArchive war, File directory) {
+        war.as(ZipExporter.class).exportTo(new File(directory, NAME), true);
+        war.as(ExplodedExporter.class).exportExploded(directory, "exploded");
+    }
+
+    static File temporaryDirectory() throws IOException {
+        return Files.createTempDirectory("arquillian-benchmark").toFile();
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static byte[] content(Random random) {
+        // half random, half repeated, so the entries compress like typical classes and resources
+        byte[] content = new byte[ENTRY_SIZE];
+        for (int i = 0; i < content.length / 2; i++) {
+            content[i] = (byte) random.nextInt();
+        }
+        return content;
+    }
+}
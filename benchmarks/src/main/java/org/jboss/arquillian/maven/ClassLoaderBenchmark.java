@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link BaseCommand#getClassLoader()} of projects with large test class paths.
+ *
+ * Every goal execution gets its class loader from the {@link ClassLoaderCache}, so the cost per goal is computing the
+ * cache key; a cold build also creates the class loader.
+ *
+ * @version $Revision: $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassLoaderBenchmark {
+
+    @Param({ "10", "100", "500" })
+    private int jars;
+
+    private File directory;
+
+    private List<String> classPath;
+
+    private Deploy mojo;
+
+    @Setup(Level.Trial)
+    public void createClassPath() throws Exception {
+        directory = Archives.temporaryDirectory();
+        classPath = new ArrayList<String>();
+        for (int i = 0; i < jars; i++) {
+            classPath.add(Archives.jar(directory, "dependency-" + i + ".jar", 50).getAbsolutePath());
+        }
+        File classes = new File(directory, "classes");
+        classes.mkdirs();
+        classPath.add(0, classes.getAbsolutePath());
+
+        mojo = Mojos.create(Deploy.class);
+        Mojos.set(mojo, "project", new ClassPathProject(classPath));
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        Archives.delete(directory);
+    }
+
+    @Benchmark
+    public ClassLoader getClassLoader() throws Exception {
+        // a new plugin context per execution, as for every goal of a new build
+        mojo.setPluginContext(new HashMap<Object, Object>());
+        return mojo.getClassLoader();
+    }
+
+    @Benchmark
+    public String classLoaderCacheKey() {
+        return ClassLoaderCache.key(classPath, ClassLoaderBenchmark.class.getClassLoader());
+    }
+
+    private static final class ClassPathProject extends MavenProject {
+
+        private final List<String> classPath;
+
+        ClassPathProject(List<String> classPath) {
+            this.classPath = classPath;
+        }
+
+        @Override
+        public List<String> getTestClasspathElements() {
+            return classPath;
+        }
+    }
+}
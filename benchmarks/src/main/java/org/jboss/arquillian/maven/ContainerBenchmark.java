@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.ContainerRegistry;
+import org.jboss.arquillian.container.spi.client.container.DeploymentException;
+import org.jboss.arquillian.container.spi.client.container.LifecycleException;
+import org.jboss.arquillian.container.spi.client.deployment.Deployment;
+import org.jboss.arquillian.container.spi.client.deployment.TargetDescription;
+import org.jboss.arquillian.core.spi.Manager;
+import org.jboss.arquillian.core.spi.ManagerBuilder;
+import org.jboss.arquillian.core.spi.context.ApplicationContext;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Starting a {@link Manager} and deploying through {@link Utils} against the {@link StubContainer}, measuring the
+ * Arquillian event bus and the plugin bookkeeping without the cost of a real container.
+ *
+ * The ApplicationContext of a Manager is bound to the thread that started it, so the state is per thread.
+ *
+ * @version $Revision: $
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContainerBenchmark {
+
+    private Manager manager;
+
+    private Container container;
+
+    private WebArchive archive;
+
+    private PrintStream out;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        // Utils.deploy prints the ProtocolMetaData of every deployment
+        out = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+
+        manager = startManager();
+        container = manager.resolve(ContainerRegistry.class).getContainer(TargetDescription.DEFAULT);
+        Utils.setup(manager, container);
+        Utils.start(manager, container);
+        archive = Archives.war(10);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws LifecycleException {
+        Utils.stop(manager, container);
+        manager.shutdown();
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public void deployAndUndeploy() throws DeploymentException {
+        Deployment deployment = Utils.deployment(archive);
+        Utils.deploy(manager, container, deployment);
+        Utils.undeploy(manager, container, deployment);
+    }
+
+    @Benchmark
+    public Object startAndShutdownManager() throws Exception {
+        Manager started = startManager();
+        try {
+            return started.resolve(ContainerRegistry.class);
+        } finally {
+            started.shutdown();
+            // shutting down deactivates the ApplicationContext of the thread, reactivate the one of the trial
+            manager.getContext(ApplicationContext.class).activate();
+        }
+    }
+
+    private static Manager startManager() throws ClassNotFoundException {
+        Manager manager = ManagerBuilder.from().extension(Class.forName(BaseCommand.LOADABLE_EXTESION_LOADER_CLASS))
+                .create();
+        manager.start();
+        return manager;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link BaseCommand#createDeployment()} of archives of different sizes, imported from a file, streamed from a file or
+ * imported from an exploded directory.
+ *
+ * createDeployment imports lazily, so the archive is also exported the way a container adapter would before deploying
+ * it.
+ *
+ * @version $Revision: $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CreateDeploymentBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    private int entries;
+
+    @Param({ "zip", "streaming", "exploded" })
+    private String mode;
+
+    private File directory;
+
+    private Deploy mojo;
+
+    @Setup(Level.Trial)
+    public void export() throws Exception {
+        directory = Archives.temporaryDirectory();
+        Archives.export(Archives.war(entries), directory);
+
+        mojo = Mojos.create(Deploy.class);
+        Mojos.set(mojo, "targetDir", directory);
+        Mojos.set(mojo, "filename", Archives.NAME);
+        Mojos.set(mojo, "explodedDirectory", new File(directory, "exploded"));
+        Mojos.set(mojo, "exploded", "exploded".equals(mode));
+        Mojos.set(mojo, "streaming", "streaming".equals(mode));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetTimer() throws Exception {
+        // the timer keeps a sample per createDeployment, start every iteration with a new one
+        Mojos.set(mojo, "timer", null);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        Archives.delete(directory);
+    }
+
+    @Benchmark
+    public Archive<?> createDeployment() {
+        return mojo.createDeployment();
+    }
+
+    @Benchmark
+    public long createAndExportDeployment() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        mojo.createDeployment().as(ZipExporter.class).exportTo(out);
+        return out.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Class path lookups of the {@link IndexedClassLoader} against a plain {@link URLClassLoader}, on class paths of jars
+ * of 50 classes, a tenth of them followed by a jar of a META-INF/services file.
+ *
+ * The lookups are of resources spread over the class path, as of the classes of the container adapters, and of the
+ * services files Arquillian discovers its extensions with. Creating the indexed class loader reads the central
+ * directory of every jar, which the plain class loader does on the first lookup searching past the jar.
+ *
+ * @version $Revision: $
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexedClassLoaderBenchmark {
+
+    private static final String SERVICE = "org.jboss.arquillian.core.spi.LoadableExtension";
+
+    private static final int LOOKUPS = 100;
+
+    @Param({ "10", "100", "300" })
+    private int jars;
+
+    @Param({ "url", "indexed" })
+    private String loader;
+
+    private File directory;
+
+    private URL[] urls;
+
+    private String[] names;
+
+    private URLClassLoader classLoader;
+
+    @Setup(Level.Trial)
+    public void createClassPath() throws Exception {
+        directory = Archives.temporaryDirectory();
+        int services = (jars + 9) / 10;
+        urls = new URL[jars + services];
+        int element = 0;
+        for (int i = 0; i < jars; i++) {
+            String name = "dependency-" + i + ".jar";
+            urls[element++] = Archives.jar(directory, name, 50).toURI().toURL();
+            if (i % 10 == 0) {
+                urls[element++] = Archives.serviceJar(directory, "extension-" + i + ".jar", SERVICE).toURI().toURL();
+            }
+        }
+
+        Random random = new Random(jars);
+        names = new String[LOOKUPS];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "org/example/dependency-" + random.nextInt(jars) + "_jar/Type" + random.nextInt(50) + ".class";
+        }
+        classLoader = create();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        Archives.delete(directory);
+    }
+
+    @Benchmark
+    public void getResource(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(classLoader.getResource(name));
+        }
+    }
+
+    @Benchmark
+    public int getServices() throws Exception {
+        return Collections.list(classLoader.getResources("META-INF/services/" + SERVICE)).size();
+    }
+
+    @Benchmark
+    public URL getMissingResource() {
+        return classLoader.getResource("org/example/Missing.class");
+    }
+
+    @Benchmark
+    public int createAndGetServices() throws Exception {
+        // a new class loader as for a cold build, discovering the services searches every jar
+        URLClassLoader created = create();
+        try {
+            return Collections.list(created.getResources("META-INF/services/" + SERVICE)).size();
+        } finally {
+            created.close();
+        }
+    }
+
+    private URLClassLoader create() throws Exception {
+        return "indexed".equals(loader) ? new IndexedClassLoader(urls, null) : new URLClassLoader(urls, null);
+    }
+}
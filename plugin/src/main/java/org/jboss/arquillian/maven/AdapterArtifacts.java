@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+
+/**
+ * Selects the class path of the container adapters from the dependencies of a project: the artifacts matching a
+ * groupId:artifactId pattern, and the artifacts they depend on, transitively, per their POMs. A dependency shared with
+ * other artifacts of the project is selected even when Maven recorded its dependency trail through one of those.
+ *
+ * The Arquillian artifacts, among them the adapters and the Arquillian implementation the Manager is started with, are
+ * always selected. Libraries a container needs besides the dependencies of its adapter, e.g. the Jetty jars of the
+ * embedded Jetty container, are selected by adding patterns.
+ *
+ * @version $Revision: $
+ */
+final class AdapterArtifacts {
+
+    static final List<String> ARQUILLIAN = Arrays.asList("org.jboss.arquillian*:*", "*:*arquillian*");
+
+    /**
+     * The direct dependencies of an artifact.
+     */
+    interface Dependencies {
+
+        /**
+         * @return the groupId:artifactId of the dependencies of the artifact on its runtime class path
+         */
+        Collection<String> of(Artifact artifact) throws Exception;
+    }
+
+    private final List<Pattern> patterns = new ArrayList<Pattern>();
+
+    private final Dependencies dependencies;
+
+    /**
+     * @param patterns groupId:artifactId patterns of the artifacts to select besides the Arquillian artifacts, * matching
+     *        any characters
+     * @param dependencies the dependencies of the artifacts
+     */
+    AdapterArtifacts(Collection<String> patterns, Dependencies dependencies) {
+        this.dependencies = dependencies;
+        for (String pattern : ARQUILLIAN) {
+            this.patterns.add(compile(pattern));
+        }
+        for (String pattern : patterns) {
+            if (pattern.trim().length() > 0) {
+                this.patterns.add(compile(pattern.trim()));
+            }
+        }
+    }
+
+    /**
+     * The files of the selected artifacts added to class paths, in the order of the artifacts.
+     *
+     * @param artifacts the resolved dependencies of the project
+     * @return the class path elements
+     * @throws Exception if the dependencies of an artifact can not be read
+     */
+    List<String> classPath(Collection<Artifact> artifacts) throws Exception {
+        Map<String, Artifact> resolved = new HashMap<String, Artifact>();
+        Set<String> matching = new HashSet<String>();
+        LinkedList<Artifact> pending = new LinkedList<Artifact>();
+        for (Artifact artifact : artifacts) {
+            resolved.put(key(artifact.getGroupId(), artifact.getArtifactId()), artifact);
+            if (matches(artifact)) {
+                matching.add(key(artifact.getGroupId(), artifact.getArtifactId()));
+                pending.add(artifact);
+            }
+        }
+
+        // the transitive closure of the matching artifacts, with the versions resolved for the project
+        Set<String> selected = new HashSet<String>(matching);
+        while (!pending.isEmpty()) {
+            for (String dependency : dependencies.of(pending.removeFirst())) {
+                if (resolved.containsKey(dependency) && selected.add(dependency)) {
+                    pending.add(resolved.get(dependency));
+                }
+            }
+        }
+
+        List<String> classPath = new ArrayList<String>();
+        for (Artifact artifact : artifacts) {
+            if (artifact.getFile() == null || !artifact.getArtifactHandler().isAddedToClasspath()) {
+                continue;
+            }
+            if (selected.contains(key(artifact.getGroupId(), artifact.getArtifactId()))
+                    || dependsOnAny(artifact, matching)) {
+                classPath.add(artifact.getFile().getPath());
+            }
+        }
+        return classPath;
+    }
+
+    private boolean matches(Artifact artifact) {
+        String key = key(artifact.getGroupId(), artifact.getArtifactId());
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(key).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an artifact is a dependency of one of the artifacts, per its dependency trail: the ids of the artifacts
+     * depending on it, from the project down.
+     */
+    private static boolean dependsOnAny(Artifact artifact, Set<String> artifacts) {
+        List<String> trail = artifact.getDependencyTrail();
+        if (trail == null) {
+            return false;
+        }
+        for (String id : trail) {
+            String[] parts = id.split(":");
+            if (parts.length > 1 && artifacts.contains(key(parts[0], parts[1]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The dependencies of the artifacts, read from their POMs.
+     *
+     * @param source the source of the POMs
+     * @param localRepository the local repository
+     * @param remoteRepositories the remote repositories of the project
+     */
+    static Dependencies of(final ArtifactMetadataSource source, final ArtifactRepository localRepository,
+            final List<ArtifactRepository> remoteRepositories) {
+        return new Dependencies() {
+            @Override
+            public Collection<String> of(Artifact artifact) throws Exception {
+                List<String> keys = new ArrayList<String>();
+                for (Artifact dependency : source.retrieve(artifact, localRepository, remoteRepositories)
+                        .getArtifacts()) {
+                    String scope = dependency.getScope();
+                    if (!dependency.isOptional()
+                            && (scope == null || Artifact.SCOPE_COMPILE.equals(scope) || Artifact.SCOPE_RUNTIME
+                                    .equals(scope))) {
+                        keys.add(key(dependency.getGroupId(), dependency.getArtifactId()));
+                    }
+                }
+                return keys;
+            }
+        };
+    }
+
+    private static String key(String groupId, String artifactId) {
+        return groupId + ":" + artifactId;
+    }
+
+    private static Pattern compile(String pattern) {
+        if (pattern.indexOf(':') < 0) {
+            pattern = pattern + ":*";
+        }
+        String[] parts = pattern.split("\\*", -1);
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            regex.append(i == 0 ? "" : ".*").append(Pattern.quote(parts[i]));
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
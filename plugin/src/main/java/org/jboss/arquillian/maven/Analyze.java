@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Report the content of the deployment archive that makes it slow to deploy: its size and compression, nested
+ * archives, largest entries, oversized resources and duplicate classes.
+ *
+ * @goal analyze
+ *
+ * @version $Revision: $
+ *
+ */
+public final class Analyze extends AbstractMojo {
+
+    /**
+     * The target directory the application to be analyzed is located.
+     *
+     * @parameter expression="${echo.target}" default-value="${project.build.directory}/"
+     */
+    private File targetDir;
+
+    /**
+     * The file name of the application to be analyzed.
+     *
+     * @parameter expression="${echo.filename}" default-value="${project.build.finalName}.${project.packaging}"
+     */
+    private String filename;
+
+    /**
+     * Analyze the explodedDirectory instead of the archive file.
+     *
+     * @parameter expression="${arquillian.exploded}" default-value="false"
+     */
+    private boolean exploded;
+
+    /**
+     * The directory the exploded archive is read from.
+     *
+     * @parameter expression="${arquillian.explodedDirectory}"
+     *            default-value="${project.build.directory}/${project.build.finalName}"
+     */
+    private File explodedDirectory;
+
+    /**
+     * The file the analysis is written to, as JSON.
+     *
+     * @parameter expression="${arquillian.analysisReport}"
+     *            default-value="${project.build.directory}/arquillian-analysis.json"
+     */
+    private File analysisReport;
+
+    /**
+     * The size in bytes from which a resource, other than a class or nested archive, is reported as oversized.
+     *
+     * @parameter expression="${arquillian.oversizedResource}" default-value="1048576"
+     */
+    private long oversizedResource = 1048576;
+
+    /**
+     * The number of largest entries reported.
+     *
+     * @parameter expression="${arquillian.largestEntries}" default-value="10"
+     */
+    private int largestEntries = 10;
+
+    /**
+     * The number of duplicate classes listed in the console summary. The report lists them all.
+     *
+     * @parameter expression="${arquillian.duplicatesListed}" default-value="20"
+     */
+    private int duplicatesListed = 20;
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        File source = exploded ? explodedDirectory : new File(targetDir, filename);
+        if (!source.exists()) {
+            throw new MojoExecutionException("Archive to analyze not found: " + source.getAbsolutePath());
+        }
+
+        ArchiveAnalysis analysis;
+        try {
+            analysis = ArchiveAnalysis.of(source, oversizedResource, Math.max(0, largestEntries));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not analyze " + source, e);
+        }
+
+        getLog().info(analysis.summary());
+        for (ArchiveAnalysis.Entry entry : analysis.largestEntries()) {
+            getLog().info("  " + entry);
+        }
+        for (ArchiveAnalysis.Entry entry : analysis.oversizedResources()) {
+            getLog().warn("Oversized resource " + entry);
+        }
+        int listed = 0;
+        Map<String, List<String>> duplicates = analysis.duplicateClasses();
+        for (Map.Entry<String, List<String>> duplicate : duplicates.entrySet()) {
+            if (listed++ == duplicatesListed) {
+                getLog().warn("... and " + (duplicates.size() - duplicatesListed) + " more duplicate classes");
+                break;
+            }
+            getLog().warn("Duplicate class " + duplicate.getKey() + " in " + duplicate.getValue());
+        }
+
+        if (analysisReport != null) {
+            try {
+                analysis.write(analysisReport);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not write " + analysisReport, e);
+            }
+            getLog().info("Wrote analysis to " + analysisReport);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePath;
+import org.jboss.shrinkwrap.api.GenericArchive;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ArchiveAsset;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.importer.ZipImporter;
+
+/**
+ * Adds a Jandex annotation index, META-INF/jandex.idx, to each module of an archive, so JBoss AS 7 reads the index
+ * instead of scanning the classes of the module for annotations on deploy.
+ *
+ * The modules are the archive, or for a web archive WEB-INF/classes, and the archives nested in it, e.g. WEB-INF/lib
+ * jars or the modules of an enterprise archive, which are indexed concurrently. Modules that have an index already or
+ * no classes are left as they are. The indexes are kept in a cache directory, by hash of the classes of the module,
+ * so an unchanged module is not indexed again.
+ *
+ * Jandex is loaded from the class path of the containers, which for JBoss AS 7 containers has the Jandex version of
+ * the server.
+ *
+ * @version $Revision: $
+ */
+final class AnnotationIndex {
+
+    static final String INDEX = "META-INF/jandex.idx";
+
+    private static final String CLASSES = "/WEB-INF/classes";
+
+    private final File cacheDirectory;
+
+    private final int threads;
+
+    private final Class<?> indexerClass;
+
+    /**
+     * The version and location of Jandex, the cached indexes of another Jandex may not be readable by this one.
+     */
+    private final String indexerVersion;
+
+    private final Method index;
+
+    private final Method complete;
+
+    private final Constructor<?> writer;
+
+    private final Method write;
+
+    private AnnotationIndex(ClassLoader classLoader, File cacheDirectory, int threads) throws Exception {
+        this.cacheDirectory = cacheDirectory;
+        this.threads = threads;
+        indexerClass = classLoader.loadClass("org.jboss.jandex.Indexer");
+        CodeSource codeSource = indexerClass.getProtectionDomain().getCodeSource();
+        indexerVersion = (indexerClass.getPackage() == null ? null : indexerClass.getPackage()
+                .getImplementationVersion()) + " " + (codeSource == null ? null : codeSource.getLocation());
+        index = indexerClass.getMethod("index", InputStream.class);
+        complete = indexerClass.getMethod("complete");
+        Class<?> writerClass = classLoader.loadClass("org.jboss.jandex.IndexWriter");
+        writer = writerClass.getConstructor(OutputStream.class);
+        write = writerClass.getMethod("write", classLoader.loadClass("org.jboss.jandex.Index"));
+    }
+
+    /**
+     * The indexer of the archives deployed with the given class loader.
+     *
+     * @param classLoader the class loader of the containers
+     * @param cacheDirectory the directory the indexes are kept in
+     * @param threads the maximum number of modules of an enterprise archive indexed concurrently
+     * @return the indexer, or null if Jandex is not on the class path
+     */
+    static AnnotationIndex create(ClassLoader classLoader, File cacheDirectory, int threads) {
+        try {
+            return new AnnotationIndex(classLoader, cacheDirectory, threads);
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (Exception e) {
+            throw new IllegalStateException("Unsupported Jandex version on the class path", e);
+        }
+    }
+
+    /**
+     * Add an index to each module of the archive without one.
+     *
+     * @param archive the archive
+     * @return the number of indexes added
+     * @throws IOException if a module can not be read or indexed
+     */
+    int addTo(final Archive<?> archive) throws IOException {
+        boolean enterprise = archive.getName().endsWith(".ear");
+        int added = archive.getName().endsWith(".war") ? addTo(archive, CLASSES) : enterprise ? 0 : addTo(archive, "");
+
+        final List<ArchivePath> modules = new ArrayList<ArchivePath>();
+        for (Map.Entry<ArchivePath, Node> entry : archive.getContent().entrySet()) {
+            if (isModule(entry.getKey().get()) && entry.getValue().getAsset() != null) {
+                modules.add(entry.getKey());
+            }
+        }
+        if (modules.isEmpty()) {
+            return added;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(enterprise ? Math.max(1, threads) : 1);
+        try {
+            final Archive<?>[] indexed = new Archive<?>[modules.size()];
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < modules.size(); i++) {
+                final int module = i;
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        indexed[module] = nested(archive, modules.get(module));
+                        // nested modules of an enterprise archive module are indexed by the thread of the module
+                        return addTo(indexed[module]);
+                    }
+                }));
+            }
+            for (int i = 0; i < modules.size(); i++) {
+                int count = results.get(i).get();
+                // a nested archive asset holds the indexed module itself, imported modules are replaced
+                if (count > 0 && !(archive.get(modules.get(i)).getAsset() instanceof ArchiveAsset)) {
+                    archive.delete(modules.get(i));
+                    archive.add(new ArchiveAsset(indexed[i], ZipExporter.class), modules.get(i));
+                }
+                added += count;
+            }
+        } catch (ExecutionException e) {
+            throw (IOException) new IOException("Could not index " + archive.getName()).initCause(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted indexing " + archive.getName());
+        } finally {
+            executor.shutdownNow();
+        }
+        return added;
+    }
+
+    private static boolean isModule(String path) {
+        return path.endsWith(".jar") || path.endsWith(".war") || path.endsWith(".rar");
+    }
+
+    private static Archive<?> nested(Archive<?> archive, ArchivePath path) throws IOException {
+        Asset asset = archive.get(path).getAsset();
+        if (asset instanceof ArchiveAsset) {
+            return ((ArchiveAsset) asset).getArchive();
+        }
+        String name = path.get().substring(path.get().lastIndexOf('/') + 1);
+        InputStream in = asset.openStream();
+        try {
+            return ShrinkWrap.create(ZipImporter.class, name).importFrom(in).as(GenericArchive.class);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Add the index of the classes under root, the path of a module root without trailing /, if it has none.
+     *
+     * @return 1 if an index was added, otherwise 0
+     */
+    private int addTo(Archive<?> archive, String root) throws IOException {
+        if (archive.contains(root + "/" + INDEX)) {
+            return 0;
+        }
+        // sorted so the hash does not depend on the order of the entries
+        Map<String, Asset> classes = new TreeMap<String, Asset>();
+        for (Map.Entry<ArchivePath, Node> entry : archive.getContent().entrySet()) {
+            String path = entry.getKey().get();
+            if (path.startsWith(root + "/") && path.endsWith(".class") && entry.getValue().getAsset() != null
+                    && (root.length() > 0 || !path.startsWith(CLASSES + "/"))) {
+                classes.put(path, entry.getValue().getAsset());
+            }
+        }
+        if (classes.isEmpty()) {
+            return 0;
+        }
+
+        byte[] buffer = new byte[8192];
+        MessageDigest digest = Fingerprint.sha1();
+        Fingerprint.update(digest, indexerVersion);
+        for (Map.Entry<String, Asset> entry : classes.entrySet()) {
+            Fingerprint.update(digest, entry.getKey());
+            InputStream in = entry.getValue().openStream();
+            try {
+                Fingerprint.update(digest, in, buffer);
+            } finally {
+                in.close();
+            }
+        }
+        File cached = new File(cacheDirectory, Fingerprint.toHex(digest.digest()) + ".idx");
+
+        byte[] index = cached.isFile() ? read(cached) : null;
+        if (index == null) {
+            index = index(classes);
+            store(cached, index);
+        }
+        archive.add(new ByteArrayAsset(index), root + "/" + INDEX);
+        return 1;
+    }
+
+    private byte[] index(Map<String, Asset> classes) throws IOException {
+        try {
+            Object indexer = indexerClass.getConstructor().newInstance();
+            for (Map.Entry<String, Asset> entry : classes.entrySet()) {
+                InputStream in = entry.getValue().openStream();
+                try {
+                    index.invoke(indexer, in);
+                } catch (InvocationTargetException e) {
+                    throw (IOException) new IOException("Could not index " + entry.getKey()).initCause(e.getCause());
+                } finally {
+                    in.close();
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            write.invoke(writer.newInstance(out), complete.invoke(indexer));
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw (IOException) new IOException("Could not write index").initCause(e);
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void store(File file, byte[] index) throws IOException {
+        file.getParentFile().mkdirs();
+        // written aside and renamed, so concurrent builds never read a partial index
+        File temp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(index);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+}
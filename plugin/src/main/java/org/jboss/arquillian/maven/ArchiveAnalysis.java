@@ -0,0 +1,402 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * The content of a deployment archive that makes it slow to deploy: its size and compression, the nested archives
+ * the server unpacks, the largest entries, oversized resources and the classes found more than once on the class path
+ * of the archive, i.e. in WEB-INF/classes and the WEB-INF/lib jars of a web archive or the lib jars of an enterprise
+ * archive.
+ *
+ * The archive is streamed once, nested library jars included, so it is never held in memory.
+ *
+ * @version $Revision: $
+ */
+final class ArchiveAnalysis {
+
+    private static final String CLASSES = "WEB-INF/classes/";
+
+    private static final Comparator<Entry> BY_SIZE = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return a.size < b.size ? 1 : a.size > b.size ? -1 : a.path.compareTo(b.path);
+        }
+    };
+
+    private final String name;
+
+    private final long oversized;
+
+    private final int largest;
+
+    private int entries;
+
+    private long size;
+
+    private long compressedSize;
+
+    private int nestedArchives;
+
+    private final List<Entry> largestEntries = new ArrayList<Entry>();
+
+    private final List<Entry> oversizedResources = new ArrayList<Entry>();
+
+    private final Map<String, List<String>> classes = new TreeMap<String, List<String>>();
+
+    private ArchiveAnalysis(String name, long oversized, int largest) {
+        this.name = name;
+        this.oversized = oversized;
+        this.largest = largest;
+    }
+
+    /**
+     * Analyze an archive file, or an exploded archive directory.
+     *
+     * @param source the archive file or directory
+     * @param oversized the size in bytes from which a resource is oversized
+     * @param largest the number of largest entries to report
+     * @return the analysis
+     * @throws IOException if the archive can not be read
+     */
+    static ArchiveAnalysis of(File source, long oversized, int largest) throws IOException {
+        ArchiveAnalysis analysis = new ArchiveAnalysis(source.getName(), oversized, largest);
+        if (source.isDirectory()) {
+            analysis.walk(source, "");
+        } else {
+            InputStream in = new BufferedInputStream(new FileInputStream(source));
+            try {
+                analysis.read(new ZipInputStream(in));
+            } finally {
+                in.close();
+            }
+        }
+        return analysis;
+    }
+
+    private void walk(File directory, String prefix) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String path = prefix + file.getName();
+            if (file.isDirectory()) {
+                walk(file, path + "/");
+                continue;
+            }
+            CountingInputStream in = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                entry(path, in);
+            } finally {
+                in.close();
+            }
+            // an exploded archive is not compressed
+            add(new Entry(path, file.length(), file.length()));
+        }
+    }
+
+    private void read(ZipInputStream zip) throws IOException {
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            CountingInputStream in = new CountingInputStream(zip);
+            entry(entry.getName(), in);
+            // the sizes of entries written with a data descriptor are known once the entry is read
+            long read = in.count;
+            long compressed = entry.getCompressedSize();
+            add(new Entry(entry.getName(), read, compressed < 0 ? read : compressed));
+        }
+    }
+
+    /**
+     * Read an entry whole, collecting the classes of the class path of the archive.
+     */
+    private void entry(String path, CountingInputStream in) throws IOException {
+        if (path.startsWith(CLASSES) && path.endsWith(".class")) {
+            addClass(path.substring(CLASSES.length()), "WEB-INF/classes");
+        } else if (isLibrary(path)) {
+            ZipInputStream library = new ZipInputStream(in);
+            ZipEntry entry;
+            while ((entry = library.getNextEntry()) != null) {
+                if (entry.getName().endsWith(".class")) {
+                    addClass(entry.getName(), path);
+                }
+            }
+            // the library stream is not closed, that would close the archive stream
+        }
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            // read to the end of the entry, to count its size
+        }
+    }
+
+    private static boolean isLibrary(String path) {
+        String directory = path.startsWith("WEB-INF/lib/") ? "WEB-INF/lib/" : path.startsWith("lib/") ? "lib/" : null;
+        return directory != null && path.endsWith(".jar") && path.indexOf('/', directory.length()) < 0;
+    }
+
+    private void addClass(String path, String location) {
+        if (path.equals("module-info.class") || path.startsWith("META-INF/")) {
+            return;
+        }
+        String className = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+        List<String> locations = classes.get(className);
+        if (locations == null) {
+            locations = new ArrayList<String>(1);
+            classes.put(className, locations);
+        }
+        if (!locations.contains(location)) {
+            locations.add(location);
+        }
+    }
+
+    private void add(Entry entry) {
+        entries++;
+        size += entry.size;
+        compressedSize += entry.compressedSize;
+        if (isArchive(entry.path)) {
+            nestedArchives++;
+        } else if (!entry.path.endsWith(".class") && entry.size >= oversized) {
+            oversizedResources.add(entry);
+        }
+        largestEntries.add(entry);
+        Collections.sort(largestEntries, BY_SIZE);
+        if (largestEntries.size() > largest) {
+            largestEntries.remove(largestEntries.size() - 1);
+        }
+    }
+
+    private static boolean isArchive(String path) {
+        return path.endsWith(".jar") || path.endsWith(".war") || path.endsWith(".rar") || path.endsWith(".ear")
+                || path.endsWith(".zip");
+    }
+
+    int entries() {
+        return entries;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long compressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * The compressed size of the entries relative to their size, 1 when they are not compressed.
+     */
+    double compressionRatio() {
+        return size == 0 ? 1 : (double) compressedSize / size;
+    }
+
+    int nestedArchives() {
+        return nestedArchives;
+    }
+
+    /**
+     * The largest entries, largest first.
+     */
+    List<Entry> largestEntries() {
+        return Collections.unmodifiableList(largestEntries);
+    }
+
+    /**
+     * The resources, other than classes and nested archives, of at least the oversized size, largest first.
+     */
+    List<Entry> oversizedResources() {
+        Collections.sort(oversizedResources, BY_SIZE);
+        return Collections.unmodifiableList(oversizedResources);
+    }
+
+    /**
+     * The classes found in more than one location of the class path of the archive, by name, with their sorted
+     * locations.
+     */
+    Map<String, List<String>> duplicateClasses() {
+        Map<String, List<String>> duplicates = new TreeMap<String, List<String>>();
+        for (Map.Entry<String, List<String>> entry : classes.entrySet()) {
+            if (entry.getValue().size() > 1) {
+                List<String> locations = new ArrayList<String>(entry.getValue());
+                Collections.sort(locations);
+                duplicates.put(entry.getKey(), locations);
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * A one line summary of the analysis.
+     */
+    String summary() {
+        return String.format(Locale.ENGLISH,
+                "%s: %d entries, %.1f KB, %.1f KB compressed (ratio %.2f), %d nested archives, "
+                        + "%d duplicate classes, %d oversized resources", name, entries, size / 1024.0,
+                compressedSize / 1024.0, compressionRatio(), nestedArchives, duplicateClasses().size(),
+                oversizedResources.size());
+    }
+
+    /**
+     * Write the analysis as JSON.
+     *
+     * @param file the file to write
+     */
+    void write(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        List<String> duplicates = new ArrayList<String>();
+        for (Map.Entry<String, List<String>> entry : duplicateClasses().entrySet()) {
+            List<String> locations = new ArrayList<String>();
+            for (String location : entry.getValue()) {
+                locations.add(Json.quote(location));
+            }
+            duplicates.add("{ \"class\" : " + Json.quote(entry.getKey()) + ", \"locations\" : [ "
+                    + join(locations, ", ") + " ] }");
+        }
+
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("{\n");
+            out.write("  \"archive\" : " + Json.quote(name) + ",\n");
+            out.write("  \"entries\" : " + entries + ",\n");
+            out.write("  \"size\" : " + size + ",\n");
+            out.write("  \"compressedSize\" : " + compressedSize + ",\n");
+            out.write("  \"compressionRatio\" : " + Json.number(compressionRatio()) + ",\n");
+            out.write("  \"nestedArchives\" : " + nestedArchives + ",\n");
+            out.write("  \"largestEntries\" : " + json(largestEntries) + ",\n");
+            out.write("  \"oversizedResources\" : " + json(oversizedResources()) + ",\n");
+            out.write("  \"duplicateClasses\" : " + array(duplicates) + "\n");
+            out.write("}\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String json(List<Entry> entries) {
+        List<String> values = new ArrayList<String>();
+        for (Entry entry : entries) {
+            values.add("{ \"path\" : " + Json.quote(entry.path) + ", \"size\" : " + entry.size
+                    + ", \"compressedSize\" : " + entry.compressedSize + " }");
+        }
+        return array(values);
+    }
+
+    private static String array(List<String> values) {
+        return values.isEmpty() ? "[ ]" : "[\n    " + join(values, ",\n    ") + "\n  ]";
+    }
+
+    private static String join(List<String> values, String separator) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) {
+                joined.append(separator);
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * An entry of the archive, with its size and compressed size in bytes.
+     */
+    static final class Entry {
+
+        final String path;
+
+        final long size;
+
+        final long compressedSize;
+
+        Entry(String path, long size, long compressedSize) {
+            this.path = path;
+            this.size = size;
+            this.compressedSize = compressedSize;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH, "%s (%.1f KB, %.1f KB compressed)", path, size / 1024.0,
+                    compressedSize / 1024.0);
+        }
+    }
+
+    /**
+     * Counts the bytes read of an entry.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
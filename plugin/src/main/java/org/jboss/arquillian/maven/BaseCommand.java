@@ -18,11 +18,29 @@
 package org.jboss.arquillian.maven;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipException;
 
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.metadata.ArtifactMetadataSource;
+import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -31,12 +49,15 @@ import org.jboss.arquillian.container.spi.Container;
 import org.jboss.arquillian.container.spi.ContainerRegistry;
 import org.jboss.arquillian.container.spi.client.container.DeploymentException;
 import org.jboss.arquillian.container.spi.client.container.LifecycleException;
-import org.jboss.arquillian.container.spi.client.deployment.TargetDescription;
+import org.jboss.arquillian.container.spi.client.deployment.Deployment;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
 import org.jboss.arquillian.core.spi.Manager;
 import org.jboss.arquillian.core.spi.ManagerBuilder;
+import org.jboss.arquillian.core.spi.context.ApplicationContext;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.GenericArchive;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.importer.ExplodedImporter;
 import org.jboss.shrinkwrap.api.importer.ZipImporter;
 
 /**
@@ -49,12 +70,10 @@ import org.jboss.shrinkwrap.api.importer.ZipImporter;
  * @requiresDependencyResolution test
  */
 abstract class BaseCommand extends AbstractMojo {
-    private static final String ARQUILLIAN_XML_SYS_PROP = "arquillian.xml";
-
-    private static final String LOADABLE_EXTESION_LOADER_CLASS = "org.jboss.arquillian.core.impl.loadable.LoadableExtensionLoader";
+    static final String LOADABLE_EXTESION_LOADER_CLASS = "org.jboss.arquillian.core.impl.loadable.LoadableExtensionLoader";
 
     public enum ClassLoadingStrategy {
-        COMPILE, TEST, PLUGIN
+        COMPILE, TEST, PLUGIN, ADAPTER
     }
 
     /**
@@ -65,12 +84,35 @@ abstract class BaseCommand extends AbstractMojo {
     private MavenProject project;
 
     /**
-     * The ClassLoading strategy to use: TEST, COMPILE or PLUGIN.
+     * The ClassLoading strategy to use: TEST, COMPILE, PLUGIN or ADAPTER.
      *
      * @parameter property="classloading"
      */
     private ClassLoadingStrategy classLoadingStrategy = ClassLoadingStrategy.TEST;
 
+    /**
+     * The groupId:artifactId patterns, * matching any characters, of the dependencies the ADAPTER classloading loads
+     * besides the Arquillian artifacts, with their own dependencies, e.g. org.eclipse.jetty:*.
+     *
+     * @parameter expression="${arquillian.adapterArtifacts}"
+     */
+    private String[] adapterArtifacts;
+
+    /**
+     * Reads the dependencies of the adapter artifacts from their POMs for the ADAPTER classloading.
+     *
+     * @component role="org.apache.maven.artifact.metadata.ArtifactMetadataSource"
+     */
+    private ArtifactMetadataSource artifactMetadataSource;
+
+    /**
+     * The local repository.
+     *
+     * @parameter expression="${localRepository}"
+     * @readonly
+     */
+    private ArtifactRepository localRepository;
+
     /**
      * @param classLoadingStrategy the classLoadingStrategy to set
      */
@@ -92,6 +134,21 @@ abstract class BaseCommand extends AbstractMojo {
      */
     private String filename;
 
+    /**
+     * Deploy the exploded application directory instead of the packaged archive, so no packaging is needed.
+     *
+     * @parameter expression="${arquillian.exploded}" default-value="false"
+     */
+    private boolean exploded;
+
+    /**
+     * The exploded application directory deployed when exploded is set.
+     *
+     * @parameter expression="${arquillian.explodedDirectory}"
+     *            default-value="${project.build.directory}/${project.build.finalName}"
+     */
+    private File explodedDirectory;
+
     /**
      * Location of the arquillian configuration file. It can be set either as location on the file system (Ex:
      * ${basedir}/test/arquillian4test.xml) or as a resource in the classpath (Ex: /arquillian4test.xml).
@@ -100,6 +157,212 @@ abstract class BaseCommand extends AbstractMojo {
      */
     private String arquillianXml;
 
+    /**
+     * Pass the archive file to the container as it is on disk instead of importing it in memory first. Container
+     * adapters that need the archive content import it on demand.
+     *
+     * @parameter expression="${arquillian.streaming}" default-value="false"
+     */
+    private boolean streaming;
+
+    /**
+     * The qualifiers of the containers to operate on, as defined in arquillian.xml. When neither containers nor group
+     * are set the default container is used.
+     *
+     * @parameter expression="${arquillian.containers}"
+     */
+    private String[] containers;
+
+    /**
+     * The name of a group defined in arquillian.xml. Every container of the group is operated on.
+     *
+     * @parameter expression="${arquillian.group}"
+     */
+    private String group;
+
+    /**
+     * The file a running daemon, started with the start goal and daemon set, is found through.
+     *
+     * @parameter expression="${arquillian.daemonFile}" default-value="${basedir}/.arquillian-daemon"
+     */
+    private File daemonFile;
+
+    /**
+     * The maximum number of containers to operate on concurrently.
+     *
+     * @parameter expression="${arquillian.threads}" default-value="1"
+     */
+    private int threads = 1;
+
+    /**
+     * Skip deploying an archive whose content is unchanged since it was last deployed to the container.
+     *
+     * @parameter expression="${arquillian.skipUnchanged}" default-value="false"
+     */
+    private boolean skipUnchanged;
+
+    /**
+     * The file the fingerprints of the deployed archives are kept in.
+     *
+     * @parameter expression="${arquillian.fingerprintFile}"
+     *            default-value="${project.build.directory}/arquillian-fingerprints.properties"
+     */
+    private File fingerprintFile;
+
+    private String fingerprint;
+
+    /**
+     * Discover the Arquillian extensions of the class path once and keep them in the extensionIndex, so later
+     * executions with the same class path start the Manager without scanning the class path for them.
+     *
+     * @parameter expression="${arquillian.indexExtensions}" default-value="false"
+     */
+    private boolean indexExtensions;
+
+    /**
+     * The file the index of the Arquillian extensions of the class path is kept in.
+     *
+     * @parameter expression="${arquillian.extensionIndex}"
+     *            default-value="${project.build.directory}/arquillian-extensions.properties"
+     */
+    private File extensionIndex;
+
+    /**
+     * Add a Jandex annotation index, META-INF/jandex.idx, to each module of the deployed archives without one, so
+     * JBoss AS 7 does not scan the classes of the modules for annotations on deploy. Jandex is loaded from the class
+     * path of the containers.
+     *
+     * @parameter expression="${arquillian.jandex}" default-value="false"
+     */
+    private boolean jandex;
+
+    /**
+     * The directory the Jandex indexes are kept in, by hash of the indexed classes.
+     *
+     * @parameter expression="${arquillian.jandexCache}" default-value="${project.build.directory}/arquillian-jandex"
+     */
+    private File jandexCache;
+
+    private AnnotationIndex annotationIndex;
+
+    /**
+     * Deploy the archive rewritten with the repackageArchives and repackageEntries compression, e.g. with the nested
+     * archives stored uncompressed so the server does not inflate them on deploy. The repackaged file is deployed as
+     * it is on disk.
+     *
+     * @parameter expression="${arquillian.repackage}" default-value="false"
+     */
+    private boolean repackage;
+
+    private boolean daemonWarned;
+
+    /**
+     * The compression of the nested archives of a repackaged archive: KEEP, STORED, DEFAULT or a level from 0 to 9.
+     *
+     * @parameter expression="${arquillian.repackageArchives}" default-value="STORED"
+     */
+    private String repackageArchives = "STORED";
+
+    /**
+     * The compression of the other entries of a repackaged archive: KEEP, STORED, DEFAULT or a level from 0 to 9.
+     *
+     * @parameter expression="${arquillian.repackageEntries}" default-value="KEEP"
+     */
+    private String repackageEntries = "KEEP";
+
+    /**
+     * The directory the repackaged archives are kept in, by path and hash of their content.
+     *
+     * @parameter expression="${arquillian.repackageDirectory}"
+     *            default-value="${project.build.directory}/arquillian-repackaged"
+     */
+    private File repackageDirectory;
+
+    /**
+     * The file the time spent in each phase of the goals is written to, as JSON.
+     *
+     * @parameter expression="${arquillian.metricsFile}" default-value="${project.build.directory}/arquillian-metrics.json"
+     */
+    private File metricsFile;
+
+    /**
+     * The directory the hashes of the entries of the archives last uploaded by deployRemote with delta are kept in.
+     *
+     * @parameter expression="${arquillian.manifestDirectory}" default-value="${project.build.directory}/arquillian-manifests"
+     */
+    private File manifestDirectory;
+
+    /**
+     * The file the endpoints of the pools of containers started with poolSize are written to after deploy.
+     *
+     * @parameter expression="${arquillian.poolFile}" default-value="${project.build.directory}/arquillian-pool.properties"
+     */
+    private File poolFile;
+
+    /**
+     * The maximum number of milliseconds each phase may take, keyed by phase: getClassLoader, startManager, setup,
+     * start, createDeployment, deploy, undeploy or stop.
+     *
+     * @parameter
+     */
+    private Map<String, String> budgets;
+
+    /**
+     * Fail the build, instead of warning, when a phase exceeds its budget.
+     *
+     * @parameter expression="${arquillian.failOnBudget}" default-value="false"
+     */
+    private boolean failOnBudget;
+
+    private Metrics.Timer timer;
+
+    /**
+     * The maximum time in seconds to wait for a container started with async set to be started.
+     *
+     * @parameter expression="${arquillian.startTimeout}" default-value="300"
+     */
+    private int startTimeout = 300;
+
+    /**
+     * The archives to deploy, or undeploy, instead of the one defined by filename. An archive is deployed after the
+     * archives it dependsOn, and undeployed before them.
+     *
+     * @parameter
+     */
+    private List<Deployable> deployables;
+
+    /**
+     * Deploy, or undeploy, the dependencies of the project of these types, e.g. war,ejb, instead of the archive defined
+     * by filename. A dependency is deployed after its own dependencies of these types.
+     *
+     * @parameter expression="${arquillian.dependencyTypes}"
+     */
+    private String[] dependencyTypes;
+
+    /**
+     * The maximum number of archives of a batch imported, and deployed or undeployed, concurrently.
+     *
+     * @parameter expression="${arquillian.batchThreads}" default-value="4"
+     */
+    private int batchThreads = 4;
+
+    private Batch batch;
+
+    /**
+     * Paths, relative to the context roots of a deployment, polled after deploying until they respond with a 2xx status,
+     * e.g. /,/health. The deploy goal only succeeds once every path is ready.
+     *
+     * @parameter expression="${arquillian.readinessPaths}"
+     */
+    private String[] readinessPaths;
+
+    /**
+     * The maximum time in seconds to wait for a deployment to be ready.
+     *
+     * @parameter expression="${arquillian.readinessTimeout}" default-value="60"
+     */
+    private int readinessTimeout = 60;
+
     /**
      * The target directory the archive is located. The default is {@code project.build.directory}.
      *
@@ -128,6 +391,15 @@ abstract class BaseCommand extends AbstractMojo {
         return new File(targetDir, filename);
     }
 
+    /**
+     * The file or, when deploying exploded, the directory the archive is read from.
+     *
+     * @return the file or directory the archive is read from.
+     */
+    public final File source() {
+        return exploded ? explodedDirectory : file();
+    }
+
     /**
      * Return the value of the arquillianXml configuration property.
      */
@@ -135,6 +407,599 @@ abstract class BaseCommand extends AbstractMojo {
         return arquillianXml;
     }
 
+    /**
+     * The qualifiers of the containers to operate on.
+     *
+     * @return the configured container qualifiers, or null if not set.
+     */
+    public final String[] containers() {
+        return containers;
+    }
+
+    /**
+     * The name of the container group to operate on.
+     *
+     * @return the configured group, or null if not set.
+     */
+    public final String group() {
+        return group;
+    }
+
+    /**
+     * The configured container qualifiers as a comma separated list.
+     *
+     * @return the qualifiers, or an empty string if not set.
+     */
+    final String containerList() {
+        StringBuilder list = new StringBuilder();
+        if (containers != null) {
+            for (String container : containers) {
+                if (list.length() > 0) {
+                    list.append(',');
+                }
+                list.append(container.trim());
+            }
+        }
+        return list.toString();
+    }
+
+    /**
+     * The file a running daemon is found through.
+     *
+     * @return the daemon file.
+     */
+    public final File daemonFile() {
+        return daemonFile;
+    }
+
+    /**
+     * Whether the archive was last deployed to the container with the same content and the container still serves it,
+     * as probed on the HTTP contexts recorded on deploy, or the readinessPaths if set. A deployment without a recorded
+     * HTTP context is unknown, so changed. The endpoints of an unchanged deployment are recorded again for later goals.
+     * Always false unless skipUnchanged is set.
+     *
+     * @param container the container to deploy to
+     * @return true if deploying the archive again can be skipped.
+     * @throws DeploymentException if the archive can not be read
+     */
+    final boolean isUnchanged(Container container) throws DeploymentException {
+        if (!skipUnchanged || fingerprintFile == null) {
+            return false;
+        }
+        try {
+            Fingerprints fingerprints = new Fingerprints(fingerprintFile);
+            if (!fingerprint().equals(fingerprints.get(container.getName(), source()))) {
+                return false;
+            }
+            ProtocolMetaData metadata = Readiness.metadata(filename(), fingerprints.endpoints(container.getName(),
+                    source()));
+            List<String> paths = readinessPaths == null ? Collections.<String> emptyList() : Arrays
+                    .asList(readinessPaths);
+            if (!Readiness.isDeployed(metadata, paths)) {
+                getLog().info(filename() + " is unchanged but not served by " + container.getName() + ", deploying it");
+                return false;
+            }
+            endpoints().put(container.getName(), filename(), metadata);
+            return true;
+        } catch (IOException e) {
+            throw new DeploymentException("Could not fingerprint " + source(), e);
+        }
+    }
+
+    /**
+     * Record the fingerprint of the archive deployed to the container, with the HTTP contexts it is served under.
+     *
+     * @param container the container the archive was deployed to
+     * @param metadata the metadata returned by the container, may be null
+     * @throws DeploymentException if the archive can not be read
+     */
+    final void deployed(Container container, ProtocolMetaData metadata) throws DeploymentException {
+        if (!skipUnchanged || fingerprintFile == null) {
+            return;
+        }
+        try {
+            new Fingerprints(fingerprintFile).put(container.getName(), source(), fingerprint(), Readiness.urls(
+                    metadata, Collections.singletonList("/")));
+        } catch (IOException e) {
+            throw new DeploymentException("Could not fingerprint " + source(), e);
+        }
+    }
+
+    /**
+     * Forget the fingerprint of the archive undeployed from the container.
+     *
+     * @param container the container the archive was undeployed from
+     * @throws DeploymentException if the fingerprints can not be written
+     */
+    final void undeployed(Container container) throws DeploymentException {
+        if (fingerprintFile == null) {
+            return;
+        }
+        try {
+            new Fingerprints(fingerprintFile).remove(container.getName(), source());
+        } catch (IOException e) {
+            throw new DeploymentException("Could not update " + fingerprintFile, e);
+        }
+    }
+
+    /**
+     * Forget the fingerprints of every archive deployed to the container, as a started container has nothing deployed.
+     *
+     * @param container the started container
+     * @throws LifecycleException if the fingerprints can not be written
+     */
+    final void started(Container container) throws LifecycleException {
+        if (fingerprintFile == null) {
+            return;
+        }
+        try {
+            new Fingerprints(fingerprintFile).removeAll(container.getName());
+        } catch (IOException e) {
+            throw new LifecycleException("Could not update " + fingerprintFile, e);
+        }
+    }
+
+    /**
+     * Whether the goal deploys or undeploys batches of archives. Only the goals returning true use deployables and
+     * dependencyTypes.
+     *
+     * @return false by default.
+     */
+    boolean batchSupported() {
+        return false;
+    }
+
+    /**
+     * Whether the goal operates on a batch of archives, configured by deployables or dependencyTypes, instead of the
+     * archive defined by filename.
+     *
+     * @return true if the goal operates on a batch.
+     */
+    final boolean isBatch() {
+        return batchSupported()
+                && ((deployables != null && !deployables.isEmpty()) || (dependencyTypes != null && dependencyTypes.length > 0));
+    }
+
+    /**
+     * The batch of archives to operate on.
+     *
+     * @return the configured deployables followed by the selected dependencies of the project.
+     */
+    final synchronized Batch batch() {
+        if (batch == null) {
+            List<Deployable> all = new ArrayList<Deployable>();
+            if (deployables != null) {
+                all.addAll(deployables);
+            }
+            if (dependencyTypes != null && dependencyTypes.length > 0) {
+                all.addAll(dependencyDeployables());
+            }
+            batch = new Batch(all);
+        }
+        return batch;
+    }
+
+    /**
+     * Perform the operation on every archive of the batch, in the order of their dependencies.
+     *
+     * @param manager the manager of the containers operated on
+     * @param container the container operated on
+     * @param reverse operate on the archives depending on an archive first, as when undeploying, with the archives
+     *        deployed earlier in this build
+     * @param operation the operation
+     * @throws DeploymentException if the operation failed for an archive
+     */
+    final void performBatch(Manager manager, final Container container, final boolean reverse,
+            final Batch.Operation operation) throws DeploymentException {
+        final ApplicationContext context = manager.getContext(ApplicationContext.class);
+        try {
+            batch().run(new Batch.Importer() {
+                @Override
+                public Archive<?> importArchive(Deployable deployable) {
+                    // Undeploy the archive deployed earlier in this build rather than importing the file again
+                    Deployment deployed = reverse ? deployments().get(container.getName(), deployable.file()) : null;
+                    if (deployed != null) {
+                        return deployed.getDescription().getArchive();
+                    }
+                    long start = timer().begin();
+                    Archive<?> archive = BaseCommand.this.importArchive(deployable.file(), deployable.name());
+                    timer().record(Metrics.CREATE_DEPLOYMENT, null, start);
+                    return archive;
+                }
+            }, new Batch.Operation() {
+                @Override
+                public void perform(Deployable deployable, Archive<?> archive) throws Exception {
+                    // ThreadLocals are not auto transfered / reactivated on new Threads, activate the ApplicationContext
+                    context.activate();
+                    try {
+                        operation.perform(deployable, archive);
+                    } finally {
+                        context.deactivate();
+                    }
+                }
+            }, reverse, batchThreads);
+        } catch (DeploymentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DeploymentException("Could not " + goal() + " batch " + batch().order(), e);
+        }
+    }
+
+    private List<Deployable> dependencyDeployables() {
+        List<String> types = new ArrayList<String>();
+        for (String type : dependencyTypes) {
+            types.add(type.trim());
+        }
+
+        Map<String, Artifact> selected = new LinkedHashMap<String, Artifact>();
+        for (Artifact artifact : project.getArtifacts()) {
+            if (types.contains(artifact.getType()) && artifact.getFile() != null) {
+                selected.put(artifact.getId(), artifact);
+            }
+        }
+
+        // the dependency trail of an artifact lists the artifacts depending on it, from the project down
+        Map<String, List<String>> dependsOn = new HashMap<String, List<String>>();
+        for (Artifact artifact : selected.values()) {
+            dependsOn.put(artifact.getId(), new ArrayList<String>());
+        }
+        for (Artifact artifact : selected.values()) {
+            List<String> trail = artifact.getDependencyTrail();
+            if (trail != null) {
+                for (String dependent : trail) {
+                    if (!dependent.equals(artifact.getId()) && selected.containsKey(dependent)) {
+                        dependsOn.get(dependent).add(artifact.getFile().getName());
+                    }
+                }
+            }
+        }
+
+        List<Deployable> dependencies = new ArrayList<Deployable>();
+        for (Artifact artifact : selected.values()) {
+            dependencies.add(new Deployable(artifact.getFile(), artifact.getFile().getName(), dependsOn.get(artifact.getId())));
+        }
+        return dependencies;
+    }
+
+    /**
+     * Log and record the metadata of the deployment and, if readinessPaths are configured, wait for the deployment to be
+     * ready.
+     *
+     * @param container the container deployed to
+     * @param archive the deployed archive
+     * @param metadata the metadata returned by the container, may be null
+     * @throws DeploymentException if the deployment is not ready within readinessTimeout
+     */
+    final void awaitReady(Container container, Archive<?> archive, ProtocolMetaData metadata)
+            throws DeploymentException {
+        awaitReady(container.getName(), archive.getName(), metadata);
+    }
+
+    /**
+     * Log and record the metadata of the deployment and, if readinessPaths are configured, wait for the deployment to be
+     * ready.
+     *
+     * @param container the name of the container deployed to
+     * @param archive the name of the deployed archive
+     * @param metadata the metadata returned by the container, may be null
+     * @throws DeploymentException if the deployment is not ready within readinessTimeout
+     */
+    final void awaitReady(String container, String archive, ProtocolMetaData metadata) throws DeploymentException {
+        if (metadata != null) {
+            getLog().info("Deployed " + archive + " on " + container + ": " + metadata);
+            endpoints().put(container, archive, metadata);
+        }
+        if (readinessPaths == null || readinessPaths.length == 0) {
+            return;
+        }
+
+        List<URL> urls;
+        try {
+            urls = Readiness.urls(metadata, Arrays.asList(readinessPaths));
+        } catch (MalformedURLException e) {
+            throw new DeploymentException("Invalid readinessPaths " + Arrays.asList(readinessPaths), e);
+        }
+        if (urls.isEmpty()) {
+            getLog().warn("No HTTP context to probe for readiness of " + archive + " on " + container);
+            return;
+        }
+
+        long start = timer().begin();
+        long millis = Readiness.await(urls, readinessTimeout * 1000L);
+        timer().record(Metrics.READY, container, start);
+        getLog().info(archive + " on " + container + " ready in " + millis + " ms " + urls);
+    }
+
+    /**
+     * Deploy the archive to the containers of the daemon, repackaged if repackage is set, then record its endpoints and
+     * wait for it to be ready as a deployment done in this build.
+     *
+     * @param daemon the running daemon
+     * @param source the archive file or exploded directory
+     * @param name the archive name
+     * @throws DeploymentException if the daemon fails to deploy or the deployment is not ready in time
+     */
+    final void deployOnDaemon(DaemonClient daemon, File source, String name) throws DeploymentException {
+        synchronized (this) {
+            if (!daemonWarned) {
+                daemonWarned = true;
+                if (skipUnchanged) {
+                    getLog().warn("skipUnchanged is not supported with daemon, the daemon deploys every archive again");
+                }
+                if (jandex) {
+                    getLog().warn("jandex is not supported with daemon, the daemon deploys the archives unindexed");
+                }
+            }
+        }
+        File deployed = source;
+        if (repackage && source.isFile()) {
+            File repackaged = repackage(source, name);
+            if (repackaged != null) {
+                deployed = repackaged;
+            }
+        }
+        for (Map.Entry<String, ProtocolMetaData> entry : daemon.deploy(containerList(), deployed, name).entrySet()) {
+            awaitReady(entry.getKey(), name, entry.getValue());
+        }
+    }
+
+    /**
+     * The file the hashes of the entries of the archive last uploaded to the container are kept in.
+     *
+     * @param container the container uploaded to
+     * @param archiveName the name of the archive
+     * @return the file, which may not exist
+     */
+    final File manifestFile(Container container, String archiveName) {
+        return new File(manifestDirectory, container.getName() + "-" + archiveName + ".properties");
+    }
+
+    /**
+     * The selected containers, each followed by the copies of its pool.
+     *
+     * @param manager the manager of the containers
+     * @param registry the registry of the containers
+     * @param selected the containers selected by the configuration
+     * @return the containers to operate on
+     */
+    List<Container> withPools(Manager manager, ContainerRegistry registry, List<Container> selected) {
+        ContainerPool pool = getFromContext(ContainerPool.class);
+        if (pool == null) {
+            return selected;
+        }
+        List<Container> containers = new ArrayList<Container>();
+        for (Container container : selected) {
+            containers.add(container);
+            for (String copy : pool.copies(container.getName())) {
+                // Managers started by the remote goals do not have the copies
+                if (registry.getContainer(copy) != null) {
+                    containers.add(registry.getContainer(copy));
+                }
+            }
+        }
+        return containers;
+    }
+
+    /**
+     * Publish the base URLs of the deployments to the containers of the pools, for the tests of failsafe forks to be
+     * given a container each: arquillian.pool.size, arquillian.pool.urls and arquillian.pool.[n].url, with n from 1,
+     * as project and system properties and in the poolFile.
+     *
+     * @throws DeploymentException if the poolFile can not be written
+     */
+    final void publishPool() throws DeploymentException {
+        ContainerPool pool = getFromContext(ContainerPool.class);
+        if (pool == null) {
+            return;
+        }
+        Map<String, String> published = new LinkedHashMap<String, String>();
+        StringBuilder urls = new StringBuilder();
+        int size = 0;
+        for (String container : pool.all()) {
+            List<URL> baseUrls;
+            try {
+                baseUrls = endpoints().baseUrls(container);
+            } catch (MalformedURLException e) {
+                throw new DeploymentException("Invalid context of a deployment on " + container, e);
+            }
+            if (baseUrls.isEmpty()) {
+                continue;
+            }
+            size++;
+            published.put("arquillian.pool." + size + ".url", baseUrls.get(0).toString());
+            urls.append(urls.length() == 0 ? "" : ",").append(baseUrls.get(0));
+        }
+        published.put("arquillian.pool.size", String.valueOf(size));
+        published.put("arquillian.pool.urls", urls.toString());
+        Properties properties = new Properties();
+        for (Map.Entry<String, String> property : published.entrySet()) {
+            exportProperty(property.getKey(), property.getValue());
+            properties.setProperty(property.getKey(), property.getValue());
+        }
+
+        if (poolFile == null) {
+            return;
+        }
+        try {
+            File parent = poolFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Could not create directory " + parent);
+            }
+            OutputStream out = new FileOutputStream(poolFile);
+            try {
+                properties.store(out, "Endpoints of the pools of containers");
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new DeploymentException("Could not write " + poolFile, e);
+        }
+    }
+
+    /**
+     * Export a property to the project, for the plugins executed later in the build, and to the system.
+     *
+     * @param name the name of the property
+     * @param value the value
+     */
+    final void exportProperty(String name, String value) {
+        if (project != null) {
+            project.getProperties().setProperty(name, value);
+        }
+        System.setProperty(name, value);
+        getLog().info("Exported " + name + "=" + value);
+    }
+
+    /**
+     * The deployments made in this build.
+     *
+     * @return the deployments, shared by the goals through the plugin context.
+     */
+    final Deployments deployments() {
+        synchronized (getPluginContext()) {
+            Deployments deployments = getFromContext(Deployments.class);
+            if (deployments == null) {
+                deployments = new Deployments();
+                putInContext(Deployments.class, deployments);
+            }
+            return deployments;
+        }
+    }
+
+    /**
+     * Whether the archive was deployed earlier in this build, so it can be undeployed without the file.
+     *
+     * @return true if the archive is not a batch and is deployed to a container in this build
+     */
+    final boolean isDeployedInBuild() {
+        return !isBatch() && deployments().contains(source());
+    }
+
+    /**
+     * The Deployment to undeploy the archive from the container with: the one it was deployed with in this build,
+     * which is forgotten, or else a new one of the imported archive.
+     *
+     * @param container the container to undeploy from
+     * @return the deployment
+     */
+    final Deployment takeDeployment(Container container) {
+        Deployment deployment = deployments().remove(container.getName(), source());
+        if (deployment != null) {
+            getLog().info(goal() + " deployment of " + source().getAbsoluteFile() + " made in this build");
+            return deployment;
+        }
+        return Utils.deployment(createDeployment());
+    }
+
+    /**
+     * The metadata of the archives deployed in this build.
+     *
+     * @return the endpoints, shared by the goals through the plugin context.
+     */
+    final Endpoints endpoints() {
+        synchronized (getPluginContext()) {
+            Endpoints endpoints = getFromContext(Endpoints.class);
+            if (endpoints == null) {
+                endpoints = new Endpoints();
+                putInContext(Endpoints.class, endpoints);
+            }
+            return endpoints;
+        }
+    }
+
+    /**
+     * The timer of the phases of this execution of the goal.
+     *
+     * @return the timer.
+     */
+    final synchronized Metrics.Timer timer() {
+        if (timer == null) {
+            Metrics metrics = getPluginContext() == null ? null : getFromContext(Metrics.class);
+            if (metrics == null) {
+                metrics = new Metrics();
+                if (getPluginContext() != null) {
+                    putInContext(Metrics.class, metrics);
+                }
+            }
+            timer = metrics.timer(goal());
+        }
+        return timer;
+    }
+
+    /**
+     * Write the time spent in the phases of the goals executed so far in this build to the metricsFile.
+     */
+    final void writeMetrics() {
+        if (metricsFile == null || getPluginContext() == null) {
+            return;
+        }
+        try {
+            getFromContext(Metrics.class).write(metricsFile);
+        } catch (IOException e) {
+            getLog().warn("Could not write metrics to " + metricsFile, e);
+        }
+    }
+
+    /**
+     * The budgets in milliseconds, keyed by phase, read before anything is performed so a bad entry does not fail the
+     * build once deployed.
+     *
+     * @return the budgets, empty if none is configured
+     * @throws MojoExecutionException if a budget is not a number of milliseconds
+     */
+    final Map<String, Long> budgets() throws MojoExecutionException {
+        Map<String, Long> limits = new LinkedHashMap<String, Long>();
+        if (budgets == null) {
+            return limits;
+        }
+        for (Map.Entry<String, String> budget : budgets.entrySet()) {
+            String value = budget.getValue() == null ? "" : budget.getValue().trim();
+            try {
+                limits.put(budget.getKey(), Long.valueOf(value));
+            } catch (NumberFormatException e) {
+                throw new MojoExecutionException("Invalid budget " + budget.getKey() + ": '" + value
+                        + "' is not a number of milliseconds");
+            }
+        }
+        return limits;
+    }
+
+    /**
+     * Warn about, or fail on, the phases of this execution that exceeded their budget.
+     *
+     * @param limits the budgets in milliseconds, keyed by phase
+     * @throws MojoFailureException if a phase exceeded its budget and failOnBudget is set
+     */
+    final void checkBudgets(Map<String, Long> limits) throws MojoFailureException {
+        if (limits.isEmpty()) {
+            return;
+        }
+        List<String> exceeded = new ArrayList<String>();
+        for (Metrics.Sample sample : timer().samples()) {
+            Long budget = limits.get(sample.phase);
+            if (budget != null && sample.millis() > budget) {
+                exceeded.add("Phase " + sample.phase + (sample.container == null ? "" : " on " + sample.container)
+                        + " took " + Math.round(sample.millis()) + " ms, exceeding its budget of " + budget + " ms");
+            }
+        }
+        for (String message : exceeded) {
+            getLog().warn(message);
+        }
+        if (failOnBudget && !exceeded.isEmpty()) {
+            throw new MojoFailureException(exceeded.get(0));
+        }
+    }
+
+    private synchronized String fingerprint() throws IOException {
+        if (fingerprint == null) {
+            long start = System.currentTimeMillis();
+            fingerprint = Fingerprint.of(source());
+            getLog().debug("Fingerprint of " + source() + " is " + fingerprint + " ("
+                    + (System.currentTimeMillis() - start) + " ms)");
+        }
+        return fingerprint;
+    }
+
     /**
      * The goal of the deployment.
      *
@@ -151,6 +1016,28 @@ abstract class BaseCommand extends AbstractMojo {
      */
     public abstract void perform(Manager manager, Container container) throws DeploymentException, LifecycleException;
 
+    /**
+     * Perform the goal on the containers of a running daemon instead of a Manager started in this build.
+     *
+     * @param daemon The running daemon
+     * @return false if the goal can not be performed by a daemon
+     * @throws DeploymentException
+     */
+    boolean performOnDaemon(DaemonClient daemon) throws DeploymentException {
+        return false;
+    }
+
+    /**
+     * Called once the goal has been performed on every selected container.
+     *
+     * @param manager The manager the containers belong to
+     * @param containers The containers the goal has been performed on
+     * @throws LifecycleException
+     * @throws DeploymentException
+     */
+    void afterPerform(Manager manager, List<Container> containers) throws DeploymentException, LifecycleException {
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -159,50 +1046,137 @@ abstract class BaseCommand extends AbstractMojo {
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         validateInput();
-        initArquillianXml();
+        Map<String, Long> limits = budgets();
+        getLog().info("Using configuration: "
+                + (arquillianXml() == null ? ConfigurationClassLoader.ARQUILLIAN_XML : arquillianXml()));
+        if (isBatch()) {
+            getLog().info(goal() + " archives: " + batch().order());
+        } else {
+            getLog().info(goal() + " file: " + source().getAbsoluteFile());
+        }
+
+        try {
+            performTimed();
+        } finally {
+            writeMetrics();
+        }
+        checkBudgets(limits);
+    }
 
-        getLog().info("Using configuration: " + System.getProperty(ARQUILLIAN_XML_SYS_PROP));
-        getLog().info(goal() + " file: " + file().getAbsoluteFile());
+    private void performTimed() throws MojoExecutionException {
+        DaemonClient daemon = DaemonClient.connect(daemonFile);
+        if (daemon != null) {
+            try {
+                long start = timer().begin();
+                boolean performed = performOnDaemon(daemon);
+                if (performed) {
+                    timer().record(goal(), null, start);
+                    return;
+                }
+            } catch (DeploymentException e) {
+                throw new MojoExecutionException("Could not perform goal: " + goal() + " on daemon " + daemonFile, e);
+            }
+        }
 
         ClassLoader previousCL = Thread.currentThread().getContextClassLoader();
         try {
-            ClassLoader cl = getClassLoader();
+            long start = timer().begin();
+            ClassLoader cl = withExtensionIndex(withConfiguration(getClassLoader()));
+            timer().record(Metrics.GET_CLASS_LOADER, null, start);
             Thread.currentThread().setContextClassLoader(cl);
 
             Class<?> extension = cl.loadClass(LOADABLE_EXTESION_LOADER_CLASS);
 
             loadContainer(extension);
         } catch (Exception e) {
-            throw new MojoExecutionException("Could not perform goal: " + goal() + " on file " + file(), e);
+            throw new MojoExecutionException("Could not perform goal: " + goal() + " on file " + source(), e);
         } finally {
             Thread.currentThread().setContextClassLoader(previousCL);
         }
     }
 
-    void initArquillianXml() {
-        if (arquillianXml() != null) {
-            System.setProperty(ARQUILLIAN_XML_SYS_PROP, arquillianXml());
+    /**
+     * The class loader serving the configured arquillianXml, if any, to the Manager started with it as context class
+     * loader.
+     *
+     * @param classLoader the class loader of the containers
+     * @return the class loader to start the Manager with
+     */
+    ClassLoader withConfiguration(ClassLoader classLoader) {
+        String configuration = arquillianXml();
+        if (configuration == null && classLoadingStrategy == ClassLoadingStrategy.ADAPTER) {
+            // the project output is not on the class path of the adapters, look it up as on the test class path
+            for (String directory : Arrays.asList(project.getBuild().getTestOutputDirectory(), project.getBuild()
+                    .getOutputDirectory())) {
+                File file = new File(directory, ConfigurationClassLoader.ARQUILLIAN_XML);
+                if (configuration == null && file.isFile()) {
+                    configuration = file.getPath();
+                }
+            }
+        }
+        if (configuration == null) {
+            return classLoader;
+        }
+        return ConfigurationClassLoader.create(classLoader, configuration);
+    }
+
+    /**
+     * The class loader serving the extensions of the class path from the extensionIndex, if enabled, to the Manager
+     * started with it as context class loader.
+     *
+     * @param classLoader the class loader of the containers
+     * @return the class loader to start the Manager with
+     * @throws IOException if the index can not be read or written
+     */
+    ClassLoader withExtensionIndex(ClassLoader classLoader) throws IOException {
+        if (!indexExtensions || getFromContext(Manager.class) != null) {
+            return classLoader;
+        }
+        ExtensionIndex index = ExtensionIndex.create(classLoader, extensionIndex);
+        if (index == null) {
+            getLog().warn("Not indexing the extensions, an ExtensionLoader on the class path discovers them");
+            return classLoader;
+        }
+        if (index.isRead()) {
+            getLog().debug("Read " + index.extensions().size() + " extensions from " + extensionIndex);
+        } else {
+            getLog().info("Indexed " + index.extensions().size() + " extensions in " + extensionIndex);
         }
+        return index;
     }
 
     void validateInput() {
-        File deploymentFile = file();
-        if (!deploymentFile.exists()) {
-            throw new IllegalArgumentException("Specified file does not exist:" + deploymentFile
+        if (isBatch()) {
+            batch();
+        } else if (exploded) {
+            if (!explodedDirectory.isDirectory()) {
+                throw new IllegalArgumentException("Specified directory does not exist:" + explodedDirectory
+                        + ". Verify 'explodedDirectory' configuration.");
+            }
+        } else if (!file().exists()) {
+            throw new IllegalArgumentException("Specified file does not exist:" + file()
                     + ". Verify 'target' and 'filename' configuration.");
         }
 
-        if ((classLoadingStrategy == ClassLoadingStrategy.TEST || classLoadingStrategy == ClassLoadingStrategy.COMPILE)
-                && project == null) {
+        if ((classLoadingStrategy == ClassLoadingStrategy.TEST || classLoadingStrategy == ClassLoadingStrategy.COMPILE
+                || classLoadingStrategy == ClassLoadingStrategy.ADAPTER) && project == null) {
             throw new IllegalArgumentException("Can not use 'classloading' strategy " + classLoadingStrategy
                     + " outside a project");
         }
+
+        if (repackage) {
+            // fail before the containers start on an unknown compression
+            Repackager.level(repackageArchives);
+            Repackager.level(repackageEntries);
+        }
     }
 
     private void loadContainer(Class<?>... extensions) throws Exception {
         Manager manager = startManager(extensions);
         try {
-            perform(manager, selectContainer(manager));
+            List<Container> selected = selectContainers(manager);
+            performOn(manager, selected);
+            afterPerform(manager, selected);
         } catch (Exception e) {
             manager.shutdown();
             throw e;
@@ -214,7 +1188,9 @@ abstract class BaseCommand extends AbstractMojo {
         if (isStarted(manager))
             return manager;
 
+        long start = timer().begin();
         manager = startNewManager(extensions);
+        timer().record(Metrics.START_MANAGER, null, start);
         putInContext(Manager.class, manager);
         return manager;
     }
@@ -229,20 +1205,171 @@ abstract class BaseCommand extends AbstractMojo {
         return manager;
     }
 
-    private Container selectContainer(Manager manager) {
-        // TODO: Add support for multi configuration
-        Container container = createRegistry(manager).getContainer(TargetDescription.DEFAULT);
-        getLog().info("to container: " + container.getName());
-        return container;
+    /**
+     * Perform the goal on the containers, on up to threads containers at once, each once its background start is done.
+     *
+     * @param manager the manager of the containers
+     * @param selected the containers to operate on
+     * @throws Exception the first failure, once the goal is performed on every container
+     */
+    void performOn(final Manager manager, List<Container> selected) throws Exception {
+        if (threads <= 1 || selected.size() == 1) {
+            for (Container container : selected) {
+                performStarted(manager, container);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, selected.size()));
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (final Container container : selected) {
+                results.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        // ThreadLocals are not auto transfered / reactivated on new Threads, activate the ApplicationContext
+                        ApplicationContext context = manager.getContext(ApplicationContext.class);
+                        context.activate();
+                        try {
+                            performStarted(manager, container);
+                        } finally {
+                            context.deactivate();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            awaitAll(selected, results);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void performStarted(Manager manager, Container container) throws Exception {
+        ContainerStarts starts = getFromContext(ContainerStarts.class);
+        if (starts != null) {
+            long start = timer().begin();
+            if (starts.isStarting(container)) {
+                getLog().info("Awaiting start of container " + container.getName());
+            }
+            starts.await(container, startTimeout);
+            timer().record(Metrics.AWAIT_START, container.getName(), start);
+        }
+        perform(manager, container);
+    }
+
+    private void awaitAll(List<Container> selected, List<Future<Void>> results) throws Exception {
+        Exception failure = null;
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                results.get(i).get();
+            } catch (ExecutionException e) {
+                getLog().error(goal() + " failed on container " + selected.get(i).getName(), e.getCause());
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private List<Container> selectContainers(Manager manager) {
+        List<String> names = containers == null ? new ArrayList<String>() : Arrays.asList(containers);
+        ContainerRegistry registry = createRegistry(manager);
+        List<Container> selected = withPools(manager, registry,
+                Utils.selectContainers(manager, registry, names, group));
+        for (Container container : selected) {
+            getLog().info("to container: " + container.getName());
+        }
+        return selected;
     }
 
     Archive<?> createDeployment() {
-        getLog().info(goal() + " file: " + file().getAbsoluteFile());
+        long start = timer().begin();
+        try {
+            return importDeployment();
+        } finally {
+            timer().record(Metrics.CREATE_DEPLOYMENT, null, start);
+        }
+    }
+
+    private Archive<?> importDeployment() {
+        getLog().info(goal() + " file: " + source().getAbsoluteFile());
+
+        if (exploded) {
+            return importArchive(explodedDirectory, filename);
+        }
+        return importArchive(file(), file().getName());
+    }
+
+    private Archive<?> importArchive(File source, String name) {
+        if (source.isDirectory()) {
+            return addAnnotationIndex(ShrinkWrap.create(ExplodedImporter.class, name).importDirectory(source)
+                    .as(GenericArchive.class));
+        }
 
-        File deploymentFile = file();
-        Archive<?> deployment = ShrinkWrap.create(ZipImporter.class, deploymentFile.getName()).importFrom(deploymentFile)
-                .as(GenericArchive.class);
-        return deployment;
+        if (repackage && !goal().startsWith("undeploy")) {
+            File repackaged = repackage(source, name);
+            if (repackaged != null) {
+                return StreamingArchive.from(repackaged);
+            }
+        }
+        if (streaming && !jandex && name.equals(source.getName())) {
+            return StreamingArchive.from(source);
+        }
+        Archive<?> deployment = ShrinkWrap.create(ZipImporter.class, name).importFrom(source).as(GenericArchive.class);
+        return addAnnotationIndex(deployment);
+    }
+
+    private File repackage(File source, String name) {
+        if (jandex) {
+            getLog().warn("Not repackaging " + name + ", the archive is modified in memory to add Jandex indexes");
+            return null;
+        }
+        long start = timer().begin();
+        try {
+            Repackager repackager = new Repackager(repackageDirectory, Repackager.level(repackageArchives),
+                    Repackager.level(repackageEntries));
+            File repackaged = repackager.repackage(source, name);
+            getLog().info("Repackaged " + name + " from " + source.length() / 1024 + " KB to " + repackaged.length()
+                    / 1024 + " KB");
+            return repackaged;
+        } catch (ZipException e) {
+            getLog().warn("Not repackaging " + name + ": " + e.getMessage());
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not repackage " + source, e);
+        } finally {
+            timer().record(Metrics.REPACKAGE, null, start);
+        }
+    }
+
+    private Archive<?> addAnnotationIndex(Archive<?> archive) {
+        if (!jandex || goal().startsWith("undeploy")) {
+            return archive;
+        }
+        long start = timer().begin();
+        try {
+            synchronized (this) {
+                if (annotationIndex == null) {
+                    annotationIndex = AnnotationIndex.create(getClassLoader(), jandexCache, batchThreads);
+                    if (annotationIndex == null) {
+                        getLog().warn("Not indexing " + archive.getName() + ", Jandex is not on the class path");
+                        jandex = false;
+                        return archive;
+                    }
+                }
+            }
+            int added = annotationIndex.addTo(archive);
+            getLog().debug("Added " + added + " Jandex indexes to " + archive.getName());
+            return archive;
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not index " + archive.getName(), e);
+        } finally {
+            timer().record(Metrics.INDEX, null, start);
+        }
     }
 
     private ContainerRegistry createRegistry(Manager manager) {
@@ -272,34 +1399,32 @@ abstract class BaseCommand extends AbstractMojo {
         if (classLoader != null)
             return classLoader;
 
-        synchronized (BaseCommand.class) {
-            List<URL> urls = new ArrayList<URL>();
-            List<String> classPathElements;
-
-            switch (classLoadingStrategy) {
-                case COMPILE:
-                    classPathElements = project.getCompileClasspathElements();
-                    break;
-                case TEST:
-                    classPathElements = project.getTestClasspathElements();
-                    break;
-                case PLUGIN:
-                    classPathElements = new ArrayList<String>();
-                    break;
-
-                default:
-                    classPathElements = new ArrayList<String>();
-                    break;
-            }
+        List<String> classPathElements;
+        switch (classLoadingStrategy) {
+            case COMPILE:
+                classPathElements = project.getCompileClasspathElements();
+                break;
+            case TEST:
+                classPathElements = project.getTestClasspathElements();
+                break;
+            case PLUGIN:
+                classPathElements = new ArrayList<String>();
+                break;
+            case ADAPTER:
+                classPathElements = new AdapterArtifacts(adapterArtifacts == null ? new ArrayList<String>()
+                        : Arrays.asList(adapterArtifacts), AdapterArtifacts.of(artifactMetadataSource, localRepository,
+                        project.getRemoteArtifactRepositories())).classPath(project.getArtifacts());
+                getLog().debug("Container adapter class path: " + classPathElements);
+                break;
 
-            for (String object : classPathElements) {
-                String path = (String) object;
-                urls.add(new File(path).toURI().toURL());
-            }
-            URLClassLoader urlClassLoader = new URLClassLoader(urls.toArray(new URL[] {}), BaseCommand.class.getClassLoader());
-            putInContext(ClassLoader.class, urlClassLoader);
-            return urlClassLoader;
+            default:
+                classPathElements = new ArrayList<String>();
+                break;
         }
+
+        classLoader = ClassLoaderCache.get(classPathElements, BaseCommand.class.getClassLoader());
+        putInContext(ClassLoader.class, classLoader);
+        return classLoader;
     }
 
     @SuppressWarnings("unchecked")
@@ -0,0 +1,254 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The performance results of previous builds, as samples per result, kept in a properties file meant to be committed
+ * with the project, e.g. load.p99=12.9,11.8,13.1.
+ * <p>
+ * A result regresses when it is worse than the median of its samples by more than the largest of the relative
+ * tolerance, the noise of the samples, as a number of median absolute deviations, and the absolute noise floor.
+ *
+ * @version $Revision: $
+ */
+final class Baseline {
+
+    /**
+     * Scales the median absolute deviation to the standard deviation of normally distributed samples.
+     */
+    private static final double MAD_TO_SIGMA = 1.4826;
+
+    private final File file;
+
+    private final Map<String, List<Double>> samples = new TreeMap<String, List<Double>>();
+
+    Baseline(File file) throws IOException {
+        this.file = file;
+        if (!file.isFile()) {
+            return;
+        }
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        for (Enumeration<?> names = properties.propertyNames(); names.hasMoreElements();) {
+            String name = (String) names.nextElement();
+            List<Double> values = new ArrayList<Double>();
+            for (String value : properties.getProperty(name).split(",")) {
+                if (value.trim().length() > 0) {
+                    try {
+                        values.add(Double.valueOf(value.trim()));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid sample " + value + " of " + name + " in " + file);
+                    }
+                }
+            }
+            if (!values.isEmpty()) {
+                samples.put(name, values);
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return samples.isEmpty();
+    }
+
+    List<Double> samples(String name) {
+        List<Double> values = samples.get(name);
+        return values == null ? Collections.<Double> emptyList() : values;
+    }
+
+    /**
+     * Add the results as the latest samples and write the file.
+     *
+     * @param results the results of this build
+     * @param keep the number of latest samples kept per result
+     */
+    void record(Map<String, Double> results, int keep) throws IOException {
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            List<Double> values = new ArrayList<Double>(samples(result.getKey()));
+            values.add(result.getValue());
+            samples.put(result.getKey(), values.subList(Math.max(0, values.size() - keep), values.size()));
+        }
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        StringBuilder content = new StringBuilder("# Performance baseline, samples of the latest builds per result\n");
+        for (Map.Entry<String, List<Double>> entry : samples.entrySet()) {
+            content.append(entry.getKey()).append('=');
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                content.append(i == 0 ? "" : ",").append(format(entry.getValue().get(i)));
+            }
+            content.append('\n');
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.toString().getBytes("ISO-8859-1"));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Compare a result with its samples.
+     *
+     * @param name the name of the result
+     * @param value the result of this build
+     * @param tolerance the relative tolerance, in percent of the median
+     * @param noiseSigmas the number of standard deviations of the samples within the noise
+     * @param noiseFloor the absolute difference within the noise
+     * @return a description of the regression, null if the result did not regress or has no samples
+     */
+    String regression(String name, double value, double tolerance, double noiseSigmas, double noiseFloor) {
+        List<Double> values = samples(name);
+        if (values.isEmpty()) {
+            return null;
+        }
+        double median = median(values);
+        List<Double> deviations = new ArrayList<Double>();
+        for (Double sample : values) {
+            deviations.add(Math.abs(sample - median));
+        }
+        double allowed = Math.max(Math.abs(median) * tolerance / 100,
+                Math.max(noiseSigmas * MAD_TO_SIGMA * median(deviations), noiseFloor));
+
+        double worse = higherIsBetter(name) ? median - value : value - median;
+        if (worse <= allowed) {
+            return null;
+        }
+        return String.format(Locale.ENGLISH, "%s: %s, baseline %s (%d samples), %s by %.1f%%, allowed %s", name,
+                format(value), format(median), values.size(), higherIsBetter(name) ? "lower" : "higher",
+                median == 0 ? 100 : worse * 100 / Math.abs(median), format(allowed));
+    }
+
+    /**
+     * Throughputs are better higher, timings and latencies lower.
+     */
+    static boolean higherIsBetter(String name) {
+        return name.endsWith("throughput");
+    }
+
+    /**
+     * Read the results of this build from the reports of the plugin goals. The time of each phase, as
+     * goal.phase[.container], is summed over the executions of the goal. The load report gives load.throughput and the
+     * latencies load.p50, load.p99 and load.p999.
+     *
+     * @param metricsFile the metricsFile written by the container goals, ignored if missing
+     * @param loadReport the report written by the load goal, ignored if missing
+     * @return the results by name
+     * @throws IOException if a report can not be read or parsed
+     */
+    static Map<String, Double> results(File metricsFile, File loadReport) throws IOException {
+        Map<String, Double> results = new TreeMap<String, Double>();
+        if (metricsFile != null && metricsFile.isFile()) {
+            for (Object execution : list(object(read(metricsFile), metricsFile).get("executions"), metricsFile)) {
+                Map<String, Object> timed = object(execution, metricsFile);
+                for (Object phase : list(timed.get("phases"), metricsFile)) {
+                    Map<String, Object> sample = object(phase, metricsFile);
+                    String name = timed.get("goal") + "." + sample.get("phase")
+                            + (sample.get("container") == null ? "" : "." + sample.get("container"));
+                    Double previous = results.get(name);
+                    double millis = number(sample.get("millis"), metricsFile);
+                    results.put(name, previous == null ? millis : previous + millis);
+                }
+            }
+        }
+        if (loadReport != null && loadReport.isFile()) {
+            Map<String, Object> load = object(read(loadReport), loadReport);
+            results.put("load.throughput", number(load.get("throughput"), loadReport));
+            Map<String, Object> latencies = object(load.get("latencyMillis"), loadReport);
+            for (String percentile : new String[] { "p50", "p99", "p999" }) {
+                results.put("load." + percentile, number(latencies.get(percentile), loadReport));
+            }
+        }
+        return results;
+    }
+
+    static String format(double value) {
+        return String.format(Locale.ENGLISH, "%.3f", value).replaceAll("\\.?0+$", "");
+    }
+
+    private static double median(List<Double> values) {
+        List<Double> sorted = new ArrayList<Double>(values);
+        Collections.sort(sorted);
+        int middle = sorted.size() / 2;
+        return sorted.size() % 2 == 1 ? sorted.get(middle) : (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+    }
+
+    private static Object read(File file) throws IOException {
+        StringBuilder json = new StringBuilder();
+        Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            char[] buffer = new char[4096];
+            for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+                json.append(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        try {
+            return Json.parse(json.toString());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage() + " " + file);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Object value, File file) throws IOException {
+        if (!(value instanceof Map)) {
+            throw new IOException("Unexpected content of " + file);
+        }
+        return (Map<String, Object>) value;
+    }
+
+    private static List<?> list(Object value, File file) throws IOException {
+        if (!(value instanceof List)) {
+            throw new IOException("Unexpected content of " + file);
+        }
+        return (List<?>) value;
+    }
+
+    private static double number(Object value, File file) throws IOException {
+        if (!(value instanceof Double)) {
+            throw new IOException("Unexpected content of " + file);
+        }
+        return (Double) value;
+    }
+}
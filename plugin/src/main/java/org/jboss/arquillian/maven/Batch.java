@@ -0,0 +1,210 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jboss.shrinkwrap.api.Archive;
+
+/**
+ * A batch of archives deployed, or undeployed, in the order of their dependencies.
+ *
+ * The archives are imported concurrently. Each archive is deployed as soon as it is imported and the archives it
+ * depends on are deployed, so independent archives are deployed concurrently. Undeploying runs in the reverse order:
+ * an archive is undeployed once the archives depending on it are undeployed.
+ *
+ * @version $Revision: $
+ */
+final class Batch {
+
+    /**
+     * Imports the archive of a deployable.
+     */
+    interface Importer {
+        Archive<?> importArchive(Deployable deployable) throws Exception;
+    }
+
+    /**
+     * Deploys or undeploys the archive of a deployable.
+     */
+    interface Operation {
+        void perform(Deployable deployable, Archive<?> archive) throws Exception;
+    }
+
+    private final List<Deployable> order;
+
+    private final Map<String, List<String>> dependents = new HashMap<String, List<String>>();
+
+    /**
+     * @param deployables the archives of the batch
+     * @throws IllegalArgumentException if names are not unique, or dependencies are unknown or circular
+     */
+    Batch(Collection<Deployable> deployables) {
+        Map<String, Deployable> byName = new LinkedHashMap<String, Deployable>();
+        for (Deployable deployable : deployables) {
+            if (deployable.file() == null) {
+                throw new IllegalArgumentException("No file configured for a deployable. Verify 'deployables' configuration.");
+            }
+            if (!deployable.file().exists()) {
+                throw new IllegalArgumentException("Specified file does not exist:" + deployable.file()
+                        + ". Verify 'deployables' configuration.");
+            }
+            if (byName.put(deployable.name(), deployable) != null) {
+                throw new IllegalArgumentException("More than one deployable named " + deployable.name()
+                        + ". Verify 'deployables' configuration.");
+            }
+            dependents.put(deployable.name(), new ArrayList<String>());
+        }
+        for (Deployable deployable : byName.values()) {
+            for (String dependency : deployable.dependsOn()) {
+                if (!byName.containsKey(dependency)) {
+                    throw new IllegalArgumentException("Deployable " + deployable.name() + " depends on unknown "
+                            + dependency + ". Verify 'deployables' configuration.");
+                }
+                dependents.get(dependency).add(deployable.name());
+            }
+        }
+        this.order = sort(byName);
+    }
+
+    /**
+     * The archives, each after the archives it depends on, otherwise in configuration order.
+     */
+    List<Deployable> order() {
+        return Collections.unmodifiableList(order);
+    }
+
+    /**
+     * Perform the operation on every archive of the batch.
+     *
+     * @param importer imports the archives
+     * @param operation the deploy or undeploy operation
+     * @param reverse perform the operation on the archives depending on an archive first, as when undeploying
+     * @param threads the maximum number of archives imported, and operated on, concurrently
+     * @throws Exception the first failure, in order of the batch
+     */
+    void run(final Importer importer, final Operation operation, boolean reverse, int threads) throws Exception {
+        List<Deployable> sequence = new ArrayList<Deployable>(order);
+        if (reverse) {
+            Collections.reverse(sequence);
+        }
+
+        ExecutorService imports = Executors.newFixedThreadPool(Math.max(1, threads));
+        ExecutorService operations = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            final Map<String, Future<Archive<?>>> archives = new HashMap<String, Future<Archive<?>>>();
+            for (final Deployable deployable : sequence) {
+                archives.put(deployable.name(), imports.submit(new Callable<Archive<?>>() {
+                    @Override
+                    public Archive<?> call() throws Exception {
+                        return importer.importArchive(deployable);
+                    }
+                }));
+            }
+
+            // Submitted in order, so every operation awaits operations that were submitted, and are started, before it
+            Map<String, Future<Void>> performed = new HashMap<String, Future<Void>>();
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (final Deployable deployable : sequence) {
+                final List<Future<Void>> before = new ArrayList<Future<Void>>();
+                for (String name : reverse ? dependents.get(deployable.name()) : deployable.dependsOn()) {
+                    before.add(performed.get(name));
+                }
+                Future<Void> result = operations.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (Future<Void> previous : before) {
+                            previous.get();
+                        }
+                        operation.perform(deployable, archives.get(deployable.name()).get());
+                        return null;
+                    }
+                });
+                performed.put(deployable.name(), result);
+                results.add(result);
+            }
+            awaitAll(results);
+        } finally {
+            imports.shutdownNow();
+            operations.shutdown();
+        }
+    }
+
+    private static void awaitAll(List<Future<Void>> results) throws Exception {
+        Exception failure = null;
+        for (Future<Void> result : results) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = cause(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static Exception cause(ExecutionException e) {
+        // an operation awaiting a failed one fails with the failure of the awaited operation
+        Throwable cause = e.getCause();
+        while (cause instanceof ExecutionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof Exception ? (Exception) cause : e;
+    }
+
+    private static List<Deployable> sort(Map<String, Deployable> byName) {
+        List<Deployable> sorted = new ArrayList<Deployable>();
+        Map<String, Boolean> visiting = new HashMap<String, Boolean>();
+        for (Deployable deployable : byName.values()) {
+            visit(deployable, byName, visiting, sorted);
+        }
+        return sorted;
+    }
+
+    private static void visit(Deployable deployable, Map<String, Deployable> byName, Map<String, Boolean> visiting,
+            List<Deployable> sorted) {
+        Boolean state = visiting.get(deployable.name());
+        if (Boolean.FALSE.equals(state)) {
+            return;
+        }
+        if (Boolean.TRUE.equals(state)) {
+            throw new IllegalArgumentException("Deployable " + deployable.name()
+                    + " depends on itself. Verify 'deployables' configuration.");
+        }
+        visiting.put(deployable.name(), Boolean.TRUE);
+        for (String dependency : deployable.dependsOn()) {
+            visit(byName.get(dependency), byName, visiting, sorted);
+        }
+        visiting.put(deployable.name(), Boolean.FALSE);
+        sorted.add(deployable);
+    }
+}
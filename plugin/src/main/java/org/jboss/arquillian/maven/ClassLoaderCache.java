@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Shares class loaders between executions with the same class path.
+ *
+ * The class loaders are keyed by a hash of the class path elements and their modification times, so a rebuilt element
+ * gets a new class loader while identical class paths, e.g. of modules in the same reactor or of consecutive
+ * executions in the same JVM, share a single one. The class loaders find classes and resources through an index of the
+ * packages of the class path, see {@link IndexedClassLoader}.
+ *
+ * Only the latest class loader of a class path is kept, and at most {@link #MAX_CLASS_PATHS} class paths, the least
+ * recently used one being dropped beyond that. Dropped class loaders are not closed, as a Manager or a container of
+ * another execution may still use them; their jars are released once they are collected.
+ *
+ * @version $Revision: $
+ */
+final class ClassLoaderCache {
+
+    static final int MAX_CLASS_PATHS = 16;
+
+    /**
+     * The latest class loader of each class path, by class path, in access order.
+     */
+    private static final Map<String, Cached> LOADERS = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+            return size() > MAX_CLASS_PATHS;
+        }
+    };
+
+    private ClassLoaderCache() {
+    }
+
+    /**
+     * Return the class loader for the given class path, creating it if needed. The class loader is created outside of
+     * the lock of the cache, so executions indexing different class paths do not wait for each other, and executions
+     * asking for the same class path wait for the one creating it.
+     *
+     * @param classPathElements the class path elements
+     * @param parent the parent class loader
+     * @return the class loader
+     * @throws Exception if the class path can not be read
+     */
+    static ClassLoader get(final List<String> classPathElements, final ClassLoader parent) throws Exception {
+        String classPath = String.valueOf(System.identityHashCode(parent)) + classPathElements;
+        String key = key(classPathElements, parent);
+        Cached cached;
+        boolean creator = false;
+        synchronized (LOADERS) {
+            cached = LOADERS.get(classPath);
+            if (cached == null || !cached.key.equals(key)) {
+                // an element was rebuilt, the class loader of its previous version is left to the executions using it
+                cached = new Cached(key, new FutureTask<ClassLoader>(new Callable<ClassLoader>() {
+                    @Override
+                    public ClassLoader call() throws Exception {
+                        return create(classPathElements, parent);
+                    }
+                }));
+                LOADERS.put(classPath, cached);
+                creator = true;
+            }
+        }
+
+        if (creator) {
+            cached.classLoader.run();
+        }
+        try {
+            return cached.classLoader.get();
+        } catch (ExecutionException e) {
+            synchronized (LOADERS) {
+                if (LOADERS.get(classPath) == cached) {
+                    LOADERS.remove(classPath);
+                }
+            }
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private static ClassLoader create(List<String> classPathElements, ClassLoader parent) throws Exception {
+        URL[] urls = new URL[classPathElements.size()];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = new File(classPathElements.get(i)).toURI().toURL();
+        }
+        try {
+            return new IndexedClassLoader(urls, parent);
+        } catch (IOException e) {
+            // a jar that can not be indexed fails as it would with a plain class loader, once searched
+            return new URLClassLoader(urls, parent);
+        }
+    }
+
+    private static final class Cached {
+
+        private final String key;
+
+        private final FutureTask<ClassLoader> classLoader;
+
+        private Cached(String key, FutureTask<ClassLoader> classLoader) {
+            this.key = key;
+            this.classLoader = classLoader;
+        }
+    }
+
+    /**
+     * The hash identifying a class path.
+     *
+     * @param classPathElements the class path elements
+     * @param parent the parent class loader
+     * @return the hex encoded hash of the elements, their modification times and the parent class loader
+     */
+    static String key(List<String> classPathElements, ClassLoader parent) {
+        MessageDigest digest = Fingerprint.sha1();
+        Fingerprint.update(digest, String.valueOf(System.identityHashCode(parent)));
+        for (String element : classPathElements) {
+            File file = new File(element);
+            Fingerprint.update(digest, element);
+            Fingerprint.update(digest, String.valueOf(lastModified(file)));
+            Fingerprint.update(digest, String.valueOf(file.length()));
+        }
+        return Fingerprint.toHex(digest.digest());
+    }
+
+    private static long lastModified(File file) {
+        long lastModified = file.lastModified();
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                lastModified = Math.max(lastModified, lastModified(child));
+            }
+        }
+        return lastModified;
+    }
+}
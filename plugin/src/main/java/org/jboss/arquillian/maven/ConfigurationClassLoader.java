@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+
+/**
+ * Serves the arquillian.xml configured for one goal execution to the Manager it starts.
+ *
+ * Arquillian reads arquillian.xml from the thread context class loader, so setting this class loader as the context
+ * class loader configures the Manager without changing the arquillian.xml system property, which is shared by all
+ * the projects of a parallel build.
+ *
+ * @version $Revision: $
+ */
+final class ConfigurationClassLoader extends ClassLoader {
+
+    static final String ARQUILLIAN_XML = "arquillian.xml";
+
+    private final URL configuration;
+
+    private ConfigurationClassLoader(ClassLoader parent, URL configuration) {
+        super(parent);
+        this.configuration = configuration;
+    }
+
+    /**
+     * A class loader serving arquillianXml as arquillian.xml.
+     *
+     * @param parent the class loader everything else is loaded from
+     * @param arquillianXml the name of a class path resource or the path of a file
+     * @return the class loader
+     * @throws IllegalArgumentException if arquillianXml is neither a class path resource nor a file
+     */
+    static ClassLoader create(ClassLoader parent, String arquillianXml) {
+        URL configuration = parent.getResource(arquillianXml);
+        if (configuration == null) {
+            File file = new File(arquillianXml);
+            if (!file.isFile()) {
+                throw new IllegalArgumentException("Could not find " + arquillianXml
+                        + " as either class path resource or file. Verify 'arquillianXml' configuration.");
+            }
+            try {
+                configuration = file.toURI().toURL();
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        return new ConfigurationClassLoader(parent, configuration);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.ClassLoader#getResource(java.lang.String)
+     */
+    @Override
+    public URL getResource(String name) {
+        if (ARQUILLIAN_XML.equals(name)) {
+            return configuration;
+        }
+        return super.getResource(name);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.ClassLoader#getResources(java.lang.String)
+     */
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        if (ARQUILLIAN_XML.equals(name)) {
+            return Collections.enumeration(Collections.singletonList(configuration));
+        }
+        return super.getResources(name);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.arquillian.config.descriptor.api.ArquillianDescriptor;
+import org.jboss.arquillian.config.descriptor.api.ContainerDef;
+import org.jboss.arquillian.config.descriptor.api.ProtocolDef;
+import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.ContainerRegistry;
+import org.jboss.arquillian.core.spi.Manager;
+import org.jboss.arquillian.core.spi.ServiceLoader;
+
+/**
+ * Pools of identical containers, kept in the plugin context. A pool is the container configured in arquillian.xml
+ * followed by copies of its configuration, named after it, e.g. jetty, jetty-1, jetty-2.
+ *
+ * @version $Revision: $
+ */
+final class ContainerPool {
+
+    private final Map<String, List<String>> members = new LinkedHashMap<String, List<String>>();
+
+    /**
+     * Add copies of the container to the registry, up to the size of the pool.
+     *
+     * @param manager the manager of the registry
+     * @param registry the registry of the containers
+     * @param container the container configured in arquillian.xml
+     * @param size the number of containers in the pool, including the configured one
+     */
+    synchronized void grow(Manager manager, ContainerRegistry registry, Container container, int size) {
+        ArquillianDescriptor descriptor = manager.resolve(ArquillianDescriptor.class);
+        ServiceLoader loader = manager.resolve(ServiceLoader.class);
+        List<String> names = new ArrayList<String>();
+        for (int i = 1; i < size; i++) {
+            String name = container.getName() + "-" + i;
+            if (registry.getContainer(name) == null) {
+                registry.create(copy(container.getContainerConfiguration(), descriptor.container(name)), loader);
+            }
+            names.add(name);
+        }
+        members.put(container.getName(), names);
+    }
+
+    /**
+     * @return the names of the copies of the container, empty if it has no pool
+     */
+    synchronized List<String> copies(String container) {
+        List<String> names = members.get(container);
+        return names == null ? Collections.<String> emptyList() : new ArrayList<String>(names);
+    }
+
+    /**
+     * @return the names of the containers of every pool, each configured container followed by its copies
+     */
+    synchronized List<String> all() {
+        List<String> names = new ArrayList<String>();
+        for (Map.Entry<String, List<String>> pool : members.entrySet()) {
+            names.add(pool.getKey());
+            names.addAll(pool.getValue());
+        }
+        return names;
+    }
+
+    private static ContainerDef copy(ContainerDef from, ContainerDef to) {
+        if (from.getMode() != null) {
+            to.setMode(from.getMode());
+        }
+        for (Map.Entry<String, String> property : from.getContainerProperties().entrySet()) {
+            to.property(property.getKey(), property.getValue());
+        }
+        for (String dependency : from.getDependencies()) {
+            to.dependency(dependency);
+        }
+        for (ProtocolDef protocol : from.getProtocols()) {
+            ProtocolDef copy = to.protocol(protocol.getType());
+            for (Map.Entry<String, String> property : protocol.getProtocolProperties().entrySet()) {
+                copy.property(property.getKey(), property.getValue());
+            }
+        }
+        return to;
+    }
+}
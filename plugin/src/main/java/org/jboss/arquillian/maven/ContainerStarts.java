@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.client.container.LifecycleException;
+
+/**
+ * The containers being started in the background by the start goal with async set, kept in the plugin context so
+ * later goals of the build can await them.
+ *
+ * @version $Revision: $
+ */
+final class ContainerStarts {
+
+    private final ConcurrentMap<String, Future<Void>> starts = new ConcurrentHashMap<String, Future<Void>>();
+
+    /**
+     * Start the container on a new background thread.
+     *
+     * @param container the container to start
+     * @param start the task starting the container
+     */
+    void submit(final Container container, Callable<Void> start) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "arquillian-start-" + container.getName());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            starts.put(container.getName(), executor.submit(start));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Whether the container is started in the background and not yet done starting.
+     */
+    boolean isStarting(Container container) {
+        Future<Void> start = starts.get(container.getName());
+        return start != null && !start.isDone();
+    }
+
+    /**
+     * Wait for the background start of the container, if any, to be done.
+     *
+     * @param container the container to await
+     * @param timeoutSeconds the maximum time to wait
+     * @throws LifecycleException if the container failed or did not start in time
+     */
+    void await(Container container, long timeoutSeconds) throws LifecycleException {
+        Future<Void> start = starts.get(container.getName());
+        if (start == null) {
+            return;
+        }
+        try {
+            start.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new LifecycleException("Could not start container " + container.getName(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new LifecycleException("Container " + container.getName() + " did not start within " + timeoutSeconds
+                    + " seconds");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LifecycleException("Interrupted awaiting the start of container " + container.getName(), e);
+        }
+    }
+}
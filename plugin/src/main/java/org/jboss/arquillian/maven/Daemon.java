@@ -0,0 +1,364 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.ContainerRegistry;
+import org.jboss.arquillian.container.spi.client.deployment.Deployment;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
+import org.jboss.arquillian.core.spi.Manager;
+import org.jboss.arquillian.core.spi.ManagerBuilder;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.GenericArchive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.importer.ExplodedImporter;
+import org.jboss.shrinkwrap.api.importer.ZipImporter;
+
+/**
+ * A background process holding a started {@link Manager} and its containers, so separate Maven invocations can deploy
+ * to them without bootstrapping the Manager and starting the containers again.
+ *
+ * The daemon listens on a loopback port, written to the daemon file, and handles one {@link DaemonClient} command per
+ * connection. The daemon file, readable by its owner only, also holds a random token every command must start with,
+ * so other users of the machine can not deploy to or stop the containers.
+ *
+ * @version $Revision: $
+ */
+final class Daemon {
+
+    static final String PORT = "port";
+
+    static final String TOKEN = "token";
+
+    static final String OK = "OK";
+
+    static final String ERROR = "ERROR";
+
+    static final String SEPARATOR = "\t";
+
+    /**
+     * The time in milliseconds a client has to send its command once connected, not to block the daemon.
+     */
+    static final int READ_TIMEOUT = 5000;
+
+    private static final Logger log = Logger.getLogger(Daemon.class.getName());
+
+    private final Manager manager;
+
+    private final List<Container> containers;
+
+    private final Map<String, Deployment> deployments = new HashMap<String, Deployment>();
+
+    private byte[] token;
+
+    Daemon(Manager manager, List<Container> containers) {
+        this.manager = manager;
+        this.containers = containers;
+    }
+
+    /**
+     * Start the containers and serve commands until stopped.
+     *
+     * @param args the daemon file, the group or "-" and the qualifiers of the containers to start
+     */
+    public static void main(String[] args) throws Exception {
+        File daemonFile = new File(args[0]);
+        redirectOutput(new File(daemonFile.getPath() + ".log"));
+
+        String group = "-".equals(args[1]) ? null : args[1];
+        List<String> names = Arrays.asList(args).subList(2, args.length);
+
+        Manager manager = ManagerBuilder.from().extension(Class.forName(BaseCommand.LOADABLE_EXTESION_LOADER_CLASS))
+                .create();
+        manager.start();
+        List<Container> containers = Utils.selectContainers(manager, manager.resolve(ContainerRegistry.class), names,
+                group);
+        for (Container container : containers) {
+            Utils.setup(manager, container);
+            Utils.start(manager, container);
+        }
+
+        try {
+            new Daemon(manager, containers).serve(daemonFile);
+        } finally {
+            // Containers may leave non daemon threads behind
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Write the output of the daemon and its containers, and what they log, to the log file.
+     */
+    private static void redirectOutput(File file) throws IOException {
+        PrintStream out = new PrintStream(new FileOutputStream(file), true);
+        System.setOut(out);
+        System.setErr(out);
+
+        Logger root = Logger.getLogger("");
+        for (Handler handler : root.getHandlers()) {
+            root.removeHandler(handler);
+        }
+        root.addHandler(new StreamHandler(out, new SimpleFormatter()) {
+            @Override
+            public synchronized void publish(LogRecord record) {
+                super.publish(record);
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Serve commands until stopped, then stop the containers and shut the manager down.
+     *
+     * @param daemonFile the file to write the port and the token to, deleted once stopped
+     */
+    void serve(File daemonFile) throws IOException {
+        ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        try {
+            token = new byte[16];
+            new SecureRandom().nextBytes(token);
+            writeDaemonFile(daemonFile, server.getLocalPort(), Fingerprint.toHex(token));
+            boolean running = true;
+            while (running) {
+                Socket socket = server.accept();
+                try {
+                    socket.setSoTimeout(READ_TIMEOUT);
+                    running = handle(socket);
+                } catch (IOException e) {
+                    // a client that stalled or went away, serve the next one
+                    log.log(Level.WARNING, "Could not serve connection from " + socket.getRemoteSocketAddress(), e);
+                } finally {
+                    socket.close();
+                }
+            }
+        } finally {
+            server.close();
+            for (Container container : containers) {
+                try {
+                    Utils.stop(manager, container);
+                } catch (Exception e) {
+                    log.log(Level.WARNING, "Could not stop container " + container.getName(), e);
+                }
+            }
+            manager.shutdown();
+            daemonFile.delete();
+        }
+    }
+
+    private static void writeDaemonFile(File daemonFile, int port, String token) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(PORT, String.valueOf(port));
+        properties.setProperty(TOKEN, token);
+        File temp = new File(daemonFile.getPath() + ".tmp");
+        temp.delete();
+        if (!temp.createNewFile()) {
+            throw new IOException("Could not create " + temp);
+        }
+        ownerOnly(temp);
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            properties.store(out, "Arquillian daemon");
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(daemonFile)) {
+            throw new IOException("Could not write " + daemonFile);
+        }
+    }
+
+    /**
+     * Restrict the file to its owner, with the File permission methods of Java 6 when available.
+     */
+    private static void ownerOnly(File file) throws IOException {
+        try {
+            Method readable = File.class.getMethod("setReadable", boolean.class, boolean.class);
+            Method writable = File.class.getMethod("setWritable", boolean.class, boolean.class);
+            boolean restricted = Boolean.TRUE.equals(readable.invoke(file, false, false))
+                    && Boolean.TRUE.equals(readable.invoke(file, true, true))
+                    && Boolean.TRUE.equals(writable.invoke(file, false, false))
+                    && Boolean.TRUE.equals(writable.invoke(file, true, true));
+            if (!restricted) {
+                throw new IOException("Could not restrict " + file + " to its owner");
+            }
+        } catch (NoSuchMethodException e) {
+            // Java 5, the file permissions follow the umask
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Could not restrict " + file + " to its owner: " + e);
+        }
+    }
+
+    private boolean handle(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+        String line = in.readLine();
+        boolean running = true;
+        StringBuilder reply = new StringBuilder(OK);
+        try {
+            String[] command = line == null ? new String[] { "" } : line.split(SEPARATOR, -1);
+            if (!authorized(command[0])) {
+                throw new SecurityException("Command without the token of the daemon file rejected");
+            }
+            running = execute(Arrays.asList(command).subList(1, command.length).toArray(new String[0]), reply);
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Could not execute command", e);
+            reply = new StringBuilder(ERROR).append(SEPARATOR).append(e);
+        }
+        out.write(reply.toString().replace('\n', ' ') + "\n");
+        out.flush();
+        return running;
+    }
+
+    private boolean authorized(String received) throws IOException {
+        // Compare in constant time, not to leak the token through the reply time
+        return MessageDigest.isEqual(Fingerprint.toHex(token).getBytes("UTF-8"), received.getBytes("UTF-8"));
+    }
+
+    /**
+     * Execute the command, appending what it returns to the reply.
+     *
+     * @return false if the daemon must stop
+     */
+    private boolean execute(String[] command, StringBuilder reply) throws Exception {
+        if (command.length == 0) {
+            throw new IllegalArgumentException("No command");
+        }
+        String name = command[0];
+        if ("PING".equals(name)) {
+            return true;
+        }
+        if ("STOP".equals(name)) {
+            return false;
+        }
+        if ("DEPLOY".equals(name)) {
+            for (Container container : containers(command[1])) {
+                ProtocolMetaData metadata = deploy(container, new File(command[2]), command[3]);
+                // the base URLs of the HTTP contexts, for the client to record and probe the deployment
+                StringBuilder urls = new StringBuilder();
+                for (URL url : Readiness.urls(metadata, Collections.singletonList("/"))) {
+                    urls.append(urls.length() == 0 ? "" : " ").append(url);
+                }
+                reply.append(SEPARATOR).append(container.getName()).append(SEPARATOR).append(urls);
+            }
+            return true;
+        }
+        if ("PROPERTIES".equals(name)) {
+            for (Container container : containers(command[1])) {
+                Map<String, String> configured = container.getContainerConfiguration().getContainerProperties();
+                StringBuilder values = new StringBuilder();
+                for (String property : command[2].split(",")) {
+                    if (configured.get(property) != null) {
+                        values.append(values.length() == 0 ? "" : " ").append(property).append('=')
+                                .append(configured.get(property));
+                    }
+                }
+                reply.append(SEPARATOR).append(container.getName()).append(SEPARATOR).append(values);
+            }
+            return true;
+        }
+        if ("UNDEPLOY".equals(name)) {
+            for (Container container : containers(command[1])) {
+                undeploy(container, new File(command[2]), command[3]);
+            }
+            return true;
+        }
+        throw new IllegalArgumentException("Unknown command: " + name);
+    }
+
+    private List<Container> containers(String names) {
+        if (names.length() == 0) {
+            return containers;
+        }
+        List<Container> selected = new ArrayList<Container>();
+        for (String name : names.split(",")) {
+            Container found = null;
+            for (Container container : containers) {
+                if (container.getName().equals(name.trim())) {
+                    found = container;
+                }
+            }
+            if (found == null) {
+                throw new IllegalArgumentException("Container '" + name + "' is not started by this daemon");
+            }
+            selected.add(found);
+        }
+        return selected;
+    }
+
+    private ProtocolMetaData deploy(Container container, File source, String name) throws Exception {
+        // keyed by name, the source of a repackaged archive changes with its content
+        String key = container.getName() + SEPARATOR + name;
+        Deployment previous = deployments.remove(key);
+        if (previous != null) {
+            Utils.undeploy(manager, container, previous);
+        }
+        Deployment deployment = Utils.deployment(importArchive(source, name));
+        ProtocolMetaData metadata = Utils.deploy(manager, container, deployment);
+        if (metadata != null) {
+            log.info("Deployed " + name + " on " + container.getName() + ": " + metadata);
+        }
+        deployments.put(key, deployment);
+        return metadata;
+    }
+
+    private void undeploy(Container container, File source, String name) throws Exception {
+        Deployment deployment = deployments.remove(container.getName() + SEPARATOR + name);
+        if (deployment == null) {
+            deployment = Utils.deployment(importArchive(source, name));
+        }
+        Utils.undeploy(manager, container, deployment);
+    }
+
+    private static Archive<?> importArchive(File source, String name) {
+        if (source.isDirectory()) {
+            return ShrinkWrap.create(ExplodedImporter.class, name).importDirectory(source).as(GenericArchive.class);
+        }
+        return ShrinkWrap.create(ZipImporter.class, name).importFrom(source).as(GenericArchive.class);
+    }
+}
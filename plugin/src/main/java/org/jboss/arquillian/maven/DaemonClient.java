@@ -0,0 +1,210 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jboss.arquillian.container.spi.client.container.DeploymentException;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
+
+/**
+ * Sends commands to a running {@link Daemon}.
+ *
+ * @version $Revision: $
+ */
+final class DaemonClient {
+
+    /**
+     * The time in milliseconds to connect to the daemon and to get the reply to a PING, a daemon not answering in time
+     * is considered gone.
+     */
+    static final int PING_TIMEOUT = 5000;
+
+    /**
+     * The time in milliseconds to get the reply to a command, long enough for a container to deploy or stop.
+     */
+    static final int COMMAND_TIMEOUT = 10 * 60 * 1000;
+
+    private final int port;
+
+    private final String token;
+
+    private DaemonClient(int port, String token) {
+        this.port = port;
+        this.token = token;
+    }
+
+    /**
+     * Connect to the daemon described by the given daemon file.
+     *
+     * @param daemonFile the file written by the daemon, may be null
+     * @return the client, or null if no daemon is running
+     */
+    static DaemonClient connect(File daemonFile) {
+        if (daemonFile == null || !daemonFile.isFile()) {
+            return null;
+        }
+        try {
+            Properties properties = new Properties();
+            InputStream in = new FileInputStream(daemonFile);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            DaemonClient client = new DaemonClient(Integer.parseInt(properties.getProperty(Daemon.PORT)),
+                    properties.getProperty(Daemon.TOKEN, ""));
+            client.send(PING_TIMEOUT, "PING");
+            return client;
+        } catch (Exception e) {
+            // Stale file left by a daemon that is gone, or a daemon that hangs
+            return null;
+        }
+    }
+
+    /**
+     * Deploy an archive to the daemon containers.
+     *
+     * @param containers the comma separated qualifiers of the containers, empty for all the daemon containers
+     * @param source the archive file or exploded directory
+     * @param name the archive name
+     * @return the metadata of the HTTP contexts of the deployment, by container
+     */
+    Map<String, ProtocolMetaData> deploy(String containers, File source, String name) throws DeploymentException {
+        String[] reply = command("DEPLOY", containers, source.getAbsolutePath(), name);
+        Map<String, ProtocolMetaData> deployed = new LinkedHashMap<String, ProtocolMetaData>();
+        for (int i = 1; i + 1 < reply.length; i += 2) {
+            List<URL> bases = new ArrayList<URL>();
+            if (reply[i + 1].length() > 0) {
+                for (String base : reply[i + 1].split(" ")) {
+                    try {
+                        bases.add(new URL(base));
+                    } catch (IOException e) {
+                        throw new DeploymentException("Invalid URL " + base + " returned by the daemon", e);
+                    }
+                }
+            }
+            deployed.put(reply[i], Readiness.metadata(name, bases));
+        }
+        return deployed;
+    }
+
+    /**
+     * Undeploy an archive from the daemon containers.
+     *
+     * @param containers the comma separated qualifiers of the containers, empty for all the daemon containers
+     * @param source the archive file or exploded directory
+     * @param name the archive name
+     */
+    void undeploy(String containers, File source, String name) throws DeploymentException {
+        command("UNDEPLOY", containers, source.getAbsolutePath(), name);
+    }
+
+    /**
+     * Read properties of the configuration of the daemon containers.
+     *
+     * @param containers the comma separated qualifiers of the containers, empty for all the daemon containers
+     * @param names the names of the properties
+     * @return the values of the properties set in the configuration, by property name, by container
+     */
+    Map<String, Map<String, String>> properties(String containers, Collection<String> names)
+            throws DeploymentException {
+        StringBuilder list = new StringBuilder();
+        for (String name : names) {
+            list.append(list.length() == 0 ? "" : ",").append(name);
+        }
+        String[] reply = command("PROPERTIES", containers, list.toString());
+        Map<String, Map<String, String>> properties = new LinkedHashMap<String, Map<String, String>>();
+        for (int i = 1; i + 1 < reply.length; i += 2) {
+            Map<String, String> values = new LinkedHashMap<String, String>();
+            for (String property : reply[i + 1].split(" ")) {
+                int equals = property.indexOf('=');
+                if (equals > 0) {
+                    values.put(property.substring(0, equals), property.substring(equals + 1));
+                }
+            }
+            properties.put(reply[i], values);
+        }
+        return properties;
+    }
+
+    /**
+     * Stop the daemon containers and the daemon.
+     */
+    void stop() throws DeploymentException {
+        command("STOP");
+    }
+
+    private String[] command(String... command) throws DeploymentException {
+        try {
+            return send(COMMAND_TIMEOUT, command);
+        } catch (IOException e) {
+            throw new DeploymentException("Could not send " + command[0] + " to the daemon on port " + port, e);
+        }
+    }
+
+    /**
+     * Send the command, preceded by the token of the daemon file.
+     *
+     * @param timeout the time in milliseconds to wait for the reply
+     * @return the fields of the reply
+     */
+    private String[] send(int timeout, String... command) throws IOException, DeploymentException {
+        StringBuilder line = new StringBuilder(token);
+        for (String field : command) {
+            line.append(Daemon.SEPARATOR).append(field);
+        }
+
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), PING_TIMEOUT);
+            socket.setSoTimeout(timeout);
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+            out.write(line.append('\n').toString());
+            out.flush();
+            String reply = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8")).readLine();
+            if (reply == null) {
+                throw new IOException("No reply from the daemon");
+            }
+            if (!reply.startsWith(Daemon.OK)) {
+                throw new DeploymentException("Daemon failed to " + command[0] + ": "
+                        + reply.substring(reply.indexOf(Daemon.SEPARATOR) + 1));
+            }
+            return reply.split(Daemon.SEPARATOR, -1);
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -17,9 +17,13 @@
  */
 package org.jboss.arquillian.maven;
 
+import java.util.List;
+
 import org.jboss.arquillian.container.spi.Container;
 import org.jboss.arquillian.container.spi.client.container.DeploymentException;
 import org.jboss.arquillian.container.spi.client.container.LifecycleException;
+import org.jboss.arquillian.container.spi.client.deployment.Deployment;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
 import org.jboss.arquillian.core.spi.Manager;
 import org.jboss.shrinkwrap.api.Archive;
 
@@ -49,6 +53,16 @@ public final class Deploy extends BaseCommand {
                 "Container not started. The container must be started before deploy. If the container is remote use \"arquillian:deployRemote\"");
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#batchSupported()
+     */
+    @Override
+    boolean batchSupported() {
+        return true;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -57,12 +71,65 @@ public final class Deploy extends BaseCommand {
      */
     @Override
     public void perform(final Manager manager, final Container container) throws DeploymentException, LifecycleException {
-        Archive<?> deployment = createDeployment();
-        getLog().info("Perform deploy on " + container.getName() + " of deployment " + deployment.getName());
-        execute(manager, container, deployment);
+        if (isBatch()) {
+            performBatch(manager, container, false, new Batch.Operation() {
+                @Override
+                public void perform(Deployable deployable, Archive<?> archive) throws DeploymentException {
+                    getLog().info("Perform deploy on " + container.getName() + " of deployment " + archive.getName());
+                    Deployment deployment = Utils.deployment(archive);
+                    awaitReady(container, archive, execute(timer(), manager, container, deployment));
+                    deployments().put(container.getName(), deployable.file(), deployment);
+                }
+            });
+            return;
+        }
+        if (isUnchanged(container)) {
+            getLog().info("Skip deploy on " + container.getName() + " of unchanged deployment " + filename());
+            return;
+        }
+        Archive<?> archive = createDeployment();
+        getLog().info("Perform deploy on " + container.getName() + " of deployment " + archive.getName());
+        Deployment deployment = Utils.deployment(archive);
+        ProtocolMetaData metadata = execute(timer(), manager, container, deployment);
+        awaitReady(container, archive, metadata);
+        deployments().put(container.getName(), source(), deployment);
+        deployed(container, metadata);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#afterPerform(org.jboss.arquillian.core.spi.Manager, java.util.List)
+     */
+    @Override
+    void afterPerform(Manager manager, List<Container> containers) throws DeploymentException {
+        publishPool();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#performOnDaemon(org.jboss.arquillian.maven.DaemonClient)
+     */
+    @Override
+    boolean performOnDaemon(DaemonClient daemon) throws DeploymentException {
+        if (isBatch()) {
+            for (Deployable deployable : batch().order()) {
+                getLog().info("Perform deploy on daemon of deployment " + deployable.name());
+                deployOnDaemon(daemon, deployable.file(), deployable.name());
+            }
+            return true;
+        }
+        getLog().info("Perform deploy on daemon of deployment " + filename());
+        deployOnDaemon(daemon, source(), filename());
+        return true;
     }
 
-    static void execute(Manager manager, Container container, Archive<?> deployment) throws DeploymentException {
-        Utils.deploy(manager, container, deployment);
+    static ProtocolMetaData execute(Metrics.Timer timer, Manager manager, Container container, Deployment deployment)
+            throws DeploymentException {
+        long start = timer.begin();
+        ProtocolMetaData metadata = Utils.deploy(manager, container, deployment);
+        timer.record(Metrics.DEPLOY, container.getName(), start);
+        return metadata;
     }
 }
@@ -17,10 +17,17 @@
  */
 package org.jboss.arquillian.maven;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
 import org.jboss.arquillian.container.spi.Container;
 import org.jboss.arquillian.container.spi.client.container.DeploymentException;
 import org.jboss.arquillian.container.spi.client.container.LifecycleException;
+import org.jboss.arquillian.container.spi.client.deployment.Deployment;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
 import org.jboss.arquillian.core.spi.Manager;
+import org.jboss.arquillian.core.spi.ServiceLoader;
 import org.jboss.shrinkwrap.api.Archive;
 
 /**
@@ -33,6 +40,15 @@ import org.jboss.shrinkwrap.api.Archive;
  *
  */
 public final class DeployRemote extends BaseCommand {
+
+    /**
+     * Keep the hashes of the entries of the uploaded archive, and upload only the entries changed since, when a
+     * PartialDeployer supports the container. Otherwise the whole archive is uploaded.
+     *
+     * @parameter expression="${arquillian.delta}" default-value="false"
+     */
+    private boolean delta;
+
     private boolean managerStartedByMe = false;
 
     /*
@@ -59,17 +75,91 @@ public final class DeployRemote extends BaseCommand {
      */
     @Override
     public void perform(final Manager manager, final Container container) throws DeploymentException, LifecycleException {
+        if (isUnchanged(container)) {
+            getLog().info("Skip deploy on " + container.getName() + " of unchanged deployment " + filename());
+            return;
+        }
+
         if (managerStartedByMe)
-            Start.execute(manager, container);
+            Start.execute(timer(), manager, container);
 
         deploy(manager, container);
 
-        Stop.execute(manager, container);
+        Stop.execute(timer(), manager, container);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#afterPerform(org.jboss.arquillian.core.spi.Manager, java.util.List)
+     */
+    @Override
+    void afterPerform(Manager manager, List<Container> containers) {
+        manager.shutdown();
     }
 
     private void deploy(Manager manager, Container container) throws DeploymentException {
-        Archive<?> deployment = createDeployment();
-        getLog().info("Perform deploy on " + container.getName() + " of deployment " + deployment.getName());
-        Deploy.execute(manager, container, deployment);
+        Archive<?> archive = createDeployment();
+        getLog().info("Perform deploy on " + container.getName() + " of deployment " + archive.getName());
+        long size = source().isFile() ? source().length() : EntryManifest.zippedSize(archive);
+        Deployment deployment = Utils.deployment(archive);
+
+        File manifestFile = manifestFile(container, archive.getName());
+        PartialDeployer deployer = delta ? partialDeployer(manager, container) : null;
+        if (delta && deployer == null) {
+            getLog().warn("delta has no effect on " + container.getName()
+                    + ", no PartialDeployer supports it, uploading the whole archive");
+        }
+        // the entries are only hashed when they can be uploaded on their own
+        EntryManifest manifest = null;
+        EntryManifest previous = null;
+        if (deployer != null) {
+            try {
+                manifest = EntryManifest.of(archive);
+                previous = EntryManifest.read(manifestFile);
+            } catch (IOException e) {
+                throw new DeploymentException("Could not hash the entries of " + archive.getName(), e);
+            }
+        }
+
+        long transferred;
+        ProtocolMetaData metadata;
+        if (previous == null) {
+            metadata = Deploy.execute(timer(), manager, container, deployment);
+            transferred = size;
+        } else {
+            List<String> changed = manifest.changed(previous);
+            List<String> removed = manifest.removed(previous);
+            getLog().info(changed.size() + " entries changed and " + removed.size() + " removed of " + manifest.size()
+                    + " entries of " + archive.getName());
+            Archive<?> changes = EntryManifest.entries(archive, changed);
+            long start = timer().begin();
+            metadata = changed.isEmpty() && removed.isEmpty() ? null : deployer.update(container, archive.getName(),
+                    changes, removed);
+            timer().record(Metrics.DEPLOY, container.getName(), start);
+            transferred = changed.isEmpty() ? 0 : EntryManifest.zippedSize(changes);
+        }
+        getLog().info("Transferred " + transferred + " of " + size + " bytes of " + archive.getName() + " to "
+                + container.getName());
+
+        if (manifest != null) {
+            try {
+                manifest.write(manifestFile);
+            } catch (IOException e) {
+                throw new DeploymentException("Could not write " + manifestFile, e);
+            }
+        }
+        awaitReady(container, archive, metadata);
+        deployments().put(container.getName(), source(), deployment);
+        deployed(container, metadata);
+    }
+
+    private PartialDeployer partialDeployer(Manager manager, Container container) {
+        for (PartialDeployer deployer : manager.resolve(ServiceLoader.class).all(PartialDeployer.class)) {
+            if (deployer.supports(container)) {
+                return deployer;
+            }
+        }
+        return null;
     }
 }
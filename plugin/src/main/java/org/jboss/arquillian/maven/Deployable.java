@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An archive deployed or undeployed as part of a batch, configured as a &lt;deployable&gt; of the deployables
+ * parameter.
+ *
+ * @version $Revision: $
+ */
+public class Deployable {
+
+    /**
+     * The archive file, or exploded archive directory.
+     */
+    private File file;
+
+    /**
+     * The name of the archive, as referred to by dependsOn. The default is the name of the file.
+     */
+    private String name;
+
+    /**
+     * The names of the archives to deploy before, and undeploy after, this one.
+     */
+    private String[] dependsOn;
+
+    public Deployable() {
+    }
+
+    Deployable(File file, String name, List<String> dependsOn) {
+        this.file = file;
+        this.name = name;
+        this.dependsOn = dependsOn.toArray(new String[dependsOn.size()]);
+    }
+
+    /**
+     * The archive file or exploded archive directory.
+     */
+    public File file() {
+        return file;
+    }
+
+    /**
+     * The name of the archive.
+     */
+    public String name() {
+        return name == null ? file.getName() : name;
+    }
+
+    /**
+     * The names of the archives this one depends on.
+     */
+    public List<String> dependsOn() {
+        List<String> names = new ArrayList<String>();
+        if (dependsOn != null) {
+            for (String dependency : Arrays.asList(dependsOn)) {
+                names.add(dependency.trim());
+            }
+        }
+        return names;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return name();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.arquillian.container.spi.client.deployment.Deployment;
+
+/**
+ * The deployments made in this build, by container name and archive file, kept in the plugin context so an archive is
+ * undeployed with the Deployment it was deployed with, without importing the file again.
+ *
+ * @version $Revision: $
+ */
+final class Deployments {
+
+    private static final char SEPARATOR = '|';
+
+    private final ConcurrentMap<String, Deployment> deployments = new ConcurrentHashMap<String, Deployment>();
+
+    /**
+     * Record the deployment of the file to the container, replacing an earlier one.
+     */
+    void put(String container, File source, Deployment deployment) {
+        deployments.put(key(container, source), deployment);
+    }
+
+    /**
+     * @return the deployment of the file to the container, null if the file was not deployed to it in this build
+     */
+    Deployment get(String container, File source) {
+        return deployments.get(key(container, source));
+    }
+
+    /**
+     * Forget the deployment of the file to the container.
+     *
+     * @return the deployment, null if the file was not deployed to the container in this build
+     */
+    Deployment remove(String container, File source) {
+        return deployments.remove(key(container, source));
+    }
+
+    /**
+     * @return true if the file is deployed to a container in this build
+     */
+    boolean contains(File source) {
+        String suffix = SEPARATOR + source.getAbsolutePath();
+        for (String key : deployments.keySet()) {
+            if (key.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String key(String container, File source) {
+        return container + SEPARATOR + source.getAbsolutePath();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
+
+/**
+ * The metadata of the archives deployed in this build, by container, kept in the plugin context for later goals.
+ *
+ * @version $Revision: $
+ */
+final class Endpoints {
+
+    private final Map<String, Map<String, ProtocolMetaData>> metadata = new ConcurrentHashMap<String, Map<String, ProtocolMetaData>>();
+
+    /**
+     * Record the metadata returned by the container for the deployed archive.
+     */
+    synchronized void put(String container, String archive, ProtocolMetaData deployed) {
+        Map<String, ProtocolMetaData> archives = metadata.get(container);
+        if (archives == null) {
+            archives = new ConcurrentHashMap<String, ProtocolMetaData>();
+            metadata.put(container, archives);
+        }
+        archives.put(archive, deployed);
+    }
+
+    /**
+     * Forget the metadata of the undeployed archive.
+     */
+    synchronized void remove(String container, String archive) {
+        Map<String, ProtocolMetaData> archives = metadata.get(container);
+        if (archives != null) {
+            archives.remove(archive);
+        }
+    }
+
+    /**
+     * The base URLs, ending with a slash, of the HTTP contexts of the archives deployed to the container.
+     *
+     * @param container the name of the container
+     * @return the base URLs, empty if nothing with an HTTP context is deployed
+     */
+    List<URL> baseUrls(String container) throws MalformedURLException {
+        Map<String, ProtocolMetaData> archives = metadata.get(container);
+        if (archives == null) {
+            return Collections.emptyList();
+        }
+        List<URL> urls = new ArrayList<URL>();
+        for (ProtocolMetaData deployed : archives.values()) {
+            urls.addAll(Readiness.urls(deployed, Collections.singletonList("/")));
+        }
+        return urls;
+    }
+}
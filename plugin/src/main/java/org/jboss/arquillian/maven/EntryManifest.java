@@ -0,0 +1,172 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePath;
+import org.jboss.shrinkwrap.api.GenericArchive;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+
+/**
+ * The hashes of the entries of an archive, to find the entries changed since the archive was last uploaded.
+ *
+ * @version $Revision: $
+ */
+final class EntryManifest {
+
+    private final Map<String, String> hashes;
+
+    private EntryManifest(Map<String, String> hashes) {
+        this.hashes = hashes;
+    }
+
+    /**
+     * The manifest of the entries of the archive.
+     */
+    static EntryManifest of(Archive<?> archive) throws IOException {
+        Map<String, String> hashes = new TreeMap<String, String>();
+        byte[] buffer = new byte[8192];
+        for (Map.Entry<ArchivePath, Node> entry : archive.getContent().entrySet()) {
+            if (entry.getValue().getAsset() == null) {
+                continue;
+            }
+            MessageDigest digest = Fingerprint.sha1();
+            InputStream in = entry.getValue().getAsset().openStream();
+            try {
+                Fingerprint.update(digest, in, buffer);
+            } finally {
+                in.close();
+            }
+            hashes.put(entry.getKey().get(), Fingerprint.toHex(digest.digest()));
+        }
+        return new EntryManifest(hashes);
+    }
+
+    /**
+     * The manifest written to the file.
+     *
+     * @return the manifest, or null if the file does not exist
+     */
+    static EntryManifest read(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        Map<String, String> hashes = new TreeMap<String, String>();
+        for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+            hashes.put((String) entry.getKey(), (String) entry.getValue());
+        }
+        return new EntryManifest(hashes);
+    }
+
+    void write(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        Properties properties = new Properties();
+        properties.putAll(hashes);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "Hashes of the entries of the last uploaded archive");
+        } finally {
+            out.close();
+        }
+    }
+
+    int size() {
+        return hashes.size();
+    }
+
+    /**
+     * @return the paths of the entries added or modified since the previous manifest
+     */
+    List<String> changed(EntryManifest previous) {
+        List<String> changed = new ArrayList<String>();
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            if (!entry.getValue().equals(previous.hashes.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the paths of the entries of the previous manifest no longer in this one
+     */
+    List<String> removed(EntryManifest previous) {
+        List<String> removed = new ArrayList<String>();
+        for (String path : previous.hashes.keySet()) {
+            if (!hashes.containsKey(path)) {
+                removed.add(path);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * An archive of the entries of the archive at the paths.
+     */
+    static Archive<?> entries(Archive<?> archive, List<String> paths) {
+        GenericArchive entries = ShrinkWrap.create(GenericArchive.class, archive.getName());
+        for (String path : paths) {
+            entries.add(archive.get(path).getAsset(), path);
+        }
+        return entries;
+    }
+
+    /**
+     * The number of bytes of the archive exported as zip, as uploaded to a container.
+     */
+    static long zippedSize(Archive<?> archive) {
+        final long[] count = new long[1];
+        archive.as(ZipExporter.class).exportTo(new OutputStream() {
+            @Override
+            public void write(int b) {
+                count[0]++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                count[0] += len;
+            }
+        });
+        return count[0];
+    }
+}
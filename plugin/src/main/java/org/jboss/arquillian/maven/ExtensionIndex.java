@@ -0,0 +1,265 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.jboss.arquillian.core.spi.ExtensionLoader;
+import org.jboss.arquillian.core.spi.LoadableExtension;
+
+/**
+ * Serves the Arquillian extensions of a class path from an index, to the Manager started with it as context class
+ * loader.
+ *
+ * Arquillian looks up an {@link ExtensionLoader} in the context class loader before scanning the class path for
+ * {@link LoadableExtension}s. This class loader answers the lookup with {@link IndexedExtensionLoader}, which creates
+ * the extensions listed in the index instead. The index is kept in a file with the fingerprint of the class path it
+ * was built from, and is rebuilt when the jars or the service files of the class path directories change.
+ *
+ * @version $Revision: $
+ */
+final class ExtensionIndex extends ClassLoader {
+
+    static final String EXTENSION_LOADER_SERVICE = "META-INF/services/" + ExtensionLoader.class.getName();
+
+    static final String LOADABLE_EXTENSION_SERVICE = "META-INF/services/" + LoadableExtension.class.getName();
+
+    private static final String FINGERPRINT = "fingerprint";
+
+    private static final String EXTENSIONS = "extensions";
+
+    private final List<String> extensions;
+
+    private final boolean read;
+
+    private ExtensionIndex(ClassLoader parent, List<String> extensions, boolean read) {
+        super(parent);
+        this.extensions = extensions;
+        this.read = read;
+    }
+
+    /**
+     * A class loader serving the extensions of the class path of parent from the index in file, building the index if
+     * it is missing or built from another class path.
+     *
+     * @param parent the class loader everything else is loaded from
+     * @param file the file the index is kept in
+     * @return the class loader, or null if an ExtensionLoader of the class path discovers the extensions
+     * @throws IOException if the index or the service files can not be read, or the index can not be written
+     */
+    static ExtensionIndex create(ClassLoader parent, File file) throws IOException {
+        String fingerprint = fingerprint(parent);
+        List<String> extensions = read(file, fingerprint);
+        if (extensions != null) {
+            return new ExtensionIndex(parent, extensions, true);
+        }
+
+        if (parent.getResources(EXTENSION_LOADER_SERVICE).hasMoreElements()) {
+            return null;
+        }
+        extensions = scan(parent);
+        write(file, fingerprint, extensions);
+        return new ExtensionIndex(parent, extensions, false);
+    }
+
+    /**
+     * The class names of the extensions, in class path order.
+     */
+    List<String> extensions() {
+        return extensions;
+    }
+
+    /**
+     * Whether the extensions were read from an existing index, rather than discovered on the class path.
+     */
+    boolean isRead() {
+        return read;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.ClassLoader#getResources(java.lang.String)
+     */
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+        if (EXTENSION_LOADER_SERVICE.equals(name)) {
+            return Collections.enumeration(Collections.singletonList(extensionLoaderService()));
+        }
+        return super.getResources(name);
+    }
+
+    private static URL extensionLoaderService() throws IOException {
+        final byte[] content = IndexedExtensionLoader.class.getName().getBytes("UTF-8");
+        return new URL("arquillian-index", null, -1, "/" + EXTENSION_LOADER_SERVICE, new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL url) {
+                return new URLConnection(url) {
+                    @Override
+                    public void connect() {
+                    }
+
+                    @Override
+                    public InputStream getInputStream() {
+                        return new ByteArrayInputStream(content);
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * The hash identifying the extensions of a class path: the URLs of the class path of the class loader and its
+     * parents, with the modification time and size of the jars and of the service files of the directories.
+     *
+     * @param classLoader the class loader
+     * @return the hex encoded hash
+     */
+    static String fingerprint(ClassLoader classLoader) {
+        MessageDigest digest = Fingerprint.sha1();
+        for (ClassLoader current = classLoader; current != null; current = current.getParent()) {
+            if (!(current instanceof URLClassLoader)) {
+                continue;
+            }
+            for (URL url : ((URLClassLoader) current).getURLs()) {
+                Fingerprint.update(digest, url.toString());
+                File file = toFile(url);
+                if (file == null) {
+                    continue;
+                }
+                if (file.isDirectory()) {
+                    update(digest, new File(file, LOADABLE_EXTENSION_SERVICE));
+                    update(digest, new File(file, EXTENSION_LOADER_SERVICE));
+                } else {
+                    update(digest, file);
+                }
+            }
+        }
+        return Fingerprint.toHex(digest.digest());
+    }
+
+    private static File toFile(URL url) {
+        if (!"file".equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(url.toURI());
+        } catch (URISyntaxException e) {
+            return new File(url.getPath());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void update(MessageDigest digest, File file) {
+        Fingerprint.update(digest, String.valueOf(file.lastModified()));
+        Fingerprint.update(digest, String.valueOf(file.length()));
+    }
+
+    private static List<String> read(File file, String fingerprint) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        if (!fingerprint.equals(properties.getProperty(FINGERPRINT))) {
+            return null;
+        }
+        String value = properties.getProperty(EXTENSIONS, "").trim();
+        if (value.length() == 0) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(value.split(","));
+    }
+
+    private static void write(File file, String fingerprint, List<String> extensions) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(FINGERPRINT, fingerprint);
+        StringBuilder value = new StringBuilder();
+        for (String extension : extensions) {
+            value.append(value.length() == 0 ? "" : ",").append(extension);
+        }
+        properties.setProperty(EXTENSIONS, value.toString());
+
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "Arquillian extensions");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * The extensions listed in the service files of the class path, as Arquillian discovers them: lines starting
+     * with ! exclude an extension listed by another file.
+     */
+    private static List<String> scan(ClassLoader classLoader) throws IOException {
+        Set<String> names = new LinkedHashSet<String>();
+        Set<String> excluded = new HashSet<String>();
+        Enumeration<URL> services = classLoader.getResources(LOADABLE_EXTENSION_SERVICE);
+        while (services.hasMoreElements()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(services.nextElement().openStream(),
+                    "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    String name = (comment < 0 ? line : line.substring(0, comment)).trim();
+                    if (name.startsWith("!")) {
+                        excluded.add(name.substring(1).trim());
+                    } else if (name.length() > 0) {
+                        names.add(name);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        names.removeAll(excluded);
+        return new ArrayList<String>(names);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.Assignable;
+import org.jboss.shrinkwrap.api.exporter.ArchiveExportException;
+import org.jboss.shrinkwrap.api.exporter.FileExistsException;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+
+/**
+ * A {@link ZipExporter} that exports an archive by copying the file it was read from, without building the ZIP again.
+ *
+ * @version $Revision: $
+ */
+final class FileZipExporter implements ZipExporter {
+
+    private final Archive<?> archive;
+
+    private final File file;
+
+    FileZipExporter(Archive<?> archive, File file) {
+        this.archive = archive;
+        this.file = file;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.shrinkwrap.api.Assignable#as(java.lang.Class)
+     */
+    @Override
+    public <TYPE extends Assignable> TYPE as(Class<TYPE> clazz) {
+        return archive.as(clazz);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.shrinkwrap.api.exporter.StreamExporter#exportAsInputStream()
+     */
+    @Override
+    public InputStream exportAsInputStream() {
+        try {
+            return new BufferedInputStream(new FileInputStream(file));
+        } catch (IOException e) {
+            throw new ArchiveExportException("Could not open " + file, e);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.shrinkwrap.api.exporter.StreamExporter#exportTo(java.io.OutputStream)
+     */
+    @Override
+    public void exportTo(OutputStream target) {
+        try {
+            FileChannel source = new FileInputStream(file).getChannel();
+            try {
+                transfer(source, Channels.newChannel(target));
+            } finally {
+                source.close();
+            }
+        } catch (IOException e) {
+            throw new ArchiveExportException("Could not export " + file, e);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.shrinkwrap.api.exporter.StreamExporter#exportTo(java.io.File)
+     */
+    @Override
+    public void exportTo(File target) {
+        exportTo(target, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.shrinkwrap.api.exporter.StreamExporter#exportTo(java.io.File, boolean)
+     */
+    @Override
+    public void exportTo(File target, boolean overwrite) {
+        if (target.exists() && !overwrite) {
+            throw new FileExistsException("Target exists and we haven't been flagged to overwrite it: "
+                    + target.getAbsolutePath());
+        }
+        try {
+            FileChannel source = new FileInputStream(file).getChannel();
+            try {
+                FileChannel destination = new FileOutputStream(target).getChannel();
+                try {
+                    transfer(source, destination);
+                } finally {
+                    destination.close();
+                }
+            } finally {
+                source.close();
+            }
+        } catch (IOException e) {
+            throw new ArchiveExportException("Could not export " + file + " to " + target, e);
+        }
+    }
+
+    private static void transfer(FileChannel source, WritableByteChannel target) throws IOException {
+        long size = source.size();
+        long position = 0;
+        while (position < size) {
+            position += source.transferTo(position, size - position, target);
+        }
+    }
+}
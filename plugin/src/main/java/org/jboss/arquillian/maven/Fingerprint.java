@@ -0,0 +1,141 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Computes content hashes of archives.
+ *
+ * The hash covers the entry names and contents only, so an archive repackaged with the same content, but different
+ * timestamps or entry order, has the same fingerprint.
+ *
+ * @version $Revision: $
+ */
+final class Fingerprint {
+
+    private Fingerprint() {
+    }
+
+    /**
+     * The fingerprint of an archive file or exploded directory.
+     *
+     * @param source the archive file or exploded directory
+     * @return the hex encoded hash of the content
+     * @throws IOException if the archive can not be read
+     */
+    static String of(File source) throws IOException {
+        MessageDigest digest = sha1();
+        byte[] buffer = new byte[8192];
+        if (source.isDirectory()) {
+            List<String> paths = new ArrayList<String>();
+            collect(source, "", paths);
+            Collections.sort(paths);
+            for (String path : paths) {
+                update(digest, path);
+                InputStream in = new FileInputStream(new File(source, path));
+                try {
+                    update(digest, in, buffer);
+                } finally {
+                    in.close();
+                }
+            }
+        } else {
+            ZipFile zip = new ZipFile(source);
+            try {
+                List<String> names = new ArrayList<String>();
+                for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements();) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory()) {
+                        names.add(entry.getName());
+                    }
+                }
+                Collections.sort(names);
+                for (String name : names) {
+                    update(digest, name);
+                    InputStream in = zip.getInputStream(zip.getEntry(name));
+                    try {
+                        update(digest, in, buffer);
+                    } finally {
+                        in.close();
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    static void update(MessageDigest digest, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            digest.update((byte) (c >> 8));
+            digest.update((byte) c);
+        }
+        digest.update((byte) 0);
+    }
+
+    static void update(MessageDigest digest, InputStream in, byte[] buffer) throws IOException {
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+    }
+
+    private static void collect(File directory, String prefix, List<String> paths) {
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                String path = prefix + child.getName();
+                if (child.isDirectory()) {
+                    collect(child, path + "/", paths);
+                } else {
+                    paths.add(path);
+                }
+            }
+        }
+    }
+}
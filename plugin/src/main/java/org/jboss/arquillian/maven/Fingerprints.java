@@ -0,0 +1,159 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The fingerprints of the archives last deployed to each container, with the base URLs they were served under,
+ * persisted in a properties file so they survive between builds.
+ *
+ * @version $Revision: $
+ */
+final class Fingerprints {
+
+    private static final Object LOCK = new Object();
+
+    private static final String SEPARATOR = "|";
+
+    private static final String ENDPOINTS = SEPARATOR + "endpoints";
+
+    private final File file;
+
+    Fingerprints(File file) {
+        this.file = file;
+    }
+
+    /**
+     * The fingerprint of the archive last deployed from source to the container.
+     *
+     * @return the fingerprint, or null if the archive is not known to be deployed
+     */
+    String get(String container, File source) throws IOException {
+        synchronized (LOCK) {
+            return load().getProperty(key(container, source));
+        }
+    }
+
+    /**
+     * The base URLs of the HTTP contexts of the archive last deployed from source to the container.
+     *
+     * @return the base URLs, empty if unknown
+     */
+    List<URL> endpoints(String container, File source) throws IOException {
+        String endpoints;
+        synchronized (LOCK) {
+            endpoints = load().getProperty(key(container, source) + ENDPOINTS, "");
+        }
+        List<URL> urls = new ArrayList<URL>();
+        for (String url : endpoints.split(" ")) {
+            if (url.length() > 0) {
+                urls.add(new URL(url));
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Record the fingerprint of the archive deployed from source to the container, and the base URLs it is served
+     * under.
+     */
+    void put(String container, File source, String fingerprint, List<URL> endpoints) throws IOException {
+        StringBuilder urls = new StringBuilder();
+        for (URL url : endpoints) {
+            urls.append(urls.length() == 0 ? "" : " ").append(url);
+        }
+        synchronized (LOCK) {
+            Properties properties = load();
+            properties.setProperty(key(container, source), fingerprint);
+            properties.setProperty(key(container, source) + ENDPOINTS, urls.toString());
+            store(properties);
+        }
+    }
+
+    /**
+     * Forget the archive deployed from source to the container.
+     */
+    void remove(String container, File source) throws IOException {
+        synchronized (LOCK) {
+            Properties properties = load();
+            boolean removed = properties.remove(key(container, source)) != null;
+            if (properties.remove(key(container, source) + ENDPOINTS) != null || removed) {
+                store(properties);
+            }
+        }
+    }
+
+    /**
+     * Forget every archive deployed to the container, e.g. because it has been restarted.
+     */
+    void removeAll(String container) throws IOException {
+        synchronized (LOCK) {
+            Properties properties = load();
+            if (properties.keySet().removeAll(keysOf(properties, container))) {
+                store(properties);
+            }
+        }
+    }
+
+    private static List<Object> keysOf(Properties properties, String container) {
+        List<Object> keys = new ArrayList<Object>();
+        for (Object key : properties.keySet()) {
+            if (((String) key).startsWith(container + SEPARATOR)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static String key(String container, File source) {
+        return container + SEPARATOR + source.getAbsolutePath();
+    }
+
+    private Properties load() throws IOException {
+        Properties properties = new Properties();
+        if (file.isFile()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return properties;
+    }
+
+    private void store(Properties properties) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "Fingerprints of the deployed archives");
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,515 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * A class loader of a class path of jars and directories that finds classes and resources through an index of the
+ * packages of the jars, instead of searching every jar in turn.
+ *
+ * The index maps the directory of every jar entry to the jars containing it, and the name of every META-INF/services
+ * entry to the jars containing it, and is built when the class loader is created by reading the central directory of
+ * each jar. A jar is only opened once a class or resource of one of its packages is loaded. Directories are searched
+ * for every class and resource, in class path order with the jars.
+ *
+ * Unlike {@link URLClassLoader}, the Class-Path attribute of the manifests of the jars is not followed.
+ *
+ * @version $Revision: $
+ */
+final class IndexedClassLoader extends URLClassLoader {
+
+    static final String SERVICES = "META-INF/services/";
+
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int END_SIZE = 22;
+
+    private static final int SHORT_COMMENT = 256;
+
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    private static final int CENTRAL_SIZE = 46;
+
+    private static final int[] NONE = new int[0];
+
+    static {
+        // Java 7 and later only load classes concurrently for class loaders registered as parallel capable
+        try {
+            Method register = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            register.setAccessible(true);
+            register.invoke(null);
+        } catch (NoSuchMethodException e) {
+            // Java 6 locks the class loader while loading a class
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Element[] elements;
+
+    private final int[] directories;
+
+    private final Map<String, int[]> packages;
+
+    private final Map<String, int[]> services;
+
+    /**
+     * Index the class path.
+     *
+     * @param urls the file URLs of the jars and directories of the class path
+     * @param parent the parent class loader
+     * @throws IOException if a jar can not be read
+     */
+    IndexedClassLoader(URL[] urls, ClassLoader parent) throws IOException {
+        super(urls, parent);
+        elements = new Element[urls.length];
+        Map<String, List<Integer>> packages = new HashMap<String, List<Integer>>();
+        Map<String, List<Integer>> services = new HashMap<String, List<Integer>>();
+        List<Integer> directories = new ArrayList<Integer>();
+        for (int i = 0; i < urls.length; i++) {
+            Element element = new Element(urls[i]);
+            elements[i] = element;
+            if (element.directory) {
+                directories.add(i);
+            } else if (element.file.isFile()) {
+                for (String name : entries(element.file)) {
+                    if (name.startsWith(SERVICES)) {
+                        add(services, name, i);
+                    }
+                    add(packages, key(name), i);
+                }
+            }
+        }
+        this.directories = toArray(directories);
+        this.packages = toArrays(packages);
+        this.services = toArrays(services);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.net.URLClassLoader#findClass(java.lang.String)
+     */
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String path = name.replace('.', '/').concat(".class");
+        try {
+            for (Element element : candidates(path)) {
+                if (element.directory) {
+                    File file = new File(element.file, path);
+                    if (file.isFile()) {
+                        InputStream in = new FileInputStream(file);
+                        byte[] bytes = read(in, file.length());
+                        definePackageOf(name, null, element.url);
+                        return defineClass(name, bytes, 0, bytes.length, new CodeSource(element.url,
+                                (CodeSigner[]) null));
+                    }
+                    continue;
+                }
+                JarFile jar = element.jar();
+                JarEntry entry = jar.getJarEntry(path);
+                if (entry != null) {
+                    byte[] bytes = read(jar.getInputStream(entry), entry.getSize());
+                    definePackageOf(name, jar.getManifest(), element.url);
+                    return defineClass(name, bytes, 0, bytes.length, new CodeSource(element.url,
+                            entry.getCodeSigners()));
+                }
+            }
+        } catch (IOException e) {
+            throw new ClassNotFoundException(name, e);
+        }
+        throw new ClassNotFoundException(name);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.net.URLClassLoader#findResource(java.lang.String)
+     */
+    @Override
+    public URL findResource(String name) {
+        List<URL> found = find(name, true);
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.net.URLClassLoader#findResources(java.lang.String)
+     */
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        return Collections.enumeration(find(name, false));
+    }
+
+    /**
+     * Close the jars opened by this class loader. Classes and resources not loaded yet can not be loaded afterwards.
+     *
+     * This overrides URLClassLoader.close() of Java 7 and later, which does not know the jars opened here.
+     *
+     * @throws IOException if a jar can not be closed
+     */
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Element element : elements) {
+            try {
+                element.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private List<URL> find(String name, boolean first) {
+        List<URL> found = new ArrayList<URL>();
+        boolean service = name.startsWith(SERVICES);
+        try {
+            for (Element element : candidates(name)) {
+                if (element.directory) {
+                    File file = new File(element.file, name);
+                    if (!file.exists()) {
+                        continue;
+                    }
+                    found.add(file.toURI().toURL());
+                } else if (service || element.jar().getEntry(name) != null) {
+                    // the index holds the exact names of the services entries
+                    found.add(element.resource(name));
+                } else {
+                    continue;
+                }
+                if (first) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // as URLClassLoader, a jar that can not be read holds no resources
+        }
+        return found;
+    }
+
+    /**
+     * The jars indexed as containing name and the directories, in class path order.
+     */
+    private List<Element> candidates(String name) {
+        int[] jars = name.startsWith(SERVICES) ? services.get(name) : packages.get(key(name));
+        if (jars == null) {
+            jars = NONE;
+        }
+        List<Element> candidates = new ArrayList<Element>(jars.length + directories.length);
+        int j = 0;
+        int d = 0;
+        while (j < jars.length || d < directories.length) {
+            if (d == directories.length || (j < jars.length && jars[j] < directories[d])) {
+                candidates.add(elements[jars[j++]]);
+            } else {
+                candidates.add(elements[directories[d++]]);
+            }
+        }
+        return candidates;
+    }
+
+    private void definePackageOf(String className, Manifest manifest, URL url) {
+        int dot = className.lastIndexOf('.');
+        if (dot < 0) {
+            return;
+        }
+        String name = className.substring(0, dot);
+        if (getPackage(name) != null) {
+            return;
+        }
+        try {
+            if (manifest != null) {
+                definePackage(name, manifest, url);
+            } else {
+                definePackage(name, null, null, null, null, null, null, null);
+            }
+        } catch (IllegalArgumentException e) {
+            // defined by a class of the package loaded concurrently
+        }
+    }
+
+    /**
+     * The key of an entry name in the index of packages: the directory of a file, or the name of a directory, so the
+     * directory entries of the parent packages of a jar do not make it a candidate for every class of these packages.
+     */
+    static String key(String name) {
+        if (name.endsWith("/")) {
+            return name;
+        }
+        int slash = name.lastIndexOf('/');
+        return slash < 0 ? "" : name.substring(0, slash);
+    }
+
+    /**
+     * The entry names of a zip file, read from its central directory.
+     *
+     * @param file the zip file
+     * @return the entry names
+     * @throws IOException if the file is not a zip file or can not be read
+     */
+    static List<String> entries(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            // the end record is last unless followed by a zip comment, of at most 64k
+            int tail = (int) Math.min(size, END_SIZE + SHORT_COMMENT);
+            ByteBuffer end = read(channel, size - tail, tail);
+            int position = findEnd(end, tail);
+            if (position < 0 && tail < size) {
+                tail = (int) Math.min(size, END_SIZE + 0xffff);
+                end = read(channel, size - tail, tail);
+                position = findEnd(end, tail);
+            }
+            if (position < 0) {
+                throw new ZipException("No zip central directory found in " + file);
+            }
+
+            int count = end.getShort(position + 10) & 0xffff;
+            long length = end.getInt(position + 12) & 0xffffffffL;
+            if (count == 0xffff || length == 0xffffffffL || (end.getInt(position + 16) & 0xffffffffL) == 0xffffffffL) {
+                return zip64Entries(file);
+            }
+            // the central directory precedes the end record, even in archives prefixed with other content
+            ByteBuffer directory = read(channel, size - tail + position - length, (int) length);
+
+            List<String> names = new ArrayList<String>(count);
+            int offset = 0;
+            while (offset + CENTRAL_SIZE <= length && directory.getInt(offset) == CENTRAL_SIGNATURE) {
+                int nameLength = directory.getShort(offset + 28) & 0xffff;
+                int extraLength = directory.getShort(offset + 30) & 0xffff;
+                int commentLength = directory.getShort(offset + 32) & 0xffff;
+                byte[] name = new byte[nameLength];
+                directory.position(offset + CENTRAL_SIZE);
+                directory.get(name);
+                names.add(new String(name, "UTF-8"));
+                offset += CENTRAL_SIZE + nameLength + extraLength + commentLength;
+            }
+            return names;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static int findEnd(ByteBuffer buffer, int length) {
+        int position = length - END_SIZE;
+        while (position >= 0 && buffer.getInt(position) != END_SIGNATURE) {
+            position--;
+        }
+        return position;
+    }
+
+    private static List<String> zip64Entries(File file) throws IOException {
+        ZipFile zip = new ZipFile(file);
+        try {
+            List<String> names = new ArrayList<String>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                names.add(entries.nextElement().getName());
+            }
+            return names;
+        } finally {
+            zip.close();
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of zip file");
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static byte[] read(InputStream in, long size) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? (int) size : 4096);
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void add(Map<String, List<Integer>> index, String key, int element) {
+        List<Integer> elements = index.get(key);
+        if (elements == null) {
+            elements = new ArrayList<Integer>(1);
+            index.put(key, elements);
+        }
+        if (elements.isEmpty() || elements.get(elements.size() - 1) != element) {
+            elements.add(element);
+        }
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, List<Integer>> index) {
+        Map<String, int[]> arrays = new HashMap<String, int[]>(index.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Integer>> entry : index.entrySet()) {
+            arrays.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        return arrays;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * A jar or directory of the class path.
+     */
+    private static final class Element {
+
+        private final URL url;
+
+        private final File file;
+
+        private final boolean directory;
+
+        private volatile JarFile jar;
+
+        private boolean closed;
+
+        Element(URL url) throws IOException {
+            this.url = url;
+            try {
+                this.file = new File(url.toURI());
+            } catch (Exception e) {
+                throw new MalformedURLException("Not a file URL: " + url);
+            }
+            this.directory = file.isDirectory();
+        }
+
+        /**
+         * The jar, opened on first use.
+         */
+        JarFile jar() throws IOException {
+            JarFile opened = jar;
+            if (opened == null) {
+                synchronized (this) {
+                    opened = jar;
+                    if (opened == null) {
+                        if (closed) {
+                            throw new IOException("Class loader of " + file + " is closed");
+                        }
+                        opened = new JarFile(file);
+                        jar = opened;
+                    }
+                }
+            }
+            return opened;
+        }
+
+        synchronized void close() throws IOException {
+            closed = true;
+            JarFile opened = jar;
+            jar = null;
+            if (opened != null) {
+                opened.close();
+            }
+        }
+
+        /**
+         * The URL of a resource of the jar, read from the jar opened here instead of one cached by the JVM, so the jar
+         * is closed with the class loader.
+         */
+        URL resource(final String name) throws MalformedURLException {
+            return new URL(null, "jar:" + url + "!/" + encode(name), new URLStreamHandler() {
+                @Override
+                protected URLConnection openConnection(URL resource) {
+                    return new URLConnection(resource) {
+                        @Override
+                        public void connect() {
+                        }
+
+                        @Override
+                        public InputStream getInputStream() throws IOException {
+                            JarFile opened = jar();
+                            ZipEntry entry = opened.getEntry(name);
+                            if (entry == null) {
+                                throw new FileNotFoundException(name + " not found in " + file);
+                            }
+                            return opened.getInputStream(entry);
+                        }
+                    };
+                }
+            });
+        }
+
+        private static String encode(String name) throws MalformedURLException {
+            StringBuilder encoded = new StringBuilder(name.length());
+            try {
+                for (byte b : name.getBytes("UTF-8")) {
+                    if (b < 0 || b == ' ' || b == '%' || b == '#' || b == '?') {
+                        encoded.append('%').append(Character.forDigit((b >> 4) & 0xf, 16))
+                                .append(Character.forDigit(b & 0xf, 16));
+                    } else {
+                        encoded.append((char) b);
+                    }
+                }
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+            return encoded.toString();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.jboss.arquillian.core.spi.ExtensionLoader;
+import org.jboss.arquillian.core.spi.LoadableExtension;
+
+/**
+ * Creates the extensions listed by the {@link ExtensionIndex} set as context class loader, instead of scanning the
+ * class path for them.
+ *
+ * Arquillian creates it when the context class loader serves it as the ExtensionLoader service.
+ *
+ * @version $Revision: $
+ */
+public final class IndexedExtensionLoader implements ExtensionLoader {
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.core.spi.ExtensionLoader#load()
+     */
+    @Override
+    public Collection<LoadableExtension> load() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        if (!(classLoader instanceof ExtensionIndex)) {
+            throw new IllegalStateException("No extension index set as context class loader");
+        }
+
+        List<LoadableExtension> extensions = new ArrayList<LoadableExtension>();
+        for (String name : ((ExtensionIndex) classLoader).extensions()) {
+            try {
+                // extensions may be package private, as the Arquillian loader creates them
+                Constructor<? extends LoadableExtension> constructor = classLoader.loadClass(name)
+                        .asSubclass(LoadableExtension.class).getDeclaredConstructor();
+                constructor.setAccessible(true);
+                extensions.add(constructor.newInstance());
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not create extension " + name, e);
+            }
+        }
+        return extensions;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Helpers for the JSON reports written by the goals.
+ *
+ * @version $Revision: $
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * The value as a JSON string literal.
+     */
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * The value as a JSON number with three decimals.
+     */
+    static String number(double value) {
+        return String.format(Locale.ENGLISH, "%.3f", value);
+    }
+
+    /**
+     * Parse a JSON document.
+     *
+     * @param json the document
+     * @return a Map for an object, a List for an array, a Double, String, Boolean or null
+     * @throws IllegalArgumentException if the document is not valid JSON
+     */
+    static Object parse(String json) {
+        Parser parser = new Parser(json);
+        Object value = parser.value();
+        parser.skipWhitespace();
+        if (parser.position < json.length()) {
+            throw parser.error("Unexpected content");
+        }
+        return value;
+    }
+
+    private static final class Parser {
+
+        private final String json;
+
+        private int position;
+
+        Parser(String json) {
+            this.json = json;
+        }
+
+        Object value() {
+            skipWhitespace();
+            if (position >= json.length()) {
+                throw error("Unexpected end");
+            }
+            char c = json.charAt(position);
+            switch (c) {
+            case '{':
+                return object();
+            case '[':
+                return array();
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                return number();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> object = new LinkedHashMap<String, Object>();
+            position++;
+            if (next() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                if (next() != '"') {
+                    throw error("Expected a name");
+                }
+                String name = string();
+                if (next() != ':') {
+                    throw error("Expected ':'");
+                }
+                position++;
+                object.put(name, value());
+                char c = next();
+                position++;
+                if (c == '}') {
+                    return object;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or '}'");
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> array = new ArrayList<Object>();
+            position++;
+            if (next() == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(value());
+                char c = next();
+                position++;
+                if (c == ']') {
+                    return array;
+                }
+                if (c != ',') {
+                    throw error("Expected ',' or ']'");
+                }
+            }
+        }
+
+        private String string() {
+            StringBuilder string = new StringBuilder();
+            position++;
+            while (position < json.length()) {
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return string.toString();
+                }
+                if (c != '\\') {
+                    string.append(c);
+                    continue;
+                }
+                if (position >= json.length()) {
+                    break;
+                }
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                case 'b':
+                    string.append('\b');
+                    break;
+                case 'f':
+                    string.append('\f');
+                    break;
+                case 'n':
+                    string.append('\n');
+                    break;
+                case 'r':
+                    string.append('\r');
+                    break;
+                case 't':
+                    string.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > json.length()) {
+                        throw error("Invalid escape");
+                    }
+                    try {
+                        string.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    string.append(escaped);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private Double number() {
+            int start = position;
+            while (position < json.length() && "+-0123456789.eE".indexOf(json.charAt(position)) >= 0) {
+                position++;
+            }
+            try {
+                return Double.valueOf(json.substring(start, position));
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("Unexpected character");
+            }
+        }
+
+        private Object literal(String literal, Object value) {
+            if (!json.startsWith(literal, position)) {
+                throw error("Unexpected character");
+            }
+            position += literal.length();
+            return value;
+        }
+
+        private char next() {
+            skipWhitespace();
+            if (position >= json.length()) {
+                throw error("Unexpected end");
+            }
+            return json.charAt(position);
+        }
+
+        void skipWhitespace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " of JSON");
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.client.container.DeploymentException;
+import org.jboss.arquillian.core.spi.Manager;
+
+/**
+ * Send HTTP load to the deployed application and report the throughput and latency percentiles.
+ *
+ * @goal load
+ *
+ * @version $Revision: $
+ *
+ */
+public final class Load extends BaseCommand {
+
+    /**
+     * The base URL to send the requests to. Default is the context roots of the archives deployed to the containers
+     * earlier in this build.
+     *
+     * @parameter expression="${arquillian.loadBaseUrl}"
+     */
+    private String loadBaseUrl;
+
+    /**
+     * The mix of requests to send, each with a 'path', and optionally a 'method', 'weight', 'body' and 'contentType'.
+     *
+     * @parameter
+     */
+    private List<LoadRequest> loadRequests;
+
+    /**
+     * Paths to send GET requests to in equal shares, used when no loadRequests are configured. Default is /.
+     *
+     * @parameter expression="${arquillian.loadPaths}"
+     */
+    private String[] loadPaths;
+
+    /**
+     * The number of threads sending requests.
+     *
+     * @parameter expression="${arquillian.loadConcurrency}" default-value="10"
+     */
+    private int loadConcurrency = 10;
+
+    /**
+     * The requests per second to send. 0 sends the next request as soon as a thread receives a response.
+     *
+     * @parameter expression="${arquillian.loadRate}" default-value="0"
+     */
+    private int loadRate;
+
+    /**
+     * The time in seconds requests are sent before measuring.
+     *
+     * @parameter expression="${arquillian.loadWarmup}" default-value="5"
+     */
+    private int loadWarmup = 5;
+
+    /**
+     * The time in seconds requests are measured.
+     *
+     * @parameter expression="${arquillian.loadDuration}" default-value="30"
+     */
+    private int loadDuration = 30;
+
+    /**
+     * Where the throughput and latency percentiles are written, as JSON.
+     *
+     * @parameter expression="${arquillian.loadReport}" default-value="${project.build.directory}/arquillian-load.json"
+     */
+    private File loadReport;
+
+    private final List<URL> baseUrls = Collections.synchronizedList(new ArrayList<URL>());
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#goal()
+     */
+    @Override
+    public String goal() {
+        return "load";
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#validateInput()
+     */
+    @Override
+    void validateInput() {
+        // The archive is already deployed
+    }
+
+    @Override
+    Manager startNewManager(Class<?>... extensions) {
+        throw new RuntimeException(
+                "Container not started. The container must be started and the archive deployed before load, or set \"loadBaseUrl\"");
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#execute()
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (loadBaseUrl == null) {
+            super.execute();
+            if (baseUrls.isEmpty()) {
+                throw new MojoExecutionException("No deployment with an HTTP context on " + containerList()
+                        + ", deploy the archive before load or set \"loadBaseUrl\"");
+            }
+        } else {
+            try {
+                baseUrls.add(new URL(loadBaseUrl.endsWith("/") ? loadBaseUrl : loadBaseUrl + "/"));
+            } catch (MalformedURLException e) {
+                throw new MojoExecutionException("Invalid loadBaseUrl " + loadBaseUrl, e);
+            }
+        }
+
+        try {
+            load();
+        } finally {
+            writeMetrics();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#perform(org.jboss.arquillian.core.spi.Manager,
+     * org.jboss.arquillian.container.spi.Container)
+     */
+    @Override
+    public void perform(Manager manager, Container container) throws DeploymentException {
+        try {
+            baseUrls.addAll(endpoints().baseUrls(container.getName()));
+        } catch (MalformedURLException e) {
+            throw new DeploymentException("Invalid context of a deployment on " + container.getName(), e);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#performOnDaemon(org.jboss.arquillian.maven.DaemonClient)
+     */
+    @Override
+    boolean performOnDaemon(DaemonClient daemon) throws DeploymentException {
+        throw new DeploymentException("The deployments of the daemon are not known to this build, set \"loadBaseUrl\"");
+    }
+
+    private void load() throws MojoExecutionException {
+        List<LoadRequest> requests = requests();
+        getLog().info("Sending " + requests + " to " + baseUrls + " from " + loadConcurrency + " threads"
+                + (loadRate > 0 ? " at " + loadRate + " requests/s" : "") + " for " + loadWarmup + "s warmup and "
+                + loadDuration + "s measured");
+
+        LoadGenerator.Result result;
+        long start = timer().begin();
+        try {
+            result = new LoadGenerator(baseUrls, requests, loadConcurrency, loadRate).run(loadWarmup * 1000L,
+                    loadDuration * 1000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted sending load", e);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        timer().record(Metrics.LOAD, null, start);
+
+        getLog().info("Load: " + result.summary());
+        if (result.errors() > 0) {
+            getLog().warn(result.errors() + " of " + result.requests() + " requests failed or responded with an error");
+        }
+        if (loadReport != null) {
+            try {
+                result.write(loadReport, baseUrls, requests, loadConcurrency, loadRate);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not write " + loadReport, e);
+            }
+        }
+    }
+
+    private List<LoadRequest> requests() {
+        if (loadRequests != null && !loadRequests.isEmpty()) {
+            return loadRequests;
+        }
+        List<LoadRequest> requests = new ArrayList<LoadRequest>();
+        if (loadPaths != null) {
+            for (String path : loadPaths) {
+                requests.add(new LoadRequest(path.trim(), "GET", 1));
+            }
+        }
+        if (requests.isEmpty()) {
+            requests.add(new LoadRequest("/", "GET", 1));
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,329 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends a mix of HTTP requests to deployments from a number of threads, either as fast as the responses come back or
+ * at a fixed rate, and counts the latencies of the responses.
+ * <p>
+ * At a fixed rate the latency of a request is measured from the time it was scheduled to be sent rather than from when
+ * a thread was free to send it, so a slow server shows in the percentiles instead of lowering the rate.
+ *
+ * @version $Revision: $
+ */
+final class LoadGenerator {
+
+    private static final int REQUEST_TIMEOUT_MILLIS = 30000;
+
+    private final List<URL> baseUrls;
+
+    private final List<LoadRequest> requests;
+
+    private final int totalWeight;
+
+    private final int concurrency;
+
+    private final int rate;
+
+    /**
+     * @param baseUrls the base URLs, ending with a slash, the requests are sent to in turn
+     * @param requests the mix of requests, picked at random by weight
+     * @param concurrency the number of threads sending requests
+     * @param rate the requests per second to send, 0 or less to send as fast as the responses come back
+     */
+    LoadGenerator(List<URL> baseUrls, List<LoadRequest> requests, int concurrency, int rate) {
+        if (baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("No base URL to send requests to");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1, was " + concurrency);
+        }
+        int total = 0;
+        for (LoadRequest request : requests) {
+            if (request.weight() < 0) {
+                throw new IllegalArgumentException("Negative weight of request " + request);
+            }
+            total += request.weight();
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("No request with a positive weight in " + requests);
+        }
+        this.baseUrls = baseUrls;
+        this.requests = requests;
+        this.totalWeight = total;
+        this.concurrency = concurrency;
+        this.rate = rate;
+    }
+
+    /**
+     * Send requests for the warmup and then the measured duration.
+     *
+     * @param warmupMillis the time requests are sent before counting them
+     * @param durationMillis the time requests are counted
+     * @return the counts of the measured duration
+     */
+    Result run(long warmupMillis, long durationMillis) throws InterruptedException {
+        final long start = System.nanoTime();
+        final long measured = start + warmupMillis * 1000000L;
+        final long end = measured + durationMillis * 1000000L;
+        final AtomicLong sequence = new AtomicLong();
+
+        final Result[] results = new Result[concurrency];
+        Thread[] threads = new Thread[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            final int worker = i;
+            results[i] = new Result();
+            threads[i] = new Thread("arquillian-load-" + i) {
+                @Override
+                public void run() {
+                    Random random = new Random(worker);
+                    int next = worker;
+                    while (true) {
+                        long scheduled;
+                        if (rate > 0) {
+                            scheduled = start + sequence.getAndIncrement() * 1000000000L / rate;
+                            if (scheduled >= end || !sleepUntil(scheduled)) {
+                                return;
+                            }
+                        } else {
+                            scheduled = System.nanoTime();
+                            if (scheduled >= end) {
+                                return;
+                            }
+                        }
+                        URL base = baseUrls.get(next++ % baseUrls.size());
+                        int status = send(base, pick(random));
+                        if (scheduled >= measured) {
+                            results[worker].record(status, (System.nanoTime() - scheduled) / 1000);
+                        }
+                    }
+                }
+            };
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        Result total = new Result();
+        for (int i = 0; i < concurrency; i++) {
+            threads[i].join();
+            total.add(results[i]);
+        }
+        total.nanos = end - measured;
+        return total;
+    }
+
+    private LoadRequest pick(Random random) {
+        int ticket = random.nextInt(totalWeight);
+        for (LoadRequest request : requests) {
+            ticket -= request.weight();
+            if (ticket < 0) {
+                return request;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private static boolean sleepUntil(long nanos) {
+        long delay = nanos - System.nanoTime();
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the status of the response, -1 if the request failed
+     */
+    private static int send(URL base, LoadRequest request) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(base, request.path()).openConnection();
+            connection.setConnectTimeout(REQUEST_TIMEOUT_MILLIS);
+            connection.setReadTimeout(REQUEST_TIMEOUT_MILLIS);
+            connection.setUseCaches(false);
+            connection.setRequestMethod(request.method());
+            if (request.body() != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", request.contentType());
+                OutputStream out = connection.getOutputStream();
+                try {
+                    out.write(request.body().getBytes("UTF-8"));
+                } finally {
+                    out.close();
+                }
+            }
+            int code = connection.getResponseCode();
+            // Reading the response fully keeps the connection alive for the next request
+            Readiness.drain(code < 400 ? connection.getInputStream() : connection.getErrorStream());
+            return code;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * The counts of the responses received in the measured duration.
+     */
+    static final class Result {
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private final Map<Integer, Long> statuses = new TreeMap<Integer, Long>();
+
+        private long nanos;
+
+        void record(int status, long micros) {
+            latencies.record(micros);
+            Long count = statuses.get(status);
+            statuses.put(status, count == null ? 1 : count + 1);
+        }
+
+        void add(Result other) {
+            latencies.add(other.latencies);
+            for (Map.Entry<Integer, Long> entry : other.statuses.entrySet()) {
+                Long count = statuses.get(entry.getKey());
+                statuses.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+            }
+        }
+
+        long requests() {
+            return latencies.count();
+        }
+
+        /**
+         * @return the requests failing or responding with a status of 400 or more
+         */
+        long errors() {
+            long errors = 0;
+            for (Map.Entry<Integer, Long> entry : statuses.entrySet()) {
+                if (entry.getKey() < 0 || entry.getKey() >= 400) {
+                    errors += entry.getValue();
+                }
+            }
+            return errors;
+        }
+
+        double throughput() {
+            return nanos == 0 ? 0 : requests() * 1e9 / nanos;
+        }
+
+        /**
+         * @param percentile the percentile, e.g. 99.9
+         * @return the latency at the percentile in milliseconds
+         */
+        double millis(double percentile) {
+            return latencies.percentile(percentile) / 1000.0;
+        }
+
+        /**
+         * One line summary of the throughput and latencies.
+         */
+        String summary() {
+            return String.format(Locale.ENGLISH,
+                    "%d requests, %d errors, %.1f requests/s, latency p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+                    requests(), errors(), throughput(), millis(50), millis(99), millis(99.9), latencies.max() / 1000.0);
+        }
+
+        /**
+         * Write the throughput and latencies as JSON.
+         *
+         * @param file the file to write
+         * @param baseUrls the base URLs the requests were sent to
+         * @param requests the mix of requests
+         * @param concurrency the number of threads sending requests
+         * @param rate the target requests per second, 0 or less if none
+         */
+        void write(File file, List<URL> baseUrls, List<LoadRequest> requests, int concurrency, int rate)
+                throws IOException {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Could not create directory " + parent);
+            }
+            List<String> urls = new ArrayList<String>();
+            for (URL url : baseUrls) {
+                urls.add(Json.quote(url.toString()));
+            }
+            List<String> mix = new ArrayList<String>();
+            for (LoadRequest request : requests) {
+                mix.add("{ \"method\" : " + Json.quote(request.method()) + ", \"path\" : "
+                        + Json.quote("/" + request.path()) + ", \"weight\" : " + request.weight() + " }");
+            }
+            List<String> counts = new ArrayList<String>();
+            for (Map.Entry<Integer, Long> entry : statuses.entrySet()) {
+                counts.add(Json.quote(entry.getKey() < 0 ? "error" : entry.getKey().toString()) + " : "
+                        + entry.getValue());
+            }
+
+            Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            try {
+                out.write("{\n");
+                out.write("  \"baseUrls\" : " + join(urls) + ",\n");
+                out.write("  \"requestMix\" : " + join(mix) + ",\n");
+                out.write("  \"concurrency\" : " + concurrency + ",\n");
+                out.write("  \"rate\" : " + Math.max(0, rate) + ",\n");
+                out.write("  \"seconds\" : " + Json.number(nanos / 1e9) + ",\n");
+                out.write("  \"requests\" : " + requests() + ",\n");
+                out.write("  \"errors\" : " + errors() + ",\n");
+                out.write("  \"statuses\" : { " + join(counts, ", ") + " },\n");
+                out.write("  \"throughput\" : " + Json.number(throughput()) + ",\n");
+                out.write("  \"latencyMillis\" : { \"p50\" : " + Json.number(millis(50)) + ", \"p99\" : "
+                        + Json.number(millis(99)) + ", \"p999\" : " + Json.number(millis(99.9)) + ", \"max\" : "
+                        + Json.number(latencies.max() / 1000.0) + ", \"mean\" : " + Json.number(latencies.mean() / 1000)
+                        + " }\n");
+                out.write("}\n");
+            } finally {
+                out.close();
+            }
+        }
+
+        private static String join(List<String> values) {
+            return "[ " + join(values, ", ") + " ]";
+        }
+
+        private static String join(List<String> values, String separator) {
+            StringBuilder joined = new StringBuilder();
+            for (String value : values) {
+                if (joined.length() > 0) {
+                    joined.append(separator);
+                }
+                joined.append(value);
+            }
+            return joined.toString();
+        }
+    }
+}
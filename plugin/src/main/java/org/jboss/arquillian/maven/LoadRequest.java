@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+/**
+ * A request of the mix sent by the load goal.
+ *
+ * @version $Revision: $
+ */
+public final class LoadRequest {
+
+    /**
+     * The path, relative to the base URL of the deployment.
+     */
+    private String path;
+
+    /**
+     * The HTTP method. Default is GET.
+     */
+    private String method;
+
+    /**
+     * The share of the mix relative to the other requests. Default is 1.
+     */
+    private int weight = 1;
+
+    /**
+     * The body sent with the request, if any.
+     */
+    private String body;
+
+    /**
+     * The content type of the body. Default is text/plain.
+     */
+    private String contentType;
+
+    public LoadRequest() {
+    }
+
+    LoadRequest(String path, String method, int weight) {
+        this.path = path;
+        this.method = method;
+        this.weight = weight;
+    }
+
+    String path() {
+        if (path == null) {
+            return "";
+        }
+        return path.startsWith("/") ? path.substring(1) : path;
+    }
+
+    String method() {
+        return method == null ? "GET" : method.toUpperCase();
+    }
+
+    int weight() {
+        return weight;
+    }
+
+    String body() {
+        return body;
+    }
+
+    String contentType() {
+        return contentType == null ? "text/plain" : contentType;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return method() + " /" + path() + (weight == 1 ? "" : " x" + weight);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The time spent in each phase of the goals executed in a build.
+ *
+ * Phases are timed with {@link System#nanoTime()}, so the durations are not affected by changes of the system clock.
+ *
+ * @version $Revision: $
+ */
+final class Metrics {
+
+    static final String GET_CLASS_LOADER = "getClassLoader";
+
+    static final String START_MANAGER = "startManager";
+
+    static final String AWAIT_START = "awaitStart";
+
+    static final String SETUP = "setup";
+
+    static final String START = "start";
+
+    static final String CREATE_DEPLOYMENT = "createDeployment";
+
+    static final String INDEX = "index";
+
+    static final String REPACKAGE = "repackage";
+
+    static final String DEPLOY = "deploy";
+
+    static final String READY = "ready";
+
+    static final String LOAD = "load";
+
+    static final String UNDEPLOY = "undeploy";
+
+    static final String STOP = "stop";
+
+    private final List<Timer> timers = new ArrayList<Timer>();
+
+    /**
+     * A new timer for the phases of an execution of the goal.
+     */
+    synchronized Timer timer(String goal) {
+        Timer timer = new Timer(goal);
+        timers.add(timer);
+        return timer;
+    }
+
+    /**
+     * Write the phases of every goal executed so far as JSON.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file can not be written
+     */
+    synchronized void write(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write("{\n  \"executions\" : [");
+            for (int i = 0; i < timers.size(); i++) {
+                Timer timer = timers.get(i);
+                out.write(i == 0 ? " {\n" : ", {\n");
+                out.write("    \"goal\" : " + Json.quote(timer.goal) + ",\n");
+                out.write("    \"phases\" : [");
+                List<Sample> samples = timer.samples();
+                for (int j = 0; j < samples.size(); j++) {
+                    Sample sample = samples.get(j);
+                    out.write(j == 0 ? " " : ", ");
+                    out.write("{ \"phase\" : " + Json.quote(sample.phase));
+                    if (sample.container != null) {
+                        out.write(", \"container\" : " + Json.quote(sample.container));
+                    }
+                    out.write(", \"millis\" : " + Json.number(sample.millis()) + " }");
+                }
+                out.write(" ]\n  }");
+            }
+            out.write(" ]\n}\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Records the phases of one execution of a goal. Phases may be recorded concurrently when operating on several
+     * containers.
+     */
+    static final class Timer {
+
+        private final String goal;
+
+        private final List<Sample> samples = new ArrayList<Sample>();
+
+        private Timer(String goal) {
+            this.goal = goal;
+        }
+
+        /**
+         * The start of a phase, to be passed to {@link #record(String, String, long)} once it is done.
+         */
+        long begin() {
+            return System.nanoTime();
+        }
+
+        /**
+         * Record a phase that began at start.
+         *
+         * @param phase the name of the phase
+         * @param container the qualifier of the container operated on, or null if the phase is not container specific
+         * @param start the value returned by {@link #begin()} at the start of the phase
+         */
+        void record(String phase, String container, long start) {
+            Sample sample = new Sample(phase, container, System.nanoTime() - start);
+            synchronized (samples) {
+                samples.add(sample);
+            }
+        }
+
+        List<Sample> samples() {
+            synchronized (samples) {
+                return new ArrayList<Sample>(samples);
+            }
+        }
+    }
+
+    /**
+     * The duration of a phase.
+     */
+    static final class Sample {
+
+        final String phase;
+
+        final String container;
+
+        final long nanos;
+
+        Sample(String phase, String container, long nanos) {
+            this.phase = phase;
+            this.container = container;
+            this.nanos = nanos;
+        }
+
+        double millis() {
+            return nanos / 1000000.0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.util.Collection;
+
+import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.client.container.DeploymentException;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
+import org.jboss.shrinkwrap.api.Archive;
+
+/**
+ * Updates an archive deployed to a remote container with the entries changed since it was deployed, instead of
+ * uploading the whole archive. Implementations for the container adapters able to update exploded or partial content
+ * are registered as services of a LoadableExtension, and used by deployRemote when 'delta' is set.
+ *
+ * @version $Revision: $
+ */
+public interface PartialDeployer {
+
+    /**
+     * @param container the container deployed to
+     * @return true if the archives deployed to the container can be updated by this deployer
+     */
+    boolean supports(Container container);
+
+    /**
+     * Update the deployed archive.
+     *
+     * @param container the container the archive is deployed to
+     * @param archiveName the name of the deployed archive
+     * @param changes the added and modified entries, at their path in the archive
+     * @param removed the paths of the removed entries
+     * @return the metadata of the updated deployment, may be null
+     * @throws DeploymentException if the archive could not be updated
+     */
+    ProtocolMetaData update(Container container, String archiveName, Archive<?> changes, Collection<String> removed)
+            throws DeploymentException;
+}
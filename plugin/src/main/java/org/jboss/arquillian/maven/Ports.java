@@ -0,0 +1,62 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Allocates free ports for containers, never the same port twice in this JVM, so containers started by the modules of
+ * a parallel build do not collide.
+ *
+ * @version $Revision: $
+ */
+final class Ports {
+
+    private static final int ATTEMPTS = 100;
+
+    private static final Set<Integer> ALLOCATED = Collections.synchronizedSet(new HashSet<Integer>());
+
+    private Ports() {
+    }
+
+    /**
+     * A port free at the time of the call, as chosen by the operating system.
+     *
+     * @return the port
+     * @throws IOException if no free port could be found
+     */
+    static int allocate() throws IOException {
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            ServerSocket socket = new ServerSocket(0);
+            int port;
+            try {
+                port = socket.getLocalPort();
+            } finally {
+                socket.close();
+            }
+            if (ALLOCATED.add(port)) {
+                return port;
+            }
+        }
+        throw new IOException("No free port found in " + ATTEMPTS + " attempts");
+    }
+}
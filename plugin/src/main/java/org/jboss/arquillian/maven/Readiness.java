@@ -0,0 +1,214 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jboss.arquillian.container.spi.client.container.DeploymentException;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.HTTPContext;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.Servlet;
+
+/**
+ * Polls the HTTP contexts of a deployment until it is ready to serve requests.
+ *
+ * @version $Revision: $
+ */
+final class Readiness {
+
+    static final long INITIAL_DELAY_MILLIS = 50;
+
+    static final long MAX_DELAY_MILLIS = 2000;
+
+    private static final int REQUEST_TIMEOUT_MILLIS = 5000;
+
+    private Readiness() {
+    }
+
+    /**
+     * The URLs of the paths under every context root of the deployment.
+     *
+     * @param metadata the metadata of the deployment, as returned by the container
+     * @param paths the paths relative to the context roots
+     * @return the URLs to poll, empty if the deployment has no HTTP context
+     */
+    static List<URL> urls(ProtocolMetaData metadata, Collection<String> paths) throws MalformedURLException {
+        Set<String> roots = new LinkedHashSet<String>();
+        if (metadata != null) {
+            for (HTTPContext context : metadata.getContexts(HTTPContext.class)) {
+                String server = "http://" + context.getHost() + ":" + context.getPort();
+                if (context.getServlets().isEmpty()) {
+                    roots.add(server);
+                }
+                for (Servlet servlet : context.getServlets()) {
+                    roots.add(server + servlet.getContextRoot());
+                }
+            }
+        }
+
+        List<URL> urls = new ArrayList<URL>();
+        for (String root : roots) {
+            String base = root.endsWith("/") ? root.substring(0, root.length() - 1) : root;
+            for (String path : paths) {
+                String trimmed = path.trim();
+                urls.add(new URL(base + (trimmed.startsWith("/") ? trimmed : "/" + trimmed)));
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * The metadata of a deployment served under the base URLs, e.g. as returned by {@link #urls} with the "/" path.
+     *
+     * @param archive the name of the deployed archive
+     * @param bases the base URLs of the HTTP contexts of the deployment
+     * @return the metadata with an HTTP context per base URL
+     */
+    static ProtocolMetaData metadata(String archive, Collection<URL> bases) {
+        ProtocolMetaData metadata = new ProtocolMetaData();
+        for (URL base : bases) {
+            metadata.addContext(new HTTPContext(base.getHost(), base.getPort()).add(new Servlet(archive, base.getPath())));
+        }
+        return metadata;
+    }
+
+    /**
+     * Whether the deployment is served now: with readiness paths every one of them responds with a 2xx status,
+     * otherwise every HTTP context responds with anything but a 404 or a 5xx status. A deployment without any HTTP
+     * context is unknown, so not deployed.
+     *
+     * @param metadata the metadata of the deployment, may be null
+     * @param paths the readiness paths, may be empty
+     * @return true if the deployment responds
+     */
+    static boolean isDeployed(ProtocolMetaData metadata, Collection<String> paths) throws MalformedURLException {
+        List<URL> urls = urls(metadata, paths.isEmpty() ? Collections.singletonList("/") : paths);
+        if (urls.isEmpty()) {
+            return false;
+        }
+        for (URL url : urls) {
+            if (paths.isEmpty() ? !responds(url) : probe(url) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the URL responds with anything but a 404 or a 5xx status
+     */
+    private static boolean responds(URL url) {
+        String status = probe(url);
+        if (status == null) {
+            return true;
+        }
+        if (!status.startsWith("HTTP ")) {
+            return false;
+        }
+        int code = Integer.parseInt(status.substring("HTTP ".length()));
+        return code != HttpURLConnection.HTTP_NOT_FOUND && code < HttpURLConnection.HTTP_INTERNAL_ERROR;
+    }
+
+    /**
+     * Poll the URLs, with exponential backoff, until every one responds with a 2xx status.
+     *
+     * @param urls the URLs to poll
+     * @param timeoutMillis the maximum time to poll
+     * @return the milliseconds until every URL was ready
+     * @throws DeploymentException if a URL is not ready in time
+     */
+    static long await(Collection<URL> urls, long timeoutMillis) throws DeploymentException {
+        long start = System.nanoTime();
+        long deadline = start + timeoutMillis * 1000000L;
+        List<URL> pending = new ArrayList<URL>(urls);
+        long delay = INITIAL_DELAY_MILLIS;
+        String status = null;
+        while (true) {
+            for (Iterator<URL> iterator = pending.iterator(); iterator.hasNext();) {
+                URL url = iterator.next();
+                status = probe(url);
+                if (status == null) {
+                    iterator.remove();
+                } else {
+                    break;
+                }
+            }
+            if (pending.isEmpty()) {
+                return (System.nanoTime() - start) / 1000000;
+            }
+            if (System.nanoTime() + delay * 1000000L > deadline) {
+                throw new DeploymentException(pending.get(0) + " not ready within " + timeoutMillis + " ms, last status: "
+                        + status);
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DeploymentException("Interrupted awaiting " + pending.get(0), e);
+            }
+            delay = Math.min(delay * 2, MAX_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * @return null if the URL responds with a 2xx status, the status or error otherwise
+     */
+    private static String probe(URL url) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(REQUEST_TIMEOUT_MILLIS);
+            connection.setReadTimeout(REQUEST_TIMEOUT_MILLIS);
+            connection.setUseCaches(false);
+            int code = connection.getResponseCode();
+            drain(code < 400 ? connection.getInputStream() : connection.getErrorStream());
+            return code / 100 == 2 ? null : "HTTP " + code;
+        } catch (IOException e) {
+            return e.toString();
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {
+                continue;
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Rewrites an archive with other compression levels for its entries, typically storing the nested archives
+ * uncompressed, so the server does not inflate them on every deploy.
+ *
+ * Entries keeping their compression are copied from the archive file to the repackaged file as they are, with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, without being inflated. The
+ * repackaged archives are kept in a cache directory, by path of the archive and then by hash of its content and the
+ * compression levels, so an unchanged archive is not repackaged again, and only the previous versions of the same
+ * archive file are deleted, not the archives of the same name of other modules sharing the cache directory.
+ *
+ * Zip64 archives are not repackaged.
+ *
+ * @version $Revision: $
+ */
+final class Repackager {
+
+    /**
+     * Entries copied with their compression.
+     */
+    static final int KEEP = -3;
+
+    /**
+     * Entries stored uncompressed.
+     */
+    static final int STORED = -2;
+
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    private static final int LOCAL_SIZE = 30;
+
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    private static final int CENTRAL_SIZE = 46;
+
+    private static final int END_SIGNATURE = 0x06054b50;
+
+    private static final int END_SIZE = 22;
+
+    private static final int METHOD_STORED = 0;
+
+    private static final int METHOD_DEFLATED = 8;
+
+    // the sizes and CRC follow the data of the entry in a data descriptor
+    private static final int FLAG_DESCRIPTOR = 0x08;
+
+    private static final int FLAG_ENCRYPTED = 0x01;
+
+    private final File cacheDirectory;
+
+    private final int archives;
+
+    private final int entries;
+
+    /**
+     * @param cacheDirectory the directory the repackaged archives are kept in
+     * @param archives the level of the nested archives, {@link #KEEP}, {@link #STORED} or a {@link Deflater} level
+     * @param entries the level of the other entries
+     */
+    Repackager(File cacheDirectory, int archives, int entries) {
+        this.cacheDirectory = cacheDirectory;
+        this.archives = archives;
+        this.entries = entries;
+    }
+
+    /**
+     * The compression level named by a configuration value: KEEP, STORED, DEFAULT or a deflate level from 0 to 9.
+     *
+     * @throws IllegalArgumentException if the value is not a compression level
+     */
+    static int level(String value) {
+        String name = value.trim().toUpperCase();
+        if ("KEEP".equals(name)) {
+            return KEEP;
+        }
+        if ("STORED".equals(name)) {
+            return STORED;
+        }
+        if ("DEFAULT".equals(name)) {
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        try {
+            int level = Integer.parseInt(name);
+            if (level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION) {
+                return level;
+            }
+        } catch (NumberFormatException e) {
+            // not a deflate level
+        }
+        throw new IllegalArgumentException("Unknown compression " + value
+                + ", expected KEEP, STORED, DEFAULT or a level from 0 to 9");
+    }
+
+    /**
+     * The repackaged archive, from the cache if the archive was repackaged before.
+     *
+     * @param source the archive file
+     * @param name the name of the repackaged file
+     * @return the repackaged file, in the cache directory
+     * @throws IOException if the archive can not be read or repackaged
+     */
+    File repackage(File source, String name) throws IOException {
+        File versions = new File(cacheDirectory, origin(source));
+        File directory = new File(versions, hash(source));
+        File repackaged = new File(directory, name);
+        if (repackaged.isFile()) {
+            return repackaged;
+        }
+
+        // previous versions of the archive are not deployed again, the current one may be written concurrently
+        File[] cached = versions.listFiles();
+        for (int i = 0; cached != null && i < cached.length; i++) {
+            if (!cached[i].equals(directory) && new File(cached[i], name).delete()) {
+                cached[i].delete();
+            }
+        }
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        // a temp file of its own, other threads or builds may repackage the same archive at the same time
+        File temp = File.createTempFile("repackage-", ".tmp", directory);
+        try {
+            write(source, temp);
+            if (!temp.renameTo(repackaged) && !repackaged.isFile()) {
+                throw new IOException("Could not write " + repackaged);
+            }
+        } finally {
+            temp.delete();
+        }
+        return repackaged;
+    }
+
+    private static String origin(File source) throws IOException {
+        MessageDigest digest = Fingerprint.sha1();
+        Fingerprint.update(digest, source.getCanonicalPath());
+        return Fingerprint.toHex(digest.digest());
+    }
+
+    private String hash(File source) throws IOException {
+        MessageDigest digest = Fingerprint.sha1();
+        Fingerprint.update(digest, archives + "/" + entries);
+        InputStream in = new FileInputStream(source);
+        try {
+            Fingerprint.update(digest, in, new byte[8192]);
+        } finally {
+            in.close();
+        }
+        return Fingerprint.toHex(digest.digest());
+    }
+
+    private void write(File source, File target) throws IOException {
+        FileInputStream in = new FileInputStream(source);
+        try {
+            FileOutputStream out = new FileOutputStream(target);
+            try {
+                write(in.getChannel(), out.getChannel(), source);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void write(FileChannel in, FileChannel out, File source) throws IOException {
+        long size = in.size();
+        int tail = (int) Math.min(size, END_SIZE + 0xffff);
+        ByteBuffer end = read(in, size - tail, tail);
+        int position = tail - END_SIZE;
+        while (position >= 0 && end.getInt(position) != END_SIGNATURE) {
+            position--;
+        }
+        if (position < 0) {
+            throw new ZipException("No zip central directory found in " + source);
+        }
+        int count = end.getShort(position + 10) & 0xffff;
+        long length = end.getInt(position + 12) & 0xffffffffL;
+        if (count == 0xffff || length == 0xffffffffL || (end.getInt(position + 16) & 0xffffffffL) == 0xffffffffL) {
+            throw new ZipException("Zip64 archives are not repackaged: " + source);
+        }
+        ByteBuffer directory = read(in, size - tail + position - length, (int) length);
+        ByteArrayOutputStream central = new ByteArrayOutputStream((int) length);
+
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            if (offset + CENTRAL_SIZE > length || directory.getInt(offset) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Invalid zip central directory in " + source);
+            }
+            int recordLength = CENTRAL_SIZE + (directory.getShort(offset + 28) & 0xffff)
+                    + (directory.getShort(offset + 30) & 0xffff) + (directory.getShort(offset + 32) & 0xffff);
+            byte[] record = new byte[recordLength];
+            directory.position(offset);
+            directory.get(record);
+            central.write(entry(in, out, ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN)));
+            offset += recordLength;
+        }
+
+        long directoryOffset = out.position();
+        write(out, ByteBuffer.wrap(central.toByteArray()));
+        // the end record is copied, comment included, with the new size and offset of the central directory
+        ByteBuffer record = ByteBuffer.allocate(tail - position).order(ByteOrder.LITTLE_ENDIAN);
+        end.position(position);
+        end.limit(end.position() + record.capacity());
+        record.put(end);
+        record.putShort(8, (short) count).putShort(10, (short) count).putInt(12, central.size())
+                .putInt(16, (int) directoryOffset);
+        record.flip();
+        write(out, record);
+    }
+
+    /**
+     * Write the entry of the central directory record to the repackaged archive.
+     *
+     * @return the central directory record of the repackaged entry
+     */
+    private byte[] entry(FileChannel in, FileChannel out, ByteBuffer record) throws IOException {
+        int flags = record.getShort(8) & 0xffff;
+        int method = record.getShort(10) & 0xffff;
+        long compressedSize = record.getInt(20) & 0xffffffffL;
+        long size = record.getInt(24) & 0xffffffffL;
+        int nameLength = record.getShort(28) & 0xffff;
+        long localOffset = record.getInt(42) & 0xffffffffL;
+        byte[] nameBytes = new byte[nameLength];
+        record.position(CENTRAL_SIZE);
+        record.get(nameBytes);
+        String name = new String(nameBytes, "UTF-8");
+
+        ByteBuffer local = read(in, localOffset, LOCAL_SIZE);
+        if (local.getInt(0) != LOCAL_SIGNATURE) {
+            throw new ZipException("Invalid local header of " + name);
+        }
+        byte[] extra = new byte[local.getShort(28) & 0xffff];
+        read(in, localOffset + LOCAL_SIZE + (local.getShort(26) & 0xffff), extra.length).get(extra);
+        long data = localOffset + LOCAL_SIZE + (local.getShort(26) & 0xffff) + extra.length;
+
+        int level = name.endsWith("/") ? KEEP : isArchive(name) ? archives : entries;
+        boolean readable = (flags & FLAG_ENCRYPTED) == 0 && (method == METHOD_STORED || method == METHOD_DEFLATED);
+        if (level == KEEP || !readable || (level == STORED && method == METHOD_STORED)) {
+            // copied as it is, without inflating it
+            long offset = writeLocal(out, record, flags, method, compressedSize, nameBytes, extra);
+            transfer(in, data, compressedSize, out);
+            return central(record, flags, method, compressedSize, offset);
+        }
+
+        InputStream entry;
+        Inflater inflater = null;
+        if (method == METHOD_DEFLATED) {
+            inflater = new Inflater(true);
+            // in nowrap mode the inflater needs a byte past the deflated data, the central directory at least follows
+            entry = new InflaterInputStream(new ChannelInputStream(in, data, compressedSize + 1), inflater);
+        } else {
+            entry = new ChannelInputStream(in, data, compressedSize);
+        }
+        try {
+            if (level == STORED) {
+                long offset = writeLocal(out, record, flags, METHOD_STORED, size, nameBytes, extra);
+                long copied = copy(entry, out);
+                if (copied != size) {
+                    throw new ZipException("Invalid size of " + name + ": " + copied + " instead of " + size);
+                }
+                return central(record, flags, METHOD_STORED, size, offset);
+            }
+            // deflated in memory, the compressed size precedes the data
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream((int) Math.min(compressedSize, 1 << 20));
+            Deflater deflater = new Deflater(level, true);
+            try {
+                DeflaterOutputStream stream = new DeflaterOutputStream(deflated, deflater);
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = entry.read(buffer)) != -1) {
+                    stream.write(buffer, 0, read);
+                }
+                stream.finish();
+            } finally {
+                deflater.end();
+            }
+            long offset = writeLocal(out, record, flags, METHOD_DEFLATED, deflated.size(), nameBytes, extra);
+            write(out, ByteBuffer.wrap(deflated.toByteArray()));
+            return central(record, flags, METHOD_DEFLATED, deflated.size(), offset);
+        } finally {
+            entry.close();
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    private static boolean isArchive(String name) {
+        return name.endsWith(".jar") || name.endsWith(".war") || name.endsWith(".rar") || name.endsWith(".ear");
+    }
+
+    /**
+     * Write the local header of an entry, with the sizes and CRC of the central directory instead of a data
+     * descriptor.
+     *
+     * @return the offset of the local header
+     */
+    private static long writeLocal(FileChannel out, ByteBuffer record, int flags, int method, long compressedSize,
+            byte[] name, byte[] extra) throws IOException {
+        long offset = out.position();
+        ByteBuffer local = ByteBuffer.allocate(LOCAL_SIZE + name.length + extra.length).order(ByteOrder.LITTLE_ENDIAN);
+        local.putInt(LOCAL_SIGNATURE).putShort(record.getShort(6)).putShort((short) (flags & ~FLAG_DESCRIPTOR))
+                .putShort((short) method).putShort(record.getShort(12)).putShort(record.getShort(14))
+                .putInt(record.getInt(16)).putInt((int) compressedSize).putInt(record.getInt(24))
+                .putShort((short) name.length).putShort((short) extra.length).put(name).put(extra);
+        local.flip();
+        write(out, local);
+        return offset;
+    }
+
+    private static byte[] central(ByteBuffer record, int flags, int method, long compressedSize, long offset) {
+        record.putShort(8, (short) (flags & ~FLAG_DESCRIPTOR)).putShort(10, (short) method)
+                .putInt(20, (int) compressedSize).putInt(42, (int) offset);
+        return record.array();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of zip file");
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void transfer(FileChannel in, long position, long length, FileChannel out) throws IOException {
+        long transferred = 0;
+        while (transferred < length) {
+            long count = in.transferTo(position + transferred, length - transferred, out);
+            if (count <= 0) {
+                throw new EOFException("Unexpected end of zip file");
+            }
+            transferred += count;
+        }
+    }
+
+    private static long copy(InputStream in, FileChannel out) throws IOException {
+        byte[] buffer = new byte[8192];
+        long copied = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            write(out, ByteBuffer.wrap(buffer, 0, read));
+            copied += read;
+        }
+        return copied;
+    }
+
+    /**
+     * Reads a range of a file channel.
+     */
+    private static final class ChannelInputStream extends InputStream {
+
+        private final FileChannel channel;
+
+        private long position;
+
+        private final long end;
+
+        ChannelInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of zip file");
+            }
+            position += read;
+            return read;
+        }
+    }
+}
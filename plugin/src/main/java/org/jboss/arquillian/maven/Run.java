@@ -17,9 +17,17 @@
  */
 package org.jboss.arquillian.maven;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.jboss.arquillian.container.spi.Container;
 import org.jboss.arquillian.container.spi.client.container.DeploymentException;
 import org.jboss.arquillian.container.spi.client.container.LifecycleException;
+import org.jboss.arquillian.container.spi.client.deployment.Deployment;
 import org.jboss.arquillian.core.spi.Manager;
 import org.jboss.arquillian.core.spi.context.ApplicationContext;
 import org.jboss.shrinkwrap.api.Archive;
@@ -35,6 +43,31 @@ import org.jboss.shrinkwrap.api.Archive;
  */
 public final class Run extends BaseCommand {
 
+    private static final long QUIET_PERIOD_MILLIS = 500;
+
+    /**
+     * The interval in seconds between scans for changes to redeploy. A value of 0 or less disables scanning.
+     *
+     * @parameter expression="${arquillian.scanIntervalSeconds}" default-value="0"
+     */
+    private int scanIntervalSeconds;
+
+    /**
+     * The files and directories scanned for changes. Default is the deployed file or exploded directory, the one
+     * redeployed: a change elsewhere, e.g. to the project classes directory, is only redeployed once packaged.
+     *
+     * @parameter
+     */
+    private File[] scanTargets;
+
+    private final Map<Container, Deployment> deployments = new ConcurrentHashMap<Container, Deployment>();
+
+    private Manager manager;
+
+    private List<Container> containers;
+
+    private DaemonClient daemon;
+
     /*
      * (non-Javadoc)
      *
@@ -53,37 +86,151 @@ public final class Run extends BaseCommand {
      */
     @Override
     public void perform(final Manager manager, final Container container) throws LifecycleException, DeploymentException {
-        Start.execute(manager, container);
+        Start.execute(timer(), manager, container);
 
-        final Archive<?> deployment = deploy(manager, container);
+        deployments.put(container, deploy(manager, container));
+    }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#afterPerform(org.jboss.arquillian.core.spi.Manager, java.util.List)
+     */
+    @Override
+    void afterPerform(final Manager manager, final List<Container> containers) {
+        this.manager = manager;
+        this.containers = containers;
         Runtime.getRuntime().addShutdownHook(new Thread() {
             @Override
             public void run() {
                 // ThreadLocals are not auto transfered / reactivated on new Threads, activate the ApplicationContext
                 manager.getContext(ApplicationContext.class).activate();
                 try {
-                    Undeploy.execute(manager, container, deployment);
-                    Stop.execute(manager, container);
+                    for (Container container : containers) {
+                        try {
+                            Deployment deployment = deployments.get(container);
+                            if (deployment != null) {
+                                Undeploy.execute(timer(), manager, container, deployment);
+                            }
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                        Stop.execute(timer(), manager, container);
+                    }
+                } finally {
+                    manager.shutdown();
+                }
+            }
+        });
+        writeMetrics();
+        await();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#performOnDaemon(org.jboss.arquillian.maven.DaemonClient)
+     */
+    @Override
+    boolean performOnDaemon(final DaemonClient daemon) throws DeploymentException {
+        this.daemon = daemon;
+        getLog().info("Perform run on daemon of deployment " + filename());
+        long start = timer().begin();
+        deployOnDaemon(daemon, source(), filename());
+        timer().record(Metrics.DEPLOY, null, start);
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    daemon.undeploy(containerList(), source(), filename());
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
             }
         });
+        writeMetrics();
+        await();
+        return true;
+    }
+
+    private void await() {
         try {
-            while (true) {
-                Thread.sleep(10000);
+            if (scanIntervalSeconds <= 0) {
+                while (true) {
+                    Thread.sleep(10000);
+                }
             }
+            scan();
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private Archive<?> deploy(final Manager manager, final Container container) throws DeploymentException {
-        final Archive<?> deployment = createDeployment();
-        getLog().info("Perform run on " + container.getName() + " of deployment " + deployment.getName());
+    private void scan() throws InterruptedException {
+        List<File> targets = scanTargets();
+        getLog().info("Scanning " + targets + " for changes every " + scanIntervalSeconds + " seconds");
+
+        Scanner scanner = new Scanner(targets);
+        while (true) {
+            Thread.sleep(scanIntervalSeconds * 1000L);
+            if (scanner.scan()) {
+                // Wait for the build writing the changes to be done before redeploying
+                do {
+                    Thread.sleep(QUIET_PERIOD_MILLIS);
+                } while (scanner.scan());
+                redeploy();
+            }
+        }
+    }
+
+    /**
+     * @return the configured scanTargets, or the deployed file or exploded directory
+     */
+    List<File> scanTargets() {
+        if (scanTargets != null && scanTargets.length > 0) {
+            return Arrays.asList(scanTargets);
+        }
+        return Collections.singletonList(source());
+    }
+
+    private void redeploy() {
+        if (daemon != null) {
+            long start = timer().begin();
+            try {
+                deployOnDaemon(daemon, source(), filename());
+                timer().record(Metrics.DEPLOY, null, start);
+                getLog().info("Redeployed on daemon in " + (System.nanoTime() - start) / 1000000 + " ms");
+            } catch (Exception e) {
+                getLog().error("Redeploy failed on daemon", e);
+            }
+            writeMetrics();
+            return;
+        }
+
+        for (Container container : containers) {
+            long start = System.nanoTime();
+            try {
+                Deployment previous = deployments.remove(container);
+                if (previous != null) {
+                    Undeploy.execute(timer(), manager, container, previous);
+                }
+                deployments.put(container, deploy(manager, container));
+                getLog().info("Redeployed on " + container.getName() + " in " + (System.nanoTime() - start) / 1000000
+                        + " ms");
+            } catch (Exception e) {
+                getLog().error("Redeploy failed on " + container.getName(), e);
+            }
+        }
+        writeMetrics();
+    }
+
+    private Deployment deploy(final Manager manager, final Container container) throws DeploymentException {
+        final Archive<?> archive = createDeployment();
+        getLog().info("Perform run on " + container.getName() + " of deployment " + archive.getName());
 
-        Deploy.execute(manager, container, deployment);
+        Deployment deployment = Utils.deployment(archive);
+        awaitReady(container, archive, Deploy.execute(timer(), manager, container, deployment));
         return deployment;
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detects changes to a set of files and directories by comparing the modification times of their content between two
+ * scans.
+ *
+ * @version $Revision: $
+ */
+final class Scanner {
+
+    private final List<File> roots;
+
+    private Map<String, Long> snapshot;
+
+    Scanner(List<File> roots) {
+        this.roots = roots;
+        this.snapshot = snapshot();
+    }
+
+    /**
+     * Scan the roots again.
+     *
+     * @return true if something was added, removed or modified since the previous scan.
+     */
+    boolean scan() {
+        Map<String, Long> current = snapshot();
+        if (current.equals(snapshot)) {
+            return false;
+        }
+        snapshot = current;
+        return true;
+    }
+
+    private Map<String, Long> snapshot() {
+        Map<String, Long> files = new HashMap<String, Long>();
+        for (File root : roots) {
+            collect(root, files);
+        }
+        return files;
+    }
+
+    private static void collect(File file, Map<String, Long> files) {
+        if (!file.exists()) {
+            return;
+        }
+        files.put(file.getPath(), file.lastModified());
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                collect(child, files);
+            }
+        }
+    }
+}
@@ -17,9 +17,26 @@
  */
 package org.jboss.arquillian.maven;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.jboss.arquillian.config.descriptor.api.ContainerDef;
 import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.ContainerRegistry;
+import org.jboss.arquillian.container.spi.client.container.DeploymentException;
 import org.jboss.arquillian.container.spi.client.container.LifecycleException;
 import org.jboss.arquillian.core.spi.Manager;
+import org.jboss.arquillian.core.spi.context.ApplicationContext;
 
 /**
  * Start a Container
@@ -31,6 +48,55 @@ import org.jboss.arquillian.core.spi.Manager;
  *
  */
 public final class Start extends BaseCommand {
+
+    /**
+     * Start the containers in a background daemon process that outlives this build. Later builds deploy, undeploy,
+     * run and stop through the daemon until it is stopped.
+     *
+     * @parameter expression="${arquillian.daemon}" default-value="false"
+     */
+    private boolean daemon;
+
+    /**
+     * The maximum time in seconds to wait for the daemon to start the containers.
+     *
+     * @parameter expression="${arquillian.daemonTimeout}" default-value="300"
+     */
+    private int daemonTimeout = 300;
+
+    /**
+     * Start the containers in the background, so the rest of the build runs while they start. The goals operating on a
+     * container later in the build wait for it to be started, for at most startTimeout seconds.
+     *
+     * @parameter expression="${arquillian.async}" default-value="false"
+     */
+    private boolean async;
+
+    /**
+     * Start the containers on free ports instead of the configured ones. A free port is allocated for each of the
+     * portProperties of the container configuration.
+     *
+     * @parameter expression="${arquillian.allocatePorts}" default-value="false"
+     */
+    private boolean allocatePorts;
+
+    /**
+     * The properties of the container configuration holding ports. Their values, configured or allocated, are exported
+     * as arquillian.[container].[property] project and system properties, e.g. arquillian.jetty.bindHttpPort.
+     *
+     * @parameter expression="${arquillian.portProperties}" default-value="bindHttpPort"
+     */
+    private String[] portProperties;
+
+    /**
+     * The number of identical containers to start for each selected container, on allocated ports. The copies of the
+     * configuration of the container are named after it, e.g. jetty-1, and the goals later in the build operate on the
+     * whole pool.
+     *
+     * @parameter expression="${arquillian.poolSize}" default-value="1"
+     */
+    private int poolSize = 1;
+
     /*
      * (non-Javadoc)
      *
@@ -58,13 +124,238 @@ public final class Start extends BaseCommand {
      * org.jboss.arquillian.container.spi.Container)
      */
     @Override
-    public void perform(Manager manager, Container container) throws LifecycleException {
-        execute(manager, container);
+    public void perform(final Manager manager, final Container container) throws LifecycleException {
+        configurePorts(container);
+        if (!async) {
+            execute(timer(), manager, container);
+            started(container);
+            return;
+        }
+
+        ContainerStarts starts = getFromContext(ContainerStarts.class);
+        if (starts == null) {
+            starts = new ContainerStarts();
+            putInContext(ContainerStarts.class, starts);
+        }
+        getLog().info("Starting container " + container.getName() + " in the background");
+        final ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        starts.submit(container, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                // ThreadLocals are not auto transfered / reactivated on new Threads, activate the ApplicationContext
+                Thread.currentThread().setContextClassLoader(classLoader);
+                ApplicationContext context = manager.getContext(ApplicationContext.class);
+                context.activate();
+                try {
+                    execute(timer(), manager, container);
+                    started(container);
+                    getLog().info("Started container " + container.getName());
+                } catch (LifecycleException e) {
+                    getLog().error("Could not start container " + container.getName(), e);
+                    throw e;
+                } finally {
+                    context.deactivate();
+                }
+                return null;
+            }
+        });
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#execute()
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (daemon && DaemonClient.connect(daemonFile()) == null) {
+            if (allocatePorts) {
+                getLog().warn("allocatePorts is not supported with daemon, the configured ports are used");
+            }
+            startDaemon();
+            try {
+                exportPorts(DaemonClient.connect(daemonFile()));
+            } catch (DeploymentException e) {
+                throw new MojoExecutionException("Could not read the ports of the daemon " + daemonFile(), e);
+            }
+        } else {
+            super.execute();
+        }
     }
 
-    static void execute(Manager manager, Container container) throws LifecycleException {
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#performOnDaemon(org.jboss.arquillian.maven.DaemonClient)
+     */
+    @Override
+    boolean performOnDaemon(DaemonClient daemon) throws DeploymentException {
+        getLog().info("Using the containers started by the daemon of " + daemonFile());
+        exportPorts(daemon);
+        return true;
+    }
+
+    /**
+     * Export the portProperties of the daemon containers, as for containers started in this build.
+     */
+    private void exportPorts(DaemonClient daemon) throws DeploymentException {
+        if (portProperties == null) {
+            return;
+        }
+        List<String> names = new ArrayList<String>();
+        for (String property : portProperties) {
+            names.add(property.trim());
+        }
+        for (Map.Entry<String, Map<String, String>> container : daemon.properties(containerList(), names).entrySet()) {
+            for (Map.Entry<String, String> port : container.getValue().entrySet()) {
+                exportProperty("arquillian." + container.getKey() + "." + port.getKey(), port.getValue());
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#withPools(org.jboss.arquillian.core.spi.Manager,
+     * org.jboss.arquillian.container.spi.ContainerRegistry, java.util.List)
+     */
+    @Override
+    List<Container> withPools(Manager manager, ContainerRegistry registry, List<Container> selected) {
+        if (poolSize > 1) {
+            synchronized (getPluginContext()) {
+                ContainerPool pool = getFromContext(ContainerPool.class);
+                if (pool == null) {
+                    pool = new ContainerPool();
+                    putInContext(ContainerPool.class, pool);
+                }
+                for (Container container : selected) {
+                    pool.grow(manager, registry, container, poolSize);
+                }
+            }
+        }
+        return super.withPools(manager, registry, selected);
+    }
+
+    /**
+     * Allocate the portProperties of the container if allocatePorts is set or it is pooled, and export them.
+     */
+    void configurePorts(Container container) throws LifecycleException {
+        if (portProperties == null) {
+            return;
+        }
+        ContainerDef configuration = container.getContainerConfiguration();
+        for (String property : portProperties) {
+            String name = property.trim();
+            String port = configuration.getContainerProperties().get(name);
+            // The containers of a pool can not share the configured port
+            if (allocatePorts || poolSize > 1) {
+                try {
+                    port = String.valueOf(Ports.allocate());
+                } catch (IOException e) {
+                    throw new LifecycleException("Could not allocate a port for " + name + " of " + container.getName(),
+                            e);
+                }
+                configuration.overrideProperty(name, port);
+            }
+            if (port != null) {
+                exportProperty("arquillian." + container.getName() + "." + name, port);
+            }
+        }
+    }
+
+    private void startDaemon() throws MojoExecutionException {
+        getLog().info("Starting daemon " + daemonFile());
+
+        List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+        if (arquillianXml() != null) {
+            command.add("-Darquillian.xml=" + arquillianXml());
+        }
+        command.add(Daemon.class.getName());
+        command.add(daemonFile().getAbsolutePath());
+        command.add(group() == null ? "-" : group());
+        if (containers() != null) {
+            for (String container : containers()) {
+                command.add(container.trim());
+            }
+        }
+
+        try {
+            ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+            builder.environment().put("CLASSPATH", classPath());
+            daemonFile().delete();
+            Process process = builder.start();
+            process.getOutputStream().close();
+            awaitDaemon(process);
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException("Could not start daemon " + daemonFile(), e);
+        }
+        getLog().info("Daemon started, log written to " + daemonFile() + ".log");
+    }
+
+    private String classPath() throws Exception {
+        StringBuilder classPath = new StringBuilder();
+        append(BaseCommand.class.getClassLoader(), classPath);
+        append(getClassLoader(), classPath);
+        return classPath.toString();
+    }
+
+    private static void append(ClassLoader classLoader, StringBuilder classPath) throws Exception {
+        if (classLoader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+                if (classPath.length() > 0) {
+                    classPath.append(File.pathSeparatorChar);
+                }
+                classPath.append(new File(url.toURI()).getPath());
+            }
+        }
+    }
+
+    private void awaitDaemon(Process process) throws Exception {
+        long deadline = System.currentTimeMillis() + daemonTimeout * 1000L;
+        while (DaemonClient.connect(daemonFile()) == null) {
+            if (hasExited(process)) {
+                throw new MojoExecutionException("Daemon exited with status " + process.exitValue() + ": "
+                        + read(process.getInputStream()) + " See " + daemonFile() + ".log");
+            }
+            if (System.currentTimeMillis() > deadline) {
+                process.destroy();
+                throw new MojoExecutionException("Daemon did not start within " + daemonTimeout + " seconds. See "
+                        + daemonFile() + ".log");
+            }
+            Thread.sleep(500);
+        }
+    }
+
+    private static boolean hasExited(Process process) {
+        try {
+            process.exitValue();
+            return true;
+        } catch (IllegalThreadStateException e) {
+            return false;
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString();
+    }
+
+    static void execute(Metrics.Timer timer, Manager manager, Container container) throws LifecycleException {
+        long start = timer.begin();
         Utils.setup(manager, container);
+        timer.record(Metrics.SETUP, container.getName(), start);
+
+        start = timer.begin();
         Utils.start(manager, container);
+        timer.record(Metrics.START, container.getName(), start);
     }
 
 }
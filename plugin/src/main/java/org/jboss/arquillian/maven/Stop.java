@@ -17,7 +17,10 @@
  */
 package org.jboss.arquillian.maven;
 
+import java.util.List;
+
 import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.client.container.DeploymentException;
 import org.jboss.arquillian.core.spi.Manager;
 
 /**
@@ -59,16 +62,38 @@ public final class Stop extends BaseCommand {
      */
     @Override
     public void perform(Manager manager, Container container) {
-        execute(manager, container);
+        execute(timer(), manager, container);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#afterPerform(org.jboss.arquillian.core.spi.Manager, java.util.List)
+     */
+    @Override
+    void afterPerform(Manager manager, List<Container> containers) {
+        manager.shutdown();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#performOnDaemon(org.jboss.arquillian.maven.DaemonClient)
+     */
+    @Override
+    boolean performOnDaemon(DaemonClient daemon) throws DeploymentException {
+        getLog().info("Stopping daemon");
+        daemon.stop();
+        return true;
     }
 
-    static void execute(Manager manager, Container container) {
+    static void execute(Metrics.Timer timer, Manager manager, Container container) {
+        long start = timer.begin();
         try {
             Utils.stop(manager, container);
         } catch (Exception e) {
             e.printStackTrace();
-        } finally {
-            manager.shutdown();
         }
+        timer.record(Metrics.STOP, container.getName(), start);
     }
 }
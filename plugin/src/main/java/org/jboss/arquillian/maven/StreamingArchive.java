@@ -0,0 +1,99 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.GenericArchive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.importer.ZipImporter;
+
+/**
+ * An {@link Archive} backed by a file on disk that is not imported into memory.
+ *
+ * Exporting it as a {@link ZipExporter} streams the file as is. Any other operation imports the file on first use, so
+ * container adapters that need the archive content still work.
+ *
+ * @version $Revision: $
+ */
+final class StreamingArchive implements InvocationHandler {
+
+    private final File file;
+
+    private Archive<?> imported;
+
+    private StreamingArchive(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Create an archive streaming the given file.
+     *
+     * @param file the archive file
+     * @return the archive
+     */
+    static GenericArchive from(File file) {
+        return (GenericArchive) Proxy.newProxyInstance(StreamingArchive.class.getClassLoader(),
+                new Class<?>[] { GenericArchive.class }, new StreamingArchive(file));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+     */
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        int arity = args == null ? 0 : args.length;
+        if ("getName".equals(name) && arity == 0) {
+            return file.getName();
+        }
+        if ("equals".equals(name) && arity == 1) {
+            return proxy == args[0];
+        }
+        if ("hashCode".equals(name) && arity == 0) {
+            return System.identityHashCode(proxy);
+        }
+        if ("toString".equals(name) && arity == 0) {
+            return file.getName() + " (streamed from " + file.getAbsolutePath() + ")";
+        }
+        if ("as".equals(name) && ZipExporter.class.equals(args[0])) {
+            return new FileZipExporter((Archive<?>) proxy, file);
+        }
+
+        try {
+            return method.invoke(imported(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private synchronized Archive<?> imported() {
+        if (imported == null) {
+            imported = ShrinkWrap.create(ZipImporter.class, file.getName()).importFrom(file).as(GenericArchive.class);
+        }
+        return imported;
+    }
+}
@@ -17,9 +17,14 @@
  */
 package org.jboss.arquillian.maven;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.jboss.arquillian.container.spi.Container;
 import org.jboss.arquillian.container.spi.client.container.DeploymentException;
 import org.jboss.arquillian.container.spi.client.container.LifecycleException;
+import org.jboss.arquillian.container.spi.client.deployment.Deployment;
 import org.jboss.arquillian.core.spi.Manager;
 import org.jboss.shrinkwrap.api.Archive;
 
@@ -44,11 +49,34 @@ public final class Undeploy extends BaseCommand {
         return "undeploy";
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#validateInput()
+     */
+    @Override
+    void validateInput() {
+        // The archive deployed in this build is undeployed even if the file is gone
+        if (!isDeployedInBuild()) {
+            super.validateInput();
+        }
+    }
+
     Manager startNewManager(Class<?>... extensions) {
         throw new RuntimeException(
                 "Container not started. The container must be started before undeploy. If the container is remote sue \"arquillian:undeployRemote\"");
     };
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#batchSupported()
+     */
+    @Override
+    boolean batchSupported() {
+        return true;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -57,12 +85,51 @@ public final class Undeploy extends BaseCommand {
      */
     @Override
     public void perform(final Manager manager, final Container container) throws DeploymentException, LifecycleException {
-        final Archive<?> deployment = createDeployment();
-        getLog().info("Perform undeploy on " + container.getName() + " of deployment " + deployment.getName());
-        execute(manager, container, deployment);
+        if (isBatch()) {
+            performBatch(manager, container, true, new Batch.Operation() {
+                @Override
+                public void perform(Deployable deployable, Archive<?> archive) throws DeploymentException {
+                    getLog().info("Perform undeploy on " + container.getName() + " of deployment " + archive.getName());
+                    Deployment deployment = deployments().remove(container.getName(), deployable.file());
+                    execute(timer(), manager, container, deployment == null ? Utils.deployment(archive) : deployment);
+                    endpoints().remove(container.getName(), archive.getName());
+                }
+            });
+            return;
+        }
+        Deployment deployment = takeDeployment(container);
+        String name = deployment.getDescription().getArchive().getName();
+        getLog().info("Perform undeploy on " + container.getName() + " of deployment " + name);
+        execute(timer(), manager, container, deployment);
+        endpoints().remove(container.getName(), name);
+        undeployed(container);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#performOnDaemon(org.jboss.arquillian.maven.DaemonClient)
+     */
+    @Override
+    boolean performOnDaemon(DaemonClient daemon) throws DeploymentException {
+        if (isBatch()) {
+            List<Deployable> order = new ArrayList<Deployable>(batch().order());
+            Collections.reverse(order);
+            for (Deployable deployable : order) {
+                getLog().info("Perform undeploy on daemon of deployment " + deployable.name());
+                daemon.undeploy(containerList(), deployable.file(), deployable.name());
+            }
+            return true;
+        }
+        getLog().info("Perform undeploy on daemon of deployment " + filename());
+        daemon.undeploy(containerList(), source(), filename());
+        return true;
     }
 
-    static void execute(Manager manager, Container container, final Archive<?> deployment) throws DeploymentException {
+    static void execute(Metrics.Timer timer, Manager manager, Container container, Deployment deployment)
+            throws DeploymentException {
+        long start = timer.begin();
         Utils.undeploy(manager, container, deployment);
+        timer.record(Metrics.UNDEPLOY, container.getName(), start);
     }
 }
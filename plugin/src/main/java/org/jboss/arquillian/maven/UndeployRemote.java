@@ -17,11 +17,13 @@
  */
 package org.jboss.arquillian.maven;
 
+import java.util.List;
+
 import org.jboss.arquillian.container.spi.Container;
 import org.jboss.arquillian.container.spi.client.container.DeploymentException;
 import org.jboss.arquillian.container.spi.client.container.LifecycleException;
+import org.jboss.arquillian.container.spi.client.deployment.Deployment;
 import org.jboss.arquillian.core.spi.Manager;
-import org.jboss.shrinkwrap.api.Archive;
 
 /**
  * UnDeploy to a remote container. Start and stop the container before and after the undeploy.
@@ -46,6 +48,19 @@ public final class UndeployRemote extends BaseCommand {
         return "undeployRemote";
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#validateInput()
+     */
+    @Override
+    void validateInput() {
+        // The archive deployed in this build is undeployed even if the file is gone
+        if (!isDeployedInBuild()) {
+            super.validateInput();
+        }
+    }
+
     Manager startNewManager(Class<?>... extensions) {
         managerStartedByMe = true;
         return super.startNewManager(extensions);
@@ -60,16 +75,31 @@ public final class UndeployRemote extends BaseCommand {
     @Override
     public void perform(final Manager manager, final Container container) throws DeploymentException, LifecycleException {
         if (managerStartedByMe)
-            Start.execute(manager, container);
+            Start.execute(timer(), manager, container);
 
         undeploy(manager, container);
 
-        Stop.execute(manager, container);
+        Stop.execute(timer(), manager, container);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.maven.BaseCommand#afterPerform(org.jboss.arquillian.core.spi.Manager, java.util.List)
+     */
+    @Override
+    void afterPerform(Manager manager, List<Container> containers) {
+        manager.shutdown();
     }
 
     private void undeploy(Manager manager, Container container) throws DeploymentException {
-        final Archive<?> deployment = createDeployment();
-        getLog().info("Perform undeploy on " + container.getName() + " of deployment " + deployment.getName());
-        Undeploy.execute(manager, container, deployment);
+        Deployment deployment = takeDeployment(container);
+        String name = deployment.getDescription().getArchive().getName();
+        getLog().info("Perform undeploy on " + container.getName() + " of deployment " + name);
+        Undeploy.execute(timer(), manager, container, deployment);
+        endpoints().remove(container.getName(), name);
+        // The next deployRemote uploads the whole archive
+        manifestFile(container, name).delete();
+        undeployed(container);
     }
 }
@@ -17,14 +17,22 @@
  */
 package org.jboss.arquillian.maven;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
+import org.jboss.arquillian.config.descriptor.api.ArquillianDescriptor;
+import org.jboss.arquillian.config.descriptor.api.ContainerDef;
+import org.jboss.arquillian.config.descriptor.api.GroupDef;
 import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.ContainerRegistry;
 import org.jboss.arquillian.container.spi.client.container.DeploymentException;
 import org.jboss.arquillian.container.spi.client.container.LifecycleException;
 import org.jboss.arquillian.container.spi.client.deployment.Deployment;
 import org.jboss.arquillian.container.spi.client.deployment.DeploymentDescription;
+import org.jboss.arquillian.container.spi.client.deployment.TargetDescription;
 import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
 import org.jboss.arquillian.container.spi.event.DeployDeployment;
 import org.jboss.arquillian.container.spi.event.SetupContainer;
@@ -45,11 +53,60 @@ import org.jboss.shrinkwrap.api.Archive;
  */
 final class Utils {
 
-    private static Map<Archive<?>, Deployment> contextMap = new HashMap<Archive<?>, Deployment>();
-
     private Utils() {
     }
 
+    /**
+     * Select the containers to operate on.
+     *
+     * @param manager the manager
+     * @param registry the registry of the manager
+     * @param names the qualifiers of the containers, may be empty
+     * @param group the name of a group of containers, may be null
+     * @return the named containers and the containers of the group, or the default container if none is given
+     */
+    public static List<Container> selectContainers(Manager manager, ContainerRegistry registry, Collection<String> names,
+            String group) {
+        Set<String> qualifiers = new LinkedHashSet<String>();
+        for (String name : names) {
+            qualifiers.add(name.trim());
+        }
+        if (group != null) {
+            qualifiers.addAll(groupContainers(manager, group));
+        }
+
+        List<Container> selected = new ArrayList<Container>();
+        if (qualifiers.isEmpty()) {
+            selected.add(registry.getContainer(TargetDescription.DEFAULT));
+        } else {
+            for (String qualifier : qualifiers) {
+                Container container = registry.getContainer(qualifier);
+                if (container == null) {
+                    throw new IllegalArgumentException("No container with qualifier '" + qualifier
+                            + "' found in arquillian.xml");
+                }
+                selected.add(container);
+            }
+        }
+        return selected;
+    }
+
+    private static List<String> groupContainers(Manager manager, String group) {
+        ArquillianDescriptor descriptor = manager.resolve(ArquillianDescriptor.class);
+        if (descriptor != null) {
+            for (GroupDef groupDef : descriptor.getGroups()) {
+                if (group.equals(groupDef.getGroupName())) {
+                    List<String> names = new ArrayList<String>();
+                    for (ContainerDef containerDef : groupDef.getGroupContainers()) {
+                        names.add(containerDef.getContainerName());
+                    }
+                    return names;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No group named '" + group + "' found in arquillian.xml");
+    }
+
     public static void setup(Manager manager, Container container) throws LifecycleException {
         manager.fire(new SetupContainer(container));
     }
@@ -62,34 +119,35 @@ final class Utils {
         manager.fire(new StopContainer(container));
     }
 
-    public static void deploy(Manager manager, Container container, Archive<?> deployment) throws DeploymentException {
-        manager.fire(new DeployDeployment(container, getOrCreateDeployment(deployment)),
+    /**
+     * A new Deployment of the archive. Undeploy an archive with the Deployment it was deployed with.
+     */
+    public static Deployment deployment(Archive<?> archive) {
+        return new Deployment(new DeploymentDescription("NO-NAME", archive));
+    }
+
+    /**
+     * Deploy to the container.
+     *
+     * @return the metadata of the deployment returned by the container, may be null
+     */
+    public static ProtocolMetaData deploy(Manager manager, Container container, Deployment deployment)
+            throws DeploymentException {
+        final List<ProtocolMetaData> metadata = new ArrayList<ProtocolMetaData>(1);
+        manager.fire(new DeployDeployment(container, deployment),
                 new NonManagedObserver<DeployDeployment>() {
                     @Inject
                     private Instance<ProtocolMetaData> metadataInst;
 
                     @Override
                     public void fired(DeployDeployment event) {
-                        ProtocolMetaData metadata = metadataInst.get();
-                        if (metadata != null) {
-                            System.out.println(metadata);
-                        }
+                        metadata.add(metadataInst.get());
                     }
                 });
+        return metadata.isEmpty() ? null : metadata.get(0);
     }
 
-    public static void undeploy(Manager manager, Container container, Archive<?> deployment) throws DeploymentException {
-        manager.fire(new UnDeployDeployment(container, getOrCreateDeployment(deployment)));
-    }
-
-    private static Deployment getOrCreateDeployment(Archive<?> archive) {
-        if (contextMap.containsKey(archive)) {
-            return contextMap.remove(archive);
-        } else {
-            Deployment deployment = new Deployment(new DeploymentDescription("NO-NAME", archive));
-            contextMap.put(archive, deployment);
-
-            return deployment;
-        }
+    public static void undeploy(Manager manager, Container container, Deployment deployment) throws DeploymentException {
+        manager.fire(new UnDeployDeployment(container, deployment));
     }
 }
@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Compare the deploy timings and load results of this build with a committed baseline, and fail on regression.
+ *
+ * @goal verify-performance
+ * @phase verify
+ *
+ * @version $Revision: $
+ *
+ */
+public final class VerifyPerformance extends AbstractMojo {
+
+    /**
+     * The samples of previous builds the results are compared with. Results without samples are not compared.
+     *
+     * @parameter expression="${arquillian.baselineFile}" default-value="${basedir}/arquillian-baseline.properties"
+     */
+    private File baselineFile;
+
+    /**
+     * The time spent in the phases of the goals, as written by the container goals.
+     *
+     * @parameter expression="${arquillian.metricsFile}" default-value="${project.build.directory}/arquillian-metrics.json"
+     */
+    private File metricsFile;
+
+    /**
+     * The throughput and latencies, as written by the load goal.
+     *
+     * @parameter expression="${arquillian.loadReport}" default-value="${project.build.directory}/arquillian-load.json"
+     */
+    private File loadReport;
+
+    /**
+     * How much worse than the median of its samples, in percent, a result may be.
+     *
+     * @parameter expression="${arquillian.tolerance}" default-value="20"
+     */
+    private double tolerance = 20;
+
+    /**
+     * The tolerance in percent of single results, e.g. <tolerances><load.p999>50</load.p999></tolerances>.
+     *
+     * @parameter
+     */
+    private Map<String, String> tolerances;
+
+    /**
+     * How many standard deviations of its samples, estimated from their median absolute deviation, a result may be
+     * worse than their median.
+     *
+     * @parameter expression="${arquillian.noiseSigmas}" default-value="3"
+     */
+    private double noiseSigmas = 3;
+
+    /**
+     * The difference in milliseconds, or requests per second for throughputs, too small to be a regression.
+     *
+     * @parameter expression="${arquillian.noiseFloor}" default-value="10"
+     */
+    private double noiseFloor = 10;
+
+    /**
+     * Add the results of this build to the baseline, instead of comparing them.
+     *
+     * @parameter expression="${arquillian.updateBaseline}" default-value="false"
+     */
+    private boolean updateBaseline;
+
+    /**
+     * The number of latest samples kept per result when updating the baseline.
+     *
+     * @parameter expression="${arquillian.baselineSamples}" default-value="5"
+     */
+    private int baselineSamples = 5;
+
+    /**
+     * Skip the verification.
+     *
+     * @parameter expression="${arquillian.skipVerifyPerformance}" default-value="false"
+     */
+    private boolean skip;
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skip) {
+            getLog().info("Skipping performance verification");
+            return;
+        }
+
+        Map<String, Double> results;
+        Baseline baseline;
+        try {
+            results = Baseline.results(metricsFile, loadReport);
+            baseline = new Baseline(baselineFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not read performance results", e);
+        }
+        if (results.isEmpty()) {
+            getLog().info("No performance results in " + metricsFile + " or " + loadReport);
+            return;
+        }
+
+        if (updateBaseline) {
+            try {
+                baseline.record(results, Math.max(1, baselineSamples));
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not write " + baselineFile, e);
+            }
+            getLog().info("Added " + results.size() + " results to baseline " + baselineFile);
+            return;
+        }
+        if (baseline.isEmpty()) {
+            getLog().info("No baseline " + baselineFile + ", record one with -Darquillian.updateBaseline");
+            return;
+        }
+
+        List<String> regressions = new ArrayList<String>();
+        for (Map.Entry<String, Double> result : results.entrySet()) {
+            String name = result.getKey();
+            if (baseline.samples(name).isEmpty()) {
+                getLog().debug("No baseline of " + name);
+                continue;
+            }
+            String regression = baseline.regression(name, result.getValue(), tolerance(name), noiseSigmas, noiseFloor);
+            if (regression == null) {
+                getLog().info(name + ": " + Baseline.format(result.getValue()) + " within baseline");
+            } else {
+                getLog().error(regression);
+                regressions.add(regression);
+            }
+        }
+        if (!regressions.isEmpty()) {
+            throw new MojoFailureException(regressions.size() + " performance regressions against " + baselineFile
+                    + ": " + regressions);
+        }
+    }
+
+    private double tolerance(String name) throws MojoExecutionException {
+        String value = tolerances == null ? null : tolerances.get(name);
+        if (value == null) {
+            return tolerance;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new MojoExecutionException("Invalid tolerance " + value + " of " + name, e);
+        }
+    }
+}
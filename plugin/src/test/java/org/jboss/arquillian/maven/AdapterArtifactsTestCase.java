@@ -0,0 +1,135 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+
+/**
+ * AdapterArtifactsTestCase
+ *
+ * @version $Revision: $
+ */
+public final class AdapterArtifactsTestCase extends TestCase {
+
+    private final List<Artifact> artifacts = new ArrayList<Artifact>();
+
+    /**
+     * The dependencies declared in the POM of each artifact.
+     */
+    private final Map<String, List<String>> poms = new HashMap<String, List<String>>();
+
+    private Artifact hibernate;
+
+    private final AdapterArtifacts.Dependencies dependencies = new AdapterArtifacts.Dependencies() {
+        @Override
+        public Collection<String> of(Artifact artifact) {
+            List<String> declared = poms.get(key(artifact));
+            return declared == null ? Collections.<String> emptyList() : declared;
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        Artifact junit = artifact("org.jboss.arquillian.junit:arquillian-junit-container", "jar");
+        artifact("org.jboss.arquillian.core:arquillian-core-impl-base", "jar", junit);
+        Artifact adapter = artifact("org.jboss.as:jboss-as-arquillian-container-remote", "jar");
+        artifact("org.jboss.as:jboss-as-controller-client", "jar", adapter);
+        Artifact jetty = artifact("org.eclipse.jetty:jetty-webapp", "jar");
+        artifact("org.eclipse.jetty:jetty-server", "jar", jetty);
+        hibernate = artifact("org.hibernate:hibernate-core", "jar");
+        artifact("antlr:antlr", "jar", hibernate);
+        artifact("org.example:services", "war");
+    }
+
+    public void testArquillianArtifactsAndTheirDependencies() throws Exception {
+        assertEquals(Arrays.asList("arquillian-junit-container.jar", "arquillian-core-impl-base.jar",
+                "jboss-as-arquillian-container-remote.jar", "jboss-as-controller-client.jar"),
+                names(new AdapterArtifacts(Collections.<String> emptyList(), dependencies).classPath(artifacts)));
+    }
+
+    public void testArtifactsMatchingPatternsAndTheirDependencies() throws Exception {
+        assertEquals(Arrays.asList("arquillian-junit-container.jar", "arquillian-core-impl-base.jar",
+                "jboss-as-arquillian-container-remote.jar", "jboss-as-controller-client.jar", "jetty-webapp.jar",
+                "jetty-server.jar"), names(new AdapterArtifacts(Arrays.asList(" org.eclipse.*:jetty-web* ", ""), dependencies)
+                .classPath(artifacts)));
+        assertEquals(4, new AdapterArtifacts(Arrays.asList("org.example"), dependencies).classPath(artifacts).size());
+    }
+
+    public void testSharedDependenciesAreSelectedWhateverTheirTrail() throws Exception {
+        // Maven records the trail of a dependency shared by the project and the adapter through the first one found
+        Artifact logging = artifact("org.jboss.logging:jboss-logging", "jar", hibernate);
+        artifact("org.jboss.logmanager:jboss-logmanager", "jar", hibernate, logging);
+        poms.get("org.jboss.as:jboss-as-controller-client").add(key(logging));
+
+        List<String> classPath = names(new AdapterArtifacts(Collections.<String> emptyList(), dependencies)
+                .classPath(artifacts));
+        assertTrue(classPath.toString(), classPath.contains("jboss-logging.jar"));
+        assertTrue("Dependency of the shared dependency " + classPath, classPath.contains("jboss-logmanager.jar"));
+        assertFalse(classPath.contains("hibernate-core.jar"));
+        assertFalse(classPath.contains("antlr.jar"));
+    }
+
+    private Artifact artifact(String key, String type, Artifact... trail) {
+        String[] parts = key.split(":");
+        DefaultArtifactHandler handler = new DefaultArtifactHandler(type);
+        handler.setAddedToClasspath("jar".equals(type));
+        Artifact artifact = new DefaultArtifact(parts[0], parts[1], VersionRange.createFromVersion("1.0"), "test",
+                type, null, handler);
+        artifact.setFile(new File(parts[1] + "." + type));
+
+        List<String> ids = new ArrayList<String>();
+        ids.add("org.example:project:jar:1.0");
+        for (Artifact dependent : trail) {
+            ids.add(dependent.getId());
+        }
+        ids.add(artifact.getId());
+        artifact.setDependencyTrail(ids);
+        artifacts.add(artifact);
+        poms.put(key(artifact), new ArrayList<String>());
+        if (trail.length > 0) {
+            poms.get(key(trail[trail.length - 1])).add(key(artifact));
+        }
+        return artifact;
+    }
+
+    private static String key(Artifact artifact) {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId();
+    }
+
+    private static List<String> names(List<String> classPath) {
+        List<String> names = new ArrayList<String>();
+        for (String element : classPath) {
+            names.add(new File(element).getName());
+        }
+        return names;
+    }
+}
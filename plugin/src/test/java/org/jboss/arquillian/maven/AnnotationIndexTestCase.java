@@ -0,0 +1,173 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import junit.framework.TestCase;
+
+import org.jboss.jandex.Indexer;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.GenericArchive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ArchiveAsset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.importer.ZipImporter;
+import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
+/**
+ * AnnotationIndexTestCase
+ *
+ * @version $Revision: $
+ */
+public final class AnnotationIndexTestCase extends TestCase {
+
+    private final File cache = new File("target/annotation-index-test");
+
+    @Override
+    protected void setUp() throws Exception {
+        File[] files = cache.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        Indexer.indexed = 0;
+    }
+
+    public void testModulesOfAnEnterpriseArchiveAreIndexed() throws Exception {
+        JavaArchive lib = ShrinkWrap.create(JavaArchive.class, "lib.jar").add(new StringAsset("l"), "com/acme/L.class");
+        WebArchive web = ShrinkWrap.create(WebArchive.class, "web.war")
+                .add(new StringAsset("a"), "WEB-INF/classes/com/acme/A.class")
+                .add(new StringAsset("b"), "WEB-INF/classes/com/acme/B.class")
+                .addAsLibrary(lib);
+        JavaArchive ejb = ShrinkWrap.create(JavaArchive.class, "ejb.jar").add(new StringAsset("e"), "com/acme/E.class");
+        JavaArchive indexed = ShrinkWrap.create(JavaArchive.class, "indexed.jar")
+                .add(new StringAsset("i"), "com/acme/I.class")
+                .add(new StringAsset("existing"), AnnotationIndex.INDEX);
+        JavaArchive resources = ShrinkWrap.create(JavaArchive.class, "resources.jar").add(new StringAsset("r"), "r.txt");
+        EnterpriseArchive ear = ShrinkWrap.create(EnterpriseArchive.class, "app.ear").addAsModules(web, ejb, indexed,
+                resources);
+
+        // the classes and library of the web archive and the ejb module
+        assertEquals(3, AnnotationIndex.create(getClass().getClassLoader(), cache, 2).addTo(ear));
+        assertFalse(ear.contains(AnnotationIndex.INDEX));
+
+        Archive<?> indexedWeb = nested(ear, "/web.war");
+        assertEquals("classes=2", read(indexedWeb, "/WEB-INF/classes/" + AnnotationIndex.INDEX));
+        assertFalse(indexedWeb.contains(AnnotationIndex.INDEX));
+        assertEquals("classes=1", read(nested(indexedWeb, "/WEB-INF/lib/lib.jar"), AnnotationIndex.INDEX));
+        assertEquals("classes=1", read(nested(ear, "/ejb.jar"), AnnotationIndex.INDEX));
+        assertEquals("existing", read(nested(ear, "/indexed.jar"), AnnotationIndex.INDEX));
+        assertFalse(nested(ear, "/resources.jar").contains(AnnotationIndex.INDEX));
+    }
+
+    public void testModulesOfAnImportedArchiveAreReplaced() throws Exception {
+        EnterpriseArchive ear = ShrinkWrap.create(EnterpriseArchive.class, "app.ear").addAsModule(jar("a"));
+        Archive<?> imported = ShrinkWrap.create(ZipImporter.class, "app.ear")
+                .importFrom(ear.as(ZipExporter.class).exportAsInputStream()).as(GenericArchive.class);
+
+        assertEquals(1, AnnotationIndex.create(getClass().getClassLoader(), cache, 1).addTo(imported));
+        assertEquals("classes=1", read(nested(imported, "/app.jar"), AnnotationIndex.INDEX));
+    }
+
+    public void testIndexesAreCachedByContent() throws Exception {
+        AnnotationIndex index = AnnotationIndex.create(getClass().getClassLoader(), cache, 1);
+        assertEquals(1, index.addTo(jar("a")));
+        assertEquals(1, Indexer.indexed);
+
+        JavaArchive same = jar("a");
+        assertEquals(1, index.addTo(same));
+        assertEquals(1, Indexer.indexed);
+        assertEquals("classes=1", read(same, AnnotationIndex.INDEX));
+
+        assertEquals(1, index.addTo(jar("changed")));
+        assertEquals(2, Indexer.indexed);
+    }
+
+    public void testIndexesOfAnotherJandexAreNotReused() throws Exception {
+        assertEquals(1, AnnotationIndex.create(getClass().getClassLoader(), cache, 1).addTo(jar("a")));
+
+        // the same Jandex classes, from another location
+        File copy = new File("target/annotation-index-jandex/org/jboss/jandex");
+        copy.mkdirs();
+        File[] classes = new File(Indexer.class.getResource("Indexer.class").toURI()).getParentFile().listFiles();
+        for (File file : classes) {
+            FileOutputStream out = new FileOutputStream(new File(copy, file.getName()));
+            try {
+                out.write(read(file));
+            } finally {
+                out.close();
+            }
+        }
+        ClassLoader otherJandex = new URLClassLoader(new URL[] { new File("target/annotation-index-jandex").toURI()
+                .toURL() }, null);
+
+        JavaArchive same = jar("a");
+        assertEquals(1, AnnotationIndex.create(otherJandex, cache, 1).addTo(same));
+        assertEquals(2, cache.list().length);
+        assertEquals("classes=1", read(same, AnnotationIndex.INDEX));
+    }
+
+    public void testNoIndexWithoutJandex() throws Exception {
+        assertNull(AnnotationIndex.create(new ClassLoader(null) {
+        }, cache, 1));
+    }
+
+    private static JavaArchive jar(String content) {
+        return ShrinkWrap.create(JavaArchive.class, "app.jar").add(new StringAsset(content), "com/acme/A.class");
+    }
+
+    private static Archive<?> nested(Archive<?> archive, String path) {
+        return ((ArchiveAsset) archive.get(path).getAsset()).getArchive();
+    }
+
+    private static byte[] read(File file) throws Exception {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            new DataInputStream(in).readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String read(Archive<?> archive, String path) throws Exception {
+        InputStream in = archive.get(path).getAsset().openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ExplodedExporter;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
+/**
+ * ArchiveAnalysisTestCase
+ *
+ * @version $Revision: $
+ */
+public final class ArchiveAnalysisTestCase extends TestCase {
+
+    private final File directory = new File("target/archive-analysis-test");
+
+    @Override
+    protected void setUp() throws Exception {
+        // the exploded archive of a previous run can not be exported over
+        delete(directory);
+        new File(directory, "exploded").mkdirs();
+    }
+
+    public void testArchiveIsAnalyzed() throws Exception {
+        File file = new File(directory, "app.war");
+        archive().as(ZipExporter.class).exportTo(file, true);
+
+        ArchiveAnalysis analysis = ArchiveAnalysis.of(file, 1000, 2);
+        assertEquals(6, analysis.entries());
+        assertEquals(2, analysis.nestedArchives());
+        assertTrue(analysis.compressionRatio() < 0.5);
+        assertTrue(analysis.compressedSize() < file.length());
+
+        assertEquals(2, analysis.largestEntries().size());
+        assertEquals("WEB-INF/big.bin", analysis.largestEntries().get(0).path);
+        assertEquals(10000, analysis.largestEntries().get(0).size);
+        assertEquals(1, analysis.oversizedResources().size());
+        assertEquals("WEB-INF/big.bin", analysis.oversizedResources().get(0).path);
+
+        Map<String, List<String>> duplicates = analysis.duplicateClasses();
+        assertEquals(1, duplicates.size());
+        assertEquals(Arrays.asList("WEB-INF/classes", "WEB-INF/lib/a.jar", "WEB-INF/lib/b.jar"),
+                duplicates.get("com.acme.A"));
+
+        File report = new File(directory, "analysis.json");
+        analysis.write(report);
+        Map<?, ?> json = (Map<?, ?>) Json.parse(read(report));
+        assertEquals("app.war", json.get("archive"));
+        assertEquals(6.0, json.get("entries"));
+        assertEquals(1, ((List<?>) json.get("duplicateClasses")).size());
+    }
+
+    public void testExplodedArchiveIsAnalyzed() throws Exception {
+        File exploded = new File(directory, "exploded");
+        archive().as(ExplodedExporter.class).exportExploded(exploded);
+        // an exploded web archive, as the war plugin writes it, has the libraries as jar files
+        for (JavaArchive library : libraries()) {
+            File jar = new File(exploded, "app.war/WEB-INF/lib/" + library.getName());
+            delete(jar);
+            library.as(ZipExporter.class).exportTo(jar);
+        }
+
+        ArchiveAnalysis analysis = ArchiveAnalysis.of(new File(exploded, "app.war"), 1000, 10);
+        assertEquals(6, analysis.entries());
+        assertEquals(1.0, analysis.compressionRatio());
+        assertEquals(1, analysis.duplicateClasses().size());
+    }
+
+    private static String read(File file) throws Exception {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            new DataInputStream(in).readFully(bytes);
+            return new String(bytes, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            delete(files[i]);
+        }
+        file.delete();
+    }
+
+    private static JavaArchive[] libraries() {
+        JavaArchive a = ShrinkWrap.create(JavaArchive.class, "a.jar")
+                .add(new StringAsset("a"), "com/acme/A.class")
+                .add(new StringAsset("b"), "com/acme/B.class");
+        JavaArchive b = ShrinkWrap.create(JavaArchive.class, "b.jar")
+                .add(new StringAsset("a"), "com/acme/A.class")
+                .add(new StringAsset("m"), "module-info.class");
+        return new JavaArchive[] { a, b };
+    }
+
+    private static WebArchive archive() {
+        return ShrinkWrap.create(WebArchive.class, "app.war")
+                .add(new StringAsset("a"), "WEB-INF/classes/com/acme/A.class")
+                .add(new StringAsset("c"), "WEB-INF/classes/com/acme/C.class")
+                .add(new ByteArrayAsset(new byte[10000]), "WEB-INF/big.bin")
+                .add(new StringAsset("<html/>"), "index.html")
+                .addAsLibraries(libraries());
+    }
+}
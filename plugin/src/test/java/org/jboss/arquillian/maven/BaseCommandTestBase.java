@@ -38,17 +38,31 @@ abstract class BaseCommandTestBase extends AbstractMojoTestCase {
 
         BaseCommand baseCommand = (BaseCommand) lookupMojo(goal(), pomFile("arquillianXml4test-pom.xml"));
         assertNotNull(baseCommand.arquillianXml());
-        assertEquals("Unexpected value for arquillian.xml system property", "arquillianXml4test.xml",
+        baseCommand.withConfiguration(getClass().getClassLoader());
+        assertEquals("Unexpected change of arquillian.xml system property", savedValue,
                 System.getProperty(ARQUILLIAN_XML_SYS_PROP));
-
-        System.setProperty(ARQUILLIAN_XML_SYS_PROP, savedValue);
     }
 
     public void testArquillianXmlInitialization() throws Exception {
         BaseCommand baseCommand = (BaseCommand) lookupMojo(goal(), pomFile("arquillianXml4test-pom.xml"));
-        baseCommand.initArquillianXml();
+        ClassLoader parent = getClass().getClassLoader();
+        ClassLoader classLoader = baseCommand.withConfiguration(parent);
 
         assertEquals("Unexpected value for arquillianXml property", "arquillianXml4test.xml", baseCommand.arquillianXml());
+        assertEquals("Unexpected arquillian.xml served to the Manager", parent.getResource("arquillianXml4test.xml"),
+                classLoader.getResource("arquillian.xml"));
+    }
+
+    public void testClassLoaderIsUnchangedWhenArquillianXmlIsNotSet() throws Exception {
+        BaseCommand baseCommand = (BaseCommand) lookupMojo(goal(), pomFile("empty-configuration-pom.xml"));
+        ClassLoader parent = getClass().getClassLoader();
+        assertSame(parent, baseCommand.withConfiguration(parent));
+    }
+
+    public void testDefaultContainerIsUsedWhenNotSet() throws Exception {
+        BaseCommand baseCommand = (BaseCommand) lookupMojo(goal(), pomFile("empty-configuration-pom.xml"));
+        assertNull(baseCommand.containers());
+        assertNull(baseCommand.group());
     }
 
     private File pomFile(String pomFileName) {
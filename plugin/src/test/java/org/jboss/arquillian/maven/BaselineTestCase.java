@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * BaselineTestCase
+ *
+ * @version $Revision: $
+ */
+public final class BaselineTestCase extends TestCase {
+
+    private final File directory = new File("target/baseline-test");
+
+    @Override
+    protected void setUp() throws Exception {
+        directory.mkdirs();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+    }
+
+    public void testJsonIsParsed() {
+        Object parsed = Json.parse("{ \"a\" : [ 1, -2.5e1, true, null ], \"b\" : \"x\\\"\\u0041\", \"c\" : {} }");
+        Map<?, ?> object = (Map<?, ?>) parsed;
+        assertEquals(Arrays.asList(1.0, -25.0, Boolean.TRUE, null), object.get("a"));
+        assertEquals("x\"A", object.get("b"));
+        assertEquals(Collections.emptyMap(), object.get("c"));
+        assertEquals("x\"A", Json.parse(Json.quote("x\"A")));
+    }
+
+    public void testInvalidJsonIsRejected() {
+        for (String json : new String[] { "{", "[1 2]", "{\"a\" 1}", "tru", "\"open", "1 2" }) {
+            try {
+                Json.parse(json);
+                fail("Accepted " + json);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testResultsAreReadFromReports() throws Exception {
+        Metrics metrics = new Metrics();
+        Metrics.Timer deploy = metrics.timer("deploy");
+        deploy.record(Metrics.DEPLOY, "jetty", deploy.begin());
+        deploy.record(Metrics.DEPLOY, "jetty", deploy.begin());
+        deploy.record(Metrics.CREATE_DEPLOYMENT, null, deploy.begin());
+        File metricsFile = new File(directory, "metrics.json");
+        metrics.write(metricsFile);
+
+        File loadReport = new File(directory, "load.json");
+        write(loadReport, "{ \"throughput\" : 4639.333, \"latencyMillis\" : "
+                + "{ \"p50\" : 1.167, \"p99\" : 12.927, \"p999\" : 23.039, \"max\" : 32.748 } }");
+
+        Map<String, Double> results = Baseline.results(metricsFile, loadReport);
+        assertEquals(Arrays.asList("deploy.createDeployment", "deploy.deploy.jetty", "load.p50", "load.p99", "load.p999",
+                "load.throughput"), new ArrayList<String>(results.keySet()));
+        assertEquals(4639.333, results.get("load.throughput"));
+        assertEquals(23.039, results.get("load.p999"));
+
+        assertTrue(Baseline.results(new File(directory, "missing.json"), null).isEmpty());
+    }
+
+    public void testRegressionBeyondTolerance() throws Exception {
+        Baseline baseline = baseline("deploy.deploy.jetty=400,410,390\nload.throughput=1000\n");
+        assertNull(baseline.regression("deploy.deploy.jetty", 440, 10, 0, 0));
+        assertNotNull(baseline.regression("deploy.deploy.jetty", 441, 10, 0, 0));
+        assertNull("Faster is no regression", baseline.regression("deploy.deploy.jetty", 100, 10, 0, 0));
+
+        assertNull(baseline.regression("load.throughput", 900, 10, 0, 0));
+        String regression = baseline.regression("load.throughput", 800, 10, 0, 0);
+        assertTrue(regression, regression.contains("lower by 20.0%"));
+        assertNull("Higher throughput is no regression", baseline.regression("load.throughput", 5000, 10, 0, 0));
+
+        assertNull("No samples", baseline.regression("load.p99", 1000, 10, 0, 0));
+    }
+
+    public void testNoisySamplesWidenTolerance() throws Exception {
+        Baseline baseline = baseline("deploy.deploy.jetty=300,400,500,350,450\n");
+        // median 400, median absolute deviation 50
+        assertNull(baseline.regression("deploy.deploy.jetty", 600, 0, 3, 0));
+        assertNotNull(baseline.regression("deploy.deploy.jetty", 630, 0, 3, 0));
+    }
+
+    public void testNoiseFloorIgnoresSmallDifferences() throws Exception {
+        Baseline baseline = baseline("load.p50=1\n");
+        assertNull(baseline.regression("load.p50", 5.5, 10, 3, 5));
+        assertNotNull(baseline.regression("load.p50", 6.5, 10, 3, 5));
+    }
+
+    public void testRecordKeepsLatestSamples() throws Exception {
+        File file = new File(directory, "baseline.properties");
+        Baseline baseline = new Baseline(file);
+        assertTrue(baseline.isEmpty());
+        for (double value = 1; value <= 4; value++) {
+            baseline.record(Collections.singletonMap("load.p99", value), 3);
+        }
+        List<Double> samples = new Baseline(file).samples("load.p99");
+        assertEquals(Arrays.asList(2.0, 3.0, 4.0), samples);
+    }
+
+    private Baseline baseline(String content) throws Exception {
+        File file = new File(directory, "baseline.properties");
+        write(file, content);
+        return new Baseline(file);
+    }
+
+    private static void write(File file, String content) throws Exception {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
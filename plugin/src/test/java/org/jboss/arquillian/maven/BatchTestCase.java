@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.GenericArchive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+
+/**
+ * BatchTestCase
+ *
+ * @version $Revision: $
+ */
+public final class BatchTestCase extends TestCase {
+
+    private final File file = new File("pom.xml");
+
+    public void testArchivesAreOrderedAfterTheirDependencies() {
+        Batch batch = new Batch(Arrays.asList(deployable("web.war", "ejb.jar"), deployable("ejb.jar", "lib.jar"),
+                deployable("lib.jar"), deployable("other.war")));
+        assertEquals("[lib.jar, ejb.jar, web.war, other.war]", batch.order().toString());
+    }
+
+    public void testCircularDependenciesAreRejected() {
+        try {
+            new Batch(Arrays.asList(deployable("a.war", "b.war"), deployable("b.war", "a.war")));
+            fail("Circular dependency accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("depends on itself"));
+        }
+    }
+
+    public void testUnknownDependenciesAreRejected() {
+        try {
+            new Batch(Arrays.asList(deployable("a.war", "missing.war")));
+            fail("Unknown dependency accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("missing.war"));
+        }
+    }
+
+    public void testUndeployRunsInReverseOrder() throws Exception {
+        Batch batch = new Batch(Arrays.asList(deployable("web.war", "ejb.jar"), deployable("ejb.jar", "lib.jar"),
+                deployable("lib.jar")));
+        final List<String> performed = Collections.synchronizedList(new ArrayList<String>());
+        batch.run(new GenericImporter(), new Batch.Operation() {
+            @Override
+            public void perform(Deployable deployable, Archive<?> archive) {
+                performed.add(archive.getName());
+            }
+        }, true, 4);
+        assertEquals(Arrays.asList("web.war", "ejb.jar", "lib.jar"), performed);
+    }
+
+    public void testIndependentArchivesAreDeployedConcurrently() throws Exception {
+        Batch batch = new Batch(Arrays.asList(deployable("a.war"), deployable("b.war")));
+        final CountDownLatch both = new CountDownLatch(2);
+        batch.run(new GenericImporter(), new Batch.Operation() {
+            @Override
+            public void perform(Deployable deployable, Archive<?> archive) throws Exception {
+                both.countDown();
+                assertTrue("Not deployed concurrently", both.await(10, TimeUnit.SECONDS));
+            }
+        }, false, 2);
+    }
+
+    public void testFailureIsReportedOnce() throws Exception {
+        Batch batch = new Batch(Arrays.asList(deployable("web.war", "lib.jar"), deployable("lib.jar")));
+        final List<String> performed = Collections.synchronizedList(new ArrayList<String>());
+        try {
+            batch.run(new GenericImporter(), new Batch.Operation() {
+                @Override
+                public void perform(Deployable deployable, Archive<?> archive) {
+                    performed.add(archive.getName());
+                    throw new IllegalStateException(archive.getName());
+                }
+            }, false, 2);
+            fail("Failure not reported");
+        } catch (IllegalStateException e) {
+            assertEquals("lib.jar", e.getMessage());
+        }
+        assertEquals(Arrays.asList("lib.jar"), performed);
+    }
+
+    private Deployable deployable(String name, String... dependsOn) {
+        return new Deployable(file, name, Arrays.asList(dependsOn));
+    }
+
+    private static final class GenericImporter implements Batch.Importer {
+        @Override
+        public Archive<?> importArchive(Deployable deployable) {
+            return ShrinkWrap.create(GenericArchive.class, deployable.name());
+        }
+    }
+}
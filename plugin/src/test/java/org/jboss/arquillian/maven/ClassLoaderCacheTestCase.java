@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+
+/**
+ * ClassLoaderCacheTestCase
+ *
+ * @version $Revision: $
+ */
+public final class ClassLoaderCacheTestCase extends TestCase {
+
+    public void testSameClassPathSharesClassLoader() throws Exception {
+        List<String> elements = Arrays.asList(new File("target/classes").getAbsolutePath());
+        ClassLoader parent = getClass().getClassLoader();
+        assertSame(ClassLoaderCache.get(elements, parent), ClassLoaderCache.get(elements, parent));
+    }
+
+    public void testModifiedClassPathGetsNewClassLoader() throws Exception {
+        File element = new File("target/classloader-cache-test");
+        element.mkdirs();
+        List<String> elements = Arrays.asList(element.getAbsolutePath());
+        ClassLoader parent = getClass().getClassLoader();
+
+        ClassLoader before = ClassLoaderCache.get(elements, parent);
+        assertTrue(element.setLastModified(element.lastModified() - 10000));
+        assertNotSame(before, ClassLoaderCache.get(elements, parent));
+    }
+
+    public void testReplacedClassLoaderStaysUsable() throws Exception {
+        File jar = jar("replaced.jar");
+        List<String> elements = Arrays.asList(jar.getAbsolutePath());
+        ClassLoader parent = getClass().getClassLoader();
+
+        ClassLoader before = ClassLoaderCache.get(elements, parent);
+        URL resource = before.getResource("r.txt");
+        assertTrue(jar.setLastModified(jar.lastModified() - 10000));
+        ClassLoader after = ClassLoaderCache.get(elements, parent);
+
+        assertNotSame(before, after);
+        after.getResource("r.txt").openStream().close();
+        // an execution holding the previous class loader, e.g. of a container started in the background, still uses it
+        resource.openStream().close();
+        assertNotNull(before.getResource("r.txt"));
+    }
+
+    public void testLeastRecentlyUsedClassPathIsDropped() throws Exception {
+        ClassLoader parent = getClass().getClassLoader();
+        List<String> first = Arrays.asList(jar("first.jar").getAbsolutePath());
+        ClassLoader firstLoader = ClassLoaderCache.get(first, parent);
+        URL resource = firstLoader.getResource("r.txt");
+
+        for (int i = 0; i < ClassLoaderCache.MAX_CLASS_PATHS; i++) {
+            ClassLoaderCache.get(Arrays.asList(new File("target/classloader-cache-jars/" + i).getAbsolutePath()),
+                    parent);
+        }
+        resource.openStream().close();
+        assertNotSame(firstLoader, ClassLoaderCache.get(first, parent));
+    }
+
+    public void testConcurrentExecutionsShareOneClassLoader() throws Exception {
+        final List<String> elements = Arrays.asList(jar("concurrent.jar").getAbsolutePath());
+        final ClassLoader parent = getClass().getClassLoader();
+        final CountDownLatch ready = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ClassLoader>> loaders = new ArrayList<Future<ClassLoader>>();
+            for (int i = 0; i < 8; i++) {
+                loaders.add(executor.submit(new Callable<ClassLoader>() {
+                    @Override
+                    public ClassLoader call() throws Exception {
+                        ready.await();
+                        return ClassLoaderCache.get(elements, parent);
+                    }
+                }));
+            }
+            ready.countDown();
+            for (Future<ClassLoader> loader : loaders) {
+                assertSame(loaders.get(0).get(), loader.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static File jar(String name) throws Exception {
+        File jar = new File("target/classloader-cache-jars", name);
+        jar.getParentFile().mkdirs();
+        ShrinkWrap.create(JavaArchive.class).add(new StringAsset("r"), "r.txt").as(ZipExporter.class).exportTo(jar,
+                true);
+        return jar;
+    }
+}
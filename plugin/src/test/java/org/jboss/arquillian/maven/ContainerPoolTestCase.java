@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.jboss.arquillian.config.descriptor.api.ArquillianDescriptor;
+import org.jboss.arquillian.config.descriptor.api.ContainerDef;
+import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.ContainerRegistry;
+import org.jboss.arquillian.core.api.annotation.ApplicationScoped;
+import org.jboss.shrinkwrap.descriptor.api.Descriptors;
+
+/**
+ * ContainerPoolTestCase
+ *
+ * @version $Revision: $
+ */
+public final class ContainerPoolTestCase extends TestCase {
+
+    private final FakeManager manager = new FakeManager();
+
+    private final ArquillianDescriptor descriptor = Descriptors.create(ArquillianDescriptor.class);
+
+    private ContainerRegistry registry;
+
+    private Container jetty;
+
+    @Override
+    protected void setUp() throws Exception {
+        manager.bind(ApplicationScoped.class, ArquillianDescriptor.class, descriptor);
+        ContainerDef configuration = descriptor.container("jetty").setMode("manual").property("bindHttpPort", "8080")
+                .dependency("org.eclipse.jetty:jetty-webapp:8.1.2");
+        configuration.protocol("Servlet 3.0").property("host", "localhost");
+
+        registry = FakeManager.registry(new ArrayList<Container>());
+        registry.create(configuration, null);
+        jetty = registry.getContainer("jetty");
+    }
+
+    public void testCopiesAreAddedToTheRegistry() {
+        ContainerPool pool = new ContainerPool();
+        pool.grow(manager, registry, jetty, 3);
+
+        assertEquals(Arrays.asList("jetty-1", "jetty-2"), pool.copies("jetty"));
+        assertEquals(Arrays.asList("jetty", "jetty-1", "jetty-2"), pool.all());
+        assertEquals(3, registry.getContainers().size());
+        for (String copy : pool.copies("jetty")) {
+            ContainerDef configuration = registry.getContainer(copy).getContainerConfiguration();
+            assertEquals(copy, configuration.getContainerName());
+            assertEquals("manual", configuration.getMode());
+            assertEquals(Collections.singletonMap("bindHttpPort", "8080"), configuration.getContainerProperties());
+            assertEquals(Arrays.asList("org.eclipse.jetty:jetty-webapp:8.1.2"), configuration.getDependencies());
+            assertEquals("Servlet 3.0", configuration.getProtocols().get(0).getType());
+            assertEquals("localhost", configuration.getProtocols().get(0).getProtocolProperties().get("host"));
+        }
+    }
+
+    public void testGrowingAgainReusesTheCopies() {
+        ContainerPool pool = new ContainerPool();
+        pool.grow(manager, registry, jetty, 3);
+        Container copy = registry.getContainer("jetty-1");
+
+        new ContainerPool().grow(manager, registry, jetty, 3);
+        assertEquals(3, registry.getContainers().size());
+        assertSame(copy, registry.getContainer("jetty-1"));
+    }
+
+    public void testContainerWithoutPoolHasNoCopies() {
+        ContainerPool pool = new ContainerPool();
+        pool.grow(manager, registry, jetty, 1);
+
+        assertEquals(Collections.emptyList(), pool.copies("jetty"));
+        assertEquals(Collections.emptyList(), pool.copies("tomcat"));
+        assertEquals(Arrays.asList("jetty"), pool.all());
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.jboss.arquillian.container.spi.client.container.DeploymentException;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.HTTPContext;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
+/**
+ * DaemonTestCase
+ *
+ * @version $Revision: $
+ */
+public final class DaemonTestCase extends TestCase {
+
+    private final File directory = new File("target/daemon-test");
+
+    private final File daemonFile = new File(directory, ".arquillian-daemon");
+
+    private final File war = new File(directory, "test.war");
+
+    private FakeManager manager;
+
+    private Thread daemon;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory.mkdirs();
+        daemonFile.delete();
+        ShrinkWrap.create(WebArchive.class, "test.war").add(new StringAsset("a"), "index.html").as(ZipExporter.class)
+                .exportTo(war, true);
+
+        manager = new FakeManager("one", "two");
+        daemon = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    new Daemon(manager, manager.registry().getContainers()).serve(daemonFile);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        daemon.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DaemonClient client = DaemonClient.connect(daemonFile);
+        if (client != null) {
+            client.stop();
+        }
+        daemon.join(10000);
+    }
+
+    public void testDeployReturnsTheEndpointsOfEachContainer() throws Exception {
+        Map<String, ProtocolMetaData> deployed = connect().deploy("", war, "test.war");
+
+        assertEquals(Arrays.asList("one", "two"), Arrays.asList(deployed.keySet().toArray()));
+        HTTPContext context = deployed.get("two").getContext(HTTPContext.class);
+        assertEquals("localhost", context.getHost());
+        assertEquals(8080, context.getPort());
+        assertEquals("/test.war/", context.getServlets().get(0).getContextRoot());
+        assertTrue(manager.events().contains("DeployDeployment one"));
+    }
+
+    public void testRedeployUndeploysThePreviousDeployment() throws Exception {
+        DaemonClient client = connect();
+        client.deploy("one", war, "test.war");
+        client.deploy("one", war, "test.war");
+
+        assertEquals(Arrays.asList("DeployDeployment one", "UnDeployDeployment one", "DeployDeployment one"),
+                manager.events());
+    }
+
+    public void testUnknownContainerIsReported() throws Exception {
+        try {
+            connect().deploy("three", war, "test.war");
+            fail("Deployed to a container the daemon did not start");
+        } catch (DeploymentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("three"));
+        }
+    }
+
+    public void testPropertiesOfTheContainers() throws Exception {
+        manager.registry().getContainer("one").getContainerConfiguration().property("bindHttpPort", "9595");
+
+        Map<String, Map<String, String>> properties = connect().properties("", Arrays.asList("bindHttpPort", "other"));
+        assertEquals(Collections.singletonMap("bindHttpPort", "9595"), properties.get("one"));
+        assertTrue(properties.get("two").isEmpty());
+    }
+
+    public void testCommandsWithoutTheTokenAreRejected() throws Exception {
+        connect();
+        int port = port();
+
+        assertTrue(send(port, "STOP").startsWith(Daemon.ERROR));
+        assertTrue(send(port, "wrong" + Daemon.SEPARATOR + "STOP").startsWith(Daemon.ERROR));
+        assertNotNull("Daemon stopped by a command without the token", DaemonClient.connect(daemonFile));
+        assertTrue(manager.events().isEmpty());
+    }
+
+    public void testStopStopsTheContainers() throws Exception {
+        connect().stop();
+        daemon.join(10000);
+
+        assertFalse(daemon.isAlive());
+        assertEquals(Arrays.asList("StopContainer one", "StopContainer two"), manager.events());
+        assertTrue(manager.isShutdown());
+        assertFalse(daemonFile.exists());
+    }
+
+    public void testStalledClientDoesNotBlockTheDaemon() throws Exception {
+        DaemonClient client = connect();
+        Socket stalled = new Socket(InetAddress.getByName("127.0.0.1"), port());
+        try {
+            client.properties("", Collections.singletonList("bindHttpPort"));
+            assertEquals("Stalled connection not closed by the daemon", -1, stalled.getInputStream().read());
+        } finally {
+            stalled.close();
+        }
+    }
+
+    public void testDaemonNotReplyingToPingIsNotConnected() throws Exception {
+        // accepts connections through its backlog, but never reads nor replies
+        ServerSocket hung = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        try {
+            File hungFile = new File(directory, ".arquillian-hung-daemon");
+            Properties properties = new Properties();
+            properties.setProperty(Daemon.PORT, String.valueOf(hung.getLocalPort()));
+            properties.setProperty(Daemon.TOKEN, "token");
+            OutputStream out = new FileOutputStream(hungFile);
+            try {
+                properties.store(out, null);
+            } finally {
+                out.close();
+            }
+
+            long start = System.currentTimeMillis();
+            assertNull(DaemonClient.connect(hungFile));
+            assertTrue(System.currentTimeMillis() - start < DaemonClient.PING_TIMEOUT + 5000);
+        } finally {
+            hung.close();
+        }
+    }
+
+    private DaemonClient connect() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        DaemonClient client;
+        while ((client = DaemonClient.connect(daemonFile)) == null) {
+            assertTrue("Daemon did not start", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+        return client;
+    }
+
+    private int port() throws Exception {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(daemonFile);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        return Integer.parseInt(properties.getProperty(Daemon.PORT));
+    }
+
+    private static String send(int port, String line) throws Exception {
+        Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), port);
+        try {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+            out.write(line + "\n");
+            out.flush();
+            return new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8")).readLine();
+        } finally {
+            socket.close();
+        }
+    }
+}
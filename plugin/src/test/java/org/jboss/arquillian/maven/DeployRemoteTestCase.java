@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
+import org.jboss.arquillian.core.api.annotation.ApplicationScoped;
+import org.jboss.arquillian.core.spi.ServiceLoader;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
+/**
+ * DeployRemoteTestCase
+ *
+ * @version $Revision: $
+ */
+public final class DeployRemoteTestCase extends BaseCommandTestBase {
+
+    private final File directory = new File("target/deploy-remote-test");
+
+    private final File manifests = new File(directory, "manifests");
+
+    private final List<String> updates = new ArrayList<String>();
+
+    @Override
+    public String goal() {
+        return "deployRemote";
+    }
+
+    public void testDeltaWithoutPartialDeployerUploadsTheArchiveWithoutHashing() throws Exception {
+        FakeManager manager = manager(Collections.<PartialDeployer> emptyList());
+        Container container = manager.registry().getContainer("jetty");
+
+        deployRemote("a").perform(manager, container);
+        deployRemote("a").perform(manager, container);
+
+        assertEquals(Arrays.asList("DeployDeployment jetty", "StopContainer jetty", "DeployDeployment jetty",
+                "StopContainer jetty"), manager.events());
+        assertFalse("Entries hashed without a PartialDeployer", new File(manifests, "jetty-app.war.properties")
+                .exists());
+    }
+
+    public void testDeltaUploadsTheChangedEntriesThroughThePartialDeployer() throws Exception {
+        FakeManager manager = manager(Collections.<PartialDeployer> singletonList(new PartialDeployer() {
+            @Override
+            public boolean supports(Container container) {
+                return true;
+            }
+
+            @Override
+            public ProtocolMetaData update(Container container, String archiveName, Archive<?> changes,
+                    Collection<String> removed) {
+                updates.add(archiveName + " " + changes.contains("index.html") + " " + removed);
+                return null;
+            }
+        }));
+        Container container = manager.registry().getContainer("jetty");
+
+        deployRemote("a").perform(manager, container);
+        assertTrue(new File(manifests, "jetty-app.war.properties").isFile());
+        deployRemote("b").perform(manager, container);
+
+        assertEquals(Arrays.asList("DeployDeployment jetty", "StopContainer jetty", "StopContainer jetty"),
+                manager.events());
+        assertEquals(Arrays.asList("app.war true []"), updates);
+    }
+
+    private FakeManager manager(final List<PartialDeployer> deployers) {
+        FakeManager manager = new FakeManager("jetty");
+        manager.bind(ApplicationScoped.class, ServiceLoader.class, (ServiceLoader) Proxy.newProxyInstance(
+                ServiceLoader.class.getClassLoader(), new Class<?>[] { ServiceLoader.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return "all".equals(method.getName()) && PartialDeployer.class.equals(args[0]) ? deployers
+                                : Collections.emptyList();
+                    }
+                }));
+        delete(manifests);
+        return manager;
+    }
+
+    private DeployRemote deployRemote(String content) throws Exception {
+        directory.mkdirs();
+        ShrinkWrap.create(WebArchive.class, "app.war").add(new StringAsset(content), "index.html")
+                .as(ZipExporter.class).exportTo(new File(directory, "app.war"), true);
+
+        DeployRemote deployRemote = (DeployRemote) lookupMojo(goal(),
+                getTestFile("src/test/resources/empty-configuration-pom.xml"));
+        deployRemote.setPluginContext(new HashMap<Object, Object>());
+        setVariableValueToObject(deployRemote, "targetDir", directory);
+        setVariableValueToObject(deployRemote, "filename", "app.war");
+        setVariableValueToObject(deployRemote, "manifestDirectory", manifests);
+        setVariableValueToObject(deployRemote, "delta", true);
+        return deployRemote;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        for (int i = 0; children != null && i < children.length; i++) {
+            delete(children[i]);
+        }
+        file.delete();
+    }
+}
@@ -17,11 +17,177 @@
  */
 package org.jboss.arquillian.maven;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.client.container.LifecycleException;
+import org.jboss.arquillian.container.spi.event.DeployDeployment;
+import org.jboss.arquillian.container.spi.event.StartContainer;
+import org.jboss.arquillian.core.spi.Manager;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
 /**
  * @author Davide D'Alto
  */
 public final class DeployTestCase extends BaseCommandTestBase {
 
+    private final File directory = new File("target/deploy-test");
+
+    public void testExplodedDirectoryIsDeployedUnderFilename() throws Exception {
+        File exploded = new File(directory, "exploded");
+        exploded.mkdirs();
+        FileWriter writer = new FileWriter(new File(exploded, "index.html"));
+        writer.write("<html/>");
+        writer.close();
+
+        Deploy deploy = deploy();
+        setVariableValueToObject(deploy, "exploded", true);
+        setVariableValueToObject(deploy, "explodedDirectory", exploded);
+        setVariableValueToObject(deploy, "filename", "app.war");
+
+        Archive<?> archive = deploy.createDeployment();
+        assertEquals("app.war", archive.getName());
+        assertTrue(archive.contains("index.html"));
+    }
+
+    public void testStreamingDeploysTheFileAsIs() throws Exception {
+        directory.mkdirs();
+        ShrinkWrap.create(WebArchive.class, "app.war").add(new StringAsset("<html/>"), "index.html")
+                .as(ZipExporter.class).exportTo(new File(directory, "app.war"), true);
+
+        Deploy deploy = deploy();
+        setVariableValueToObject(deploy, "targetDir", directory);
+        setVariableValueToObject(deploy, "filename", "app.war");
+        setVariableValueToObject(deploy, "streaming", true);
+
+        Archive<?> archive = deploy.createDeployment();
+        assertEquals("app.war", archive.getName());
+        assertTrue(archive.as(ZipExporter.class) instanceof FileZipExporter);
+    }
+
+    public void testDeployAwaitsTheBackgroundStart() throws Exception {
+        FakeManager manager = new FakeManager("jetty").delay(StartContainer.class, "jetty", 300);
+        Map<Object, Object> context = new HashMap<Object, Object>();
+
+        Start start = (Start) lookupMojo("start", getTestFile("src/test/resources/empty-configuration-pom.xml"));
+        start.setPluginContext(context);
+        setVariableValueToObject(start, "async", true);
+        start.perform(manager, manager.registry().getContainer("jetty"));
+
+        deployable(context).performOn(manager, manager.registry().getContainers());
+        assertEquals(Arrays.asList("SetupContainer jetty", "StartContainer jetty", "DeployDeployment jetty"),
+                manager.events());
+    }
+
+    public void testFailedBackgroundStartFailsTheDeploy() throws Exception {
+        RuntimeException failure = new RuntimeException("port in use");
+        FakeManager manager = new FakeManager("jetty").failOn(StartContainer.class, "jetty", failure);
+        Map<Object, Object> context = new HashMap<Object, Object>();
+
+        Start start = (Start) lookupMojo("start", getTestFile("src/test/resources/empty-configuration-pom.xml"));
+        start.setPluginContext(context);
+        setVariableValueToObject(start, "async", true);
+        start.perform(manager, manager.registry().getContainer("jetty"));
+
+        try {
+            deployable(context).performOn(manager, manager.registry().getContainers());
+            fail("Deployed to a container that failed to start");
+        } catch (LifecycleException e) {
+            assertSame(failure, rootCause(e));
+        }
+        assertEquals(Arrays.asList("SetupContainer jetty"), manager.events());
+    }
+
+    public void testFailureOnOneContainerDoesNotStopTheOthers() throws Exception {
+        RuntimeException failure = new RuntimeException("deployment failed");
+        FakeManager manager = new FakeManager("one", "two", "three").failOn(DeployDeployment.class, "two", failure);
+        Map<Object, Object> context = new HashMap<Object, Object>();
+
+        Deploy deploy = deployable(context);
+        setVariableValueToObject(deploy, "threads", 3);
+        try {
+            deploy.performOn(manager, manager.registry().getContainers());
+            fail("Failure on a container ignored");
+        } catch (RuntimeException e) {
+            assertSame(failure, e);
+        }
+        List<String> events = manager.events();
+        assertTrue(events.toString(), events.contains("DeployDeployment one"));
+        assertTrue(events.toString(), events.contains("DeployDeployment three"));
+        assertEquals(2, events.size());
+    }
+
+    public void testCopiesOfThePoolAreDeployedTo() throws Exception {
+        FakeManager manager = new FakeManager("jetty", "jetty-1", "jetty-2", "tomcat");
+        ContainerPool pool = new ContainerPool();
+        pool.grow(manager, manager.registry(), manager.registry().getContainer("jetty"), 3);
+        Map<Object, Object> context = new HashMap<Object, Object>();
+        context.put(ContainerPool.class, pool);
+
+        Deploy deploy = deployable(context);
+        List<Container> containers = deploy.withPools(manager, manager.registry(),
+                Collections.singletonList(manager.registry().getContainer("jetty")));
+        deploy.performOn(manager, containers);
+        assertEquals(Arrays.asList("DeployDeployment jetty", "DeployDeployment jetty-1", "DeployDeployment jetty-2"),
+                manager.events());
+    }
+
+    public void testInvalidBudgetFailsBeforeDeploying() throws Exception {
+        FakeManager manager = new FakeManager("jetty");
+        Map<Object, Object> context = new HashMap<Object, Object>();
+        context.put(Manager.class, manager);
+
+        Deploy deploy = deployable(context);
+        deploy.setClassloading("plugin");
+        setVariableValueToObject(deploy, "budgets", Collections.singletonMap("deploy", "5s"));
+        try {
+            deploy.execute();
+            fail("Invalid budget accepted");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("deploy: '5s'"));
+        }
+        assertEquals(Collections.emptyList(), manager.events());
+
+        setVariableValueToObject(deploy, "budgets", Collections.singletonMap("deploy", " 5000 "));
+        assertEquals(Collections.singletonMap("deploy", 5000L), deploy.budgets());
+    }
+
+    private Deploy deployable(Map<Object, Object> context) throws Exception {
+        directory.mkdirs();
+        ShrinkWrap.create(WebArchive.class, "app.war").add(new StringAsset("<html/>"), "index.html")
+                .as(ZipExporter.class).exportTo(new File(directory, "app.war"), true);
+
+        Deploy deploy = (Deploy) lookupMojo(goal(), getTestFile("src/test/resources/empty-configuration-pom.xml"));
+        deploy.setPluginContext(context);
+        setVariableValueToObject(deploy, "targetDir", directory);
+        setVariableValueToObject(deploy, "filename", "app.war");
+        return deploy;
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while (e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    private Deploy deploy() throws Exception {
+        Deploy deploy = (Deploy) lookupMojo(goal(), getTestFile("src/test/resources/empty-configuration-pom.xml"));
+        deploy.setPluginContext(new HashMap<Object, Object>());
+        return deploy;
+    }
+
     @Override
     public String goal() {
         return "deploy";
@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
+/**
+ * EntryManifestTestCase
+ *
+ * @version $Revision: $
+ */
+public final class EntryManifestTestCase extends TestCase {
+
+    public void testChangedAndRemovedEntries() throws Exception {
+        WebArchive before = ShrinkWrap.create(WebArchive.class, "app.war")
+                .add(new StringAsset("a"), "WEB-INF/classes/A.class")
+                .add(new StringAsset("b"), "WEB-INF/classes/B.class")
+                .add(new StringAsset("c"), "index.html");
+        WebArchive after = ShrinkWrap.create(WebArchive.class, "app.war")
+                .add(new StringAsset("a"), "WEB-INF/classes/A.class")
+                .add(new StringAsset("b2"), "WEB-INF/classes/B.class")
+                .add(new StringAsset("d"), "style.css");
+
+        EntryManifest previous = EntryManifest.of(before);
+        EntryManifest current = EntryManifest.of(after);
+        assertEquals(3, current.size());
+        assertEquals(Arrays.asList("/WEB-INF/classes/B.class", "/style.css"), current.changed(previous));
+        assertEquals(Collections.singletonList("/index.html"), current.removed(previous));
+        assertTrue(current.changed(current).isEmpty());
+
+        Archive<?> changes = EntryManifest.entries(after, current.changed(previous));
+        assertEquals("app.war", changes.getName());
+        assertTrue(changes.contains("/style.css"));
+        assertFalse(changes.contains("/WEB-INF/classes/A.class"));
+        assertTrue(EntryManifest.zippedSize(changes) < EntryManifest.zippedSize(after));
+    }
+
+    public void testManifestIsWrittenAndRead() throws Exception {
+        File file = new File("target/manifest-test/jetty-app.war.properties");
+        file.delete();
+        assertNull(EntryManifest.read(file));
+
+        EntryManifest manifest = EntryManifest.of(ShrinkWrap.create(WebArchive.class, "app.war").add(
+                new StringAsset("a"), "a.txt"));
+        manifest.write(file);
+        EntryManifest read = EntryManifest.read(file);
+        assertEquals(1, read.size());
+        assertTrue(manifest.changed(read).isEmpty());
+        assertTrue(manifest.removed(read).isEmpty());
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+
+import junit.framework.TestCase;
+
+import org.jboss.arquillian.core.spi.LoadableExtension;
+
+/**
+ * ExtensionIndexTestCase
+ *
+ * @version $Revision: $
+ */
+public final class ExtensionIndexTestCase extends TestCase {
+
+    private final File directory = new File("target/extension-index-test/classes");
+
+    private final File indexFile = new File("target/extension-index-test/arquillian-extensions.properties");
+
+    @Override
+    protected void setUp() throws Exception {
+        indexFile.delete();
+        writeService(ExtensionIndex.EXTENSION_LOADER_SERVICE, null);
+    }
+
+    public void testExtensionsAreIndexedOnceForAClassPath() throws Exception {
+        writeService(ExtensionIndex.LOADABLE_EXTENSION_SERVICE, "# extensions\ncom.acme.A\ncom.acme.B # the B\n"
+                + "!com.acme.A\ncom.acme.C\n");
+
+        ExtensionIndex index = ExtensionIndex.create(classLoader(), indexFile);
+        assertFalse(index.isRead());
+        assertTrue(indexFile.isFile());
+        assertEquals(Arrays.asList("com.acme.B", "com.acme.C"), index.extensions());
+
+        index = ExtensionIndex.create(classLoader(), indexFile);
+        assertTrue(index.isRead());
+        assertEquals(Arrays.asList("com.acme.B", "com.acme.C"), index.extensions());
+
+        writeService(ExtensionIndex.LOADABLE_EXTENSION_SERVICE, "com.acme.D\n");
+        index = ExtensionIndex.create(classLoader(), indexFile);
+        assertFalse(index.isRead());
+        assertEquals(Collections.singletonList("com.acme.D"), index.extensions());
+    }
+
+    public void testIndexedExtensionLoaderIsTheExtensionLoaderService() throws Exception {
+        writeService(ExtensionIndex.LOADABLE_EXTENSION_SERVICE, "com.acme.A\n");
+
+        Enumeration<URL> services = ExtensionIndex.create(classLoader(), indexFile).getResources(
+                ExtensionIndex.EXTENSION_LOADER_SERVICE);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(services.nextElement().openStream(), "UTF-8"));
+        try {
+            assertEquals(IndexedExtensionLoader.class.getName(), reader.readLine());
+        } finally {
+            reader.close();
+        }
+        assertFalse(services.hasMoreElements());
+    }
+
+    public void testIndexedExtensionLoaderCreatesPackagePrivateExtensions() throws Exception {
+        writeService(ExtensionIndex.LOADABLE_EXTENSION_SERVICE, Extension.class.getName() + "\n");
+        ClassLoader index = ExtensionIndex.create(new URLClassLoader(new URL[] { directory.toURI().toURL() },
+                getClass().getClassLoader()), indexFile);
+
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(index);
+        try {
+            int created = 0;
+            for (LoadableExtension extension : new IndexedExtensionLoader().load()) {
+                if (extension instanceof Extension) {
+                    created++;
+                }
+            }
+            assertEquals(1, created);
+        } finally {
+            Thread.currentThread().setContextClassLoader(previous);
+        }
+    }
+
+    public void testClassPathWithAnExtensionLoaderIsNotIndexed() throws Exception {
+        writeService(ExtensionIndex.EXTENSION_LOADER_SERVICE, "com.acme.Loader\n");
+
+        assertNull(ExtensionIndex.create(classLoader(), indexFile));
+        assertFalse(indexFile.exists());
+    }
+
+    static final class Extension implements LoadableExtension {
+        @Override
+        public void register(ExtensionBuilder builder) {
+        }
+    }
+
+    private ClassLoader classLoader() throws Exception {
+        return new URLClassLoader(new URL[] { directory.toURI().toURL() }, null);
+    }
+
+    private void writeService(String name, String content) throws Exception {
+        File file = new File(directory, name);
+        if (content == null) {
+            file.delete();
+            return;
+        }
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.arquillian.config.descriptor.api.ContainerDef;
+import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.container.spi.ContainerRegistry;
+import org.jboss.arquillian.container.spi.client.deployment.TargetDescription;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.HTTPContext;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.Servlet;
+import org.jboss.arquillian.container.spi.event.ContainerControlEvent;
+import org.jboss.arquillian.container.spi.event.DeployDeployment;
+import org.jboss.arquillian.core.api.Instance;
+import org.jboss.arquillian.core.spi.Manager;
+import org.jboss.arquillian.core.spi.NonManagedObserver;
+import org.jboss.arquillian.core.spi.context.ApplicationContext;
+
+/**
+ * A {@link Manager} recording the container events fired by {@link Utils}, over a registry of named fake containers.
+ * Deployments are reported on an HTTP context on localhost:8080, with the archive name as context root.
+ *
+ * @author Davide D'Alto
+ */
+final class FakeManager implements Manager {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+    private final Map<Class<?>, Object> resolved = new HashMap<Class<?>, Object>();
+
+    private final Map<String, RuntimeException> failures = new HashMap<String, RuntimeException>();
+
+    private final Map<String, Long> delays = new HashMap<String, Long>();
+
+    private volatile boolean shutdown;
+
+    FakeManager(String... containers) {
+        List<Container> registered = new ArrayList<Container>();
+        for (String name : containers) {
+            registered.add(container(name));
+        }
+        resolved.put(ContainerRegistry.class, registry(registered));
+    }
+
+    /**
+     * A container only knowing its name and the properties of its configuration.
+     */
+    static Container container(String name) {
+        return container(name, configuration(name));
+    }
+
+    private static Container container(final String name, final ContainerDef configuration) {
+        return (Container) Proxy.newProxyInstance(Container.class.getClassLoader(), new Class<?>[] { Container.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getName".equals(method.getName()) || "toString".equals(method.getName())) {
+                            return name;
+                        }
+                        if ("getContainerConfiguration".equals(method.getName())) {
+                            return configuration;
+                        }
+                        if ("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        }
+                        if ("hashCode".equals(method.getName())) {
+                            return name.hashCode();
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static ContainerDef configuration(final String name) {
+        final Map<String, String> properties = new LinkedHashMap<String, String>();
+        return (ContainerDef) Proxy.newProxyInstance(ContainerDef.class.getClassLoader(),
+                new Class<?>[] { ContainerDef.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getContainerName".equals(method.getName())) {
+                            return name;
+                        }
+                        if ("getContainerProperties".equals(method.getName())) {
+                            return properties;
+                        }
+                        if ("property".equals(method.getName()) || "overrideProperty".equals(method.getName())) {
+                            properties.put((String) args[0], (String) args[1]);
+                            return proxy;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * A registry of the containers, the first one being the default container. Created containers are added to it.
+     */
+    static ContainerRegistry registry(final List<Container> containers) {
+        return (ContainerRegistry) Proxy.newProxyInstance(ContainerRegistry.class.getClassLoader(),
+                new Class<?>[] { ContainerRegistry.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("getContainers".equals(method.getName())) {
+                            return containers;
+                        }
+                        if ("create".equals(method.getName())) {
+                            ContainerDef configuration = (ContainerDef) args[0];
+                            Container created = container(configuration.getContainerName(), configuration);
+                            containers.add(created);
+                            return created;
+                        }
+                        if ("getContainer".equals(method.getName())) {
+                            if (args[0] instanceof TargetDescription) {
+                                return containers.isEmpty() ? null : containers.get(0);
+                            }
+                            for (Container container : containers) {
+                                if (container.getName().equals(args[0])) {
+                                    return container;
+                                }
+                            }
+                            return null;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    ContainerRegistry registry() {
+        return resolve(ContainerRegistry.class);
+    }
+
+    /**
+     * Throw the exception when an event of the type is fired for the container.
+     */
+    FakeManager failOn(Class<?> event, String container, RuntimeException failure) {
+        failures.put(event.getSimpleName() + " " + container, failure);
+        return this;
+    }
+
+    /**
+     * Sleep before recording an event of the type fired for the container.
+     */
+    FakeManager delay(Class<?> event, String container, long millis) {
+        delays.put(event.getSimpleName() + " " + container, millis);
+        return this;
+    }
+
+    /**
+     * The events fired, as the simple name of the event followed by the container name, in the order they completed.
+     */
+    List<String> events() {
+        synchronized (events) {
+            return new ArrayList<String>(events);
+        }
+    }
+
+    boolean isShutdown() {
+        return shutdown;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.core.spi.Manager#fire(java.lang.Object)
+     */
+    @Override
+    public void fire(Object event) {
+        String key = event.getClass().getSimpleName();
+        if (event instanceof ContainerControlEvent) {
+            key += " " + ((ContainerControlEvent) event).getContainerName();
+        }
+        Long delay = delays.get(key);
+        if (delay != null) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        RuntimeException failure = failures.get(key);
+        if (failure != null) {
+            throw failure;
+        }
+        events.add(key);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.core.spi.Manager#fire(java.lang.Object,
+     * org.jboss.arquillian.core.spi.NonManagedObserver)
+     */
+    @Override
+    public <T> void fire(T event, NonManagedObserver<T> observer) {
+        fire(event);
+        if (event instanceof DeployDeployment) {
+            String name = ((DeployDeployment) event).getDeployment().getDescription().getArchive().getName();
+            final ProtocolMetaData metadata = new ProtocolMetaData().addContext(new HTTPContext("localhost", 8080)
+                    .add(new Servlet(name, "/" + name)));
+            for (Field field : observer.getClass().getDeclaredFields()) {
+                if (field.getType() == Instance.class) {
+                    field.setAccessible(true);
+                    try {
+                        field.set(observer, new Instance<ProtocolMetaData>() {
+                            @Override
+                            public ProtocolMetaData get() {
+                                return metadata;
+                            }
+                        });
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+        observer.fired(event);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.core.spi.Manager#resolve(java.lang.Class)
+     */
+    @Override
+    public <T> T resolve(Class<T> type) {
+        return type.cast(resolved.get(type));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.core.spi.Manager#bind(java.lang.Class, java.lang.Class, java.lang.Object)
+     */
+    @Override
+    public <T> void bind(Class<? extends Annotation> scope, Class<T> type, T instance) {
+        resolved.put(type, instance);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.core.spi.Manager#inject(java.lang.Object)
+     */
+    @Override
+    public void inject(Object obj) {
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.core.spi.Manager#getContext(java.lang.Class)
+     */
+    @Override
+    public <T> T getContext(Class<T> type) {
+        if (type != ApplicationContext.class) {
+            return null;
+        }
+        // activated by the threads operating on the containers in parallel
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                return null;
+            }
+        }));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.core.spi.Manager#start()
+     */
+    @Override
+    public void start() {
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.jboss.arquillian.core.spi.Manager#shutdown()
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+}
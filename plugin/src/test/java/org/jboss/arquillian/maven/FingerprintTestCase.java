@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
+/**
+ * FingerprintTestCase
+ *
+ * @version $Revision: $
+ */
+public final class FingerprintTestCase extends TestCase {
+
+    public void testRepackagedArchiveHasSameFingerprint() throws Exception {
+        File first = export("first.war", "a", "b");
+        File second = export("second.war", "b", "a");
+        assertTrue(second.setLastModified(first.lastModified() + 10000));
+        assertEquals(Fingerprint.of(first), Fingerprint.of(second));
+    }
+
+    public void testChangedArchiveHasNewFingerprint() throws Exception {
+        assertFalse(Fingerprint.of(export("first.war", "a", "b")).equals(Fingerprint.of(export("second.war", "a", "c"))));
+    }
+
+    public void testStartedContainerForgetsFingerprints() throws Exception {
+        File file = new File("target/fingerprint-test/fingerprints.properties");
+        file.delete();
+        File source = new File("test.war");
+        Fingerprints fingerprints = new Fingerprints(file);
+
+        fingerprints.put("jetty", source, "1", Collections.<URL> emptyList());
+        fingerprints.put("other", source, "2", Collections.<URL> emptyList());
+        assertEquals("1", new Fingerprints(file).get("jetty", source));
+
+        fingerprints.removeAll("jetty");
+        assertNull(fingerprints.get("jetty", source));
+        assertEquals("2", fingerprints.get("other", source));
+    }
+
+    public void testEndpointsAreRecordedWithTheFingerprint() throws Exception {
+        File file = new File("target/fingerprint-test/endpoints.properties");
+        file.delete();
+        File source = new File("test.war");
+        List<URL> endpoints = Arrays.asList(new URL("http://localhost:8080/test/"), new URL("http://localhost:8081/test/"));
+
+        new Fingerprints(file).put("jetty", source, "1", endpoints);
+        assertEquals(endpoints, new Fingerprints(file).endpoints("jetty", source));
+        assertTrue(new Fingerprints(file).endpoints("other", source).isEmpty());
+
+        new Fingerprints(file).remove("jetty", source);
+        assertNull(new Fingerprints(file).get("jetty", source));
+        assertTrue(new Fingerprints(file).endpoints("jetty", source).isEmpty());
+    }
+
+    private static File export(String name, String... resources) {
+        WebArchive archive = ShrinkWrap.create(WebArchive.class, name);
+        for (String resource : resources) {
+            archive.addAsWebResource(new StringAsset(resource), resource + ".txt");
+        }
+        File file = new File("target/fingerprint-test", name);
+        file.getParentFile().mkdirs();
+        archive.as(ZipExporter.class).exportTo(file, true);
+        return file;
+    }
+}
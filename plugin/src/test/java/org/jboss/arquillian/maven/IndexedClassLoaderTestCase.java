@@ -0,0 +1,222 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+
+/**
+ * IndexedClassLoaderTestCase
+ *
+ * @version $Revision: $
+ */
+public final class IndexedClassLoaderTestCase extends TestCase {
+
+    private static final String SERVICE = IndexedClassLoader.SERVICES + "com.acme.Service";
+
+    private final File directory = new File("target/indexed-class-loader-test");
+
+    public void testEntriesAreReadFromTheCentralDirectory() throws Exception {
+        File jar = jar("entries.jar", ShrinkWrap.create(JavaArchive.class).add(new StringAsset("a"), "a/b/c.txt")
+                .add(new StringAsset("d"), "d e/f.txt").addAsManifestResource(new StringAsset("s"), "services/x"));
+
+        List<String> expected = new ArrayList<String>();
+        ZipFile zip = new ZipFile(jar);
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                expected.add(entries.nextElement().getName());
+            }
+        } finally {
+            zip.close();
+        }
+        assertEquals(expected, IndexedClassLoader.entries(jar));
+    }
+
+    public void testIndexKeyOfEntry() {
+        assertEquals("a/b", IndexedClassLoader.key("a/b/c.txt"));
+        assertEquals("a/b/", IndexedClassLoader.key("a/b/"));
+        assertEquals("", IndexedClassLoader.key("c.txt"));
+    }
+
+    public void testResourcesAreFoundInClassPathOrder() throws Exception {
+        File first = jar("first.jar", ShrinkWrap.create(JavaArchive.class).add(new StringAsset("first"), SERVICE)
+                .add(new StringAsset("first"), "a/b.txt"));
+        File classes = new File(directory, "classes");
+        write(new File(classes, SERVICE), "classes");
+        write(new File(classes, "a/b.txt"), "classes");
+        File second = jar("second.jar", ShrinkWrap.create(JavaArchive.class).add(new StringAsset("second"), SERVICE)
+                .add(new StringAsset("second"), "c/d e.txt"));
+
+        IndexedClassLoader loader = new IndexedClassLoader(new URL[] { first.toURI().toURL(),
+                classes.toURI().toURL(), second.toURI().toURL() }, null);
+
+        List<String> services = new ArrayList<String>();
+        for (URL url : Collections.list(loader.getResources(SERVICE))) {
+            services.add(read(url.openStream()));
+        }
+        assertEquals(Arrays.asList("first", "classes", "second"), services);
+        assertEquals("first", read(loader.getResourceAsStream("a/b.txt")));
+        assertEquals("second", read(loader.getResourceAsStream("c/d e.txt")));
+        assertNull(loader.getResource("c/missing.txt"));
+        assertNull(loader.getResource("missing/b.txt"));
+        assertNotNull(loader.getResource("c/"));
+        assertEquals(Arrays.asList(first.toURI().toURL(), classes.toURI().toURL(), second.toURI().toURL()),
+                Arrays.asList(loader.getURLs()));
+    }
+
+    public void testClassesAreDefinedFromJars() throws Exception {
+        String path = Json.class.getName().replace('.', '/') + ".class";
+        byte[] bytes = read(Json.class.getClassLoader().getResourceAsStream(path)).getBytes("ISO-8859-1");
+        File jar = jar("classes.jar", ShrinkWrap.create(JavaArchive.class).add(new ByteArrayAsset(bytes), path));
+
+        IndexedClassLoader loader = new IndexedClassLoader(new URL[] { jar.toURI().toURL() }, null);
+        Class<?> loaded = loader.loadClass(Json.class.getName());
+        assertSame(loader, loaded.getClassLoader());
+        assertNotSame(Json.class, loaded);
+        assertEquals(Json.class.getPackage().getName(), loaded.getPackage().getName());
+        assertEquals(jar.toURI().toURL(), loaded.getProtectionDomain().getCodeSource().getLocation());
+        try {
+            loader.loadClass("org.jboss.arquillian.maven.Missing");
+            fail("Class should not be found");
+        } catch (ClassNotFoundException e) {
+            // expected
+        }
+    }
+
+    public void testClassesAreLoadedConcurrently() throws Exception {
+        try {
+            ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+        } catch (NoSuchMethodException e) {
+            // no parallel capable class loaders before Java 7
+            return;
+        }
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch loaded = new CountDownLatch(1);
+        // the parent holds the loading of a.A until b.B is loaded, which a class loader locked while loading a class
+        // would only allow once a.A is loaded
+        ClassLoader parent = new ClassLoader(null) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if ("a.A".equals(name)) {
+                    loading.countDown();
+                    try {
+                        loaded.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                throw new ClassNotFoundException(name);
+            }
+        };
+        final IndexedClassLoader loader = new IndexedClassLoader(new URL[0], parent);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    loader.loadClass("a.A");
+                } catch (ClassNotFoundException e) {
+                    // expected
+                }
+            }
+        };
+        thread.start();
+        try {
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            long start = System.nanoTime();
+            try {
+                loader.loadClass("b.B");
+                fail("Class should not be found");
+            } catch (ClassNotFoundException e) {
+                // expected
+            }
+            assertTrue("b.B waited for a.A", TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+        } finally {
+            loaded.countDown();
+            thread.join();
+        }
+    }
+
+    public void testCloseClosesTheJars() throws Exception {
+        File jar = jar("closed.jar", ShrinkWrap.create(JavaArchive.class).add(new StringAsset("a"), "a/b.txt")
+                .add(new StringAsset("c"), "a/c.txt"));
+        IndexedClassLoader loader = new IndexedClassLoader(new URL[] { jar.toURI().toURL() }, null);
+        URL resource = loader.getResource("a/c.txt");
+        assertEquals("a", read(loader.getResourceAsStream("a/b.txt")));
+
+        loader.close();
+        assertTrue(jar.delete());
+        try {
+            resource.openStream();
+            fail("Jar should be closed");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private File jar(String name, JavaArchive archive) {
+        File file = new File(directory, name);
+        directory.mkdirs();
+        archive.as(ZipExporter.class).exportTo(file, true);
+        return file;
+    }
+
+    private static void write(File file, String content) throws Exception {
+        file.getParentFile().mkdirs();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String read(InputStream in) throws Exception {
+        try {
+            StringBuilder content = new StringBuilder();
+            int read;
+            while ((read = in.read()) != -1) {
+                content.append((char) read);
+            }
+            return content.toString();
+        } finally {
+            in.close();
+        }
+    }
+}
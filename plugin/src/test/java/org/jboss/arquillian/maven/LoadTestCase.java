@@ -0,0 +1,165 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Scanner;
+
+import junit.framework.TestCase;
+
+/**
+ * LoadTestCase
+ *
+ * @version $Revision: $
+ */
+public final class LoadTestCase extends TestCase {
+
+    public void testPercentilesOfHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100000; micros++) {
+            histogram.record(micros);
+        }
+        assertEquals(100000, histogram.count());
+        assertEquals(100000, histogram.max());
+        assertClose(50000, histogram.percentile(50));
+        assertClose(99000, histogram.percentile(99));
+        assertClose(99900, histogram.percentile(99.9));
+        assertEquals(100000, histogram.percentile(100));
+    }
+
+    public void testSmallLatenciesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(i < 99 ? 7 : 120);
+        }
+        assertEquals(7, histogram.percentile(50));
+        assertEquals(7, histogram.percentile(99));
+        assertEquals(120, histogram.percentile(99.9));
+    }
+
+    public void testBucketsCoverEveryValue() {
+        for (long value : new long[] { 127, 128, 129, 1000, 65535, 1L << 40, Long.MAX_VALUE }) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(value + " above its bucket", LatencyHistogram.highest(index) >= value);
+            assertTrue(value + " below its bucket", index == 0 || LatencyHistogram.highest(index - 1) < value);
+        }
+    }
+
+    public void testMixIsSentAndReported() throws Exception {
+        ServerSocket server = serve();
+        try {
+            List<URL> base = Collections.singletonList(new URL("http://127.0.0.1:" + server.getLocalPort() + "/app/"));
+            List<LoadRequest> mix = Arrays.asList(new LoadRequest("/ok", "GET", 3), new LoadRequest("missing", null, 1));
+            LoadGenerator.Result result = new LoadGenerator(base, mix, 2, 0).run(100, 500);
+
+            assertTrue(result.requests() > 0);
+            assertTrue("No 404 in the mix", result.errors() > 0);
+            assertTrue("Mix not weighted", result.errors() < result.requests() / 2);
+            assertTrue(result.throughput() > 0);
+
+            File report = File.createTempFile("arquillian-load", ".json");
+            try {
+                result.write(report, base, mix, 2, 0);
+                Scanner scanner = new Scanner(new FileInputStream(report), "UTF-8").useDelimiter("\\A");
+                String json = scanner.next();
+                scanner.close();
+                assertTrue(json, json.contains("\"p999\""));
+                assertTrue(json, json.contains("\"404\""));
+                assertTrue(json, json.contains("\"requests\" : " + result.requests()));
+            } finally {
+                report.delete();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    public void testRequestsAreSentAtRate() throws Exception {
+        ServerSocket server = serve();
+        try {
+            List<URL> base = Collections.singletonList(new URL("http://127.0.0.1:" + server.getLocalPort() + "/"));
+            LoadGenerator.Result result = new LoadGenerator(base, Collections.singletonList(new LoadRequest("ok", "GET", 1)),
+                    4, 20).run(0, 1000);
+            assertEquals(20, result.requests());
+            assertEquals(0, result.errors());
+        } finally {
+            server.close();
+        }
+    }
+
+    public void testMixWithoutWeightIsRejected() throws Exception {
+        try {
+            new LoadGenerator(Collections.singletonList(new URL("http://localhost/")),
+                    Collections.singletonList(new LoadRequest("/", "GET", 0)), 1, 0);
+            fail("Mix without weight accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 50);
+    }
+
+    /**
+     * A server responding 200 to paths ending with ok, 404 otherwise.
+     */
+    private static ServerSocket serve() throws Exception {
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = server.accept();
+                        try {
+                            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                            String request = in.readLine();
+                            for (String line = in.readLine(); line != null && line.length() > 0; line = in.readLine()) {
+                                continue;
+                            }
+                            String status = request != null && request.contains("ok ") ? "200 OK" : "404 Not Found";
+                            OutputStream out = socket.getOutputStream();
+                            out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 2\r\nConnection: close\r\n\r\nok")
+                                    .getBytes("US-ASCII"));
+                            out.flush();
+                        } finally {
+                            socket.close();
+                        }
+                    }
+                } catch (Exception e) {
+                    // closed
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * MetricsTestCase
+ *
+ * @version $Revision: $
+ */
+public final class MetricsTestCase extends TestCase {
+
+    public void testPhasesAreRecordedPerGoal() throws Exception {
+        Metrics metrics = new Metrics();
+        Metrics.Timer timer = metrics.timer("deploy");
+        long start = timer.begin();
+        Thread.sleep(5);
+        timer.record(Metrics.DEPLOY, "jetty", start);
+        timer.record(Metrics.CREATE_DEPLOYMENT, null, timer.begin());
+
+        List<Metrics.Sample> samples = timer.samples();
+        assertEquals(2, samples.size());
+        assertEquals(Metrics.DEPLOY, samples.get(0).phase);
+        assertEquals("jetty", samples.get(0).container);
+        assertTrue(samples.get(0).millis() >= 5);
+        assertNull(samples.get(1).container);
+
+        metrics.timer("stop");
+        File file = new File("target/metrics-test/arquillian-metrics.json");
+        metrics.write(file);
+
+        String json = read(file);
+        assertTrue(json, json.contains("\"goal\" : \"deploy\""));
+        assertTrue(json, json.contains("{ \"phase\" : \"deploy\", \"container\" : \"jetty\", \"millis\" : "));
+        assertTrue(json, json.contains("\"goal\" : \"stop\",\n    \"phases\" : [ ]"));
+    }
+
+    private static String read(File file) throws Exception {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] content = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < content.length) {
+                offset += in.read(content, offset, content.length - offset);
+            }
+            return new String(content, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * PortsTestCase
+ *
+ * @version $Revision: $
+ */
+public final class PortsTestCase extends TestCase {
+
+    public void testAllocatedPortsAreFreeAndNeverReused() throws Exception {
+        Set<Integer> ports = new HashSet<Integer>();
+        for (int i = 0; i < 20; i++) {
+            int port = Ports.allocate();
+            assertTrue("Port allocated twice: " + port, ports.add(port));
+            new ServerSocket(port).close();
+        }
+    }
+}
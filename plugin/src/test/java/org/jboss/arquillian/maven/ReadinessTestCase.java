@@ -0,0 +1,159 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jboss.arquillian.container.spi.client.container.DeploymentException;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.HTTPContext;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.ProtocolMetaData;
+import org.jboss.arquillian.container.spi.client.protocol.metadata.Servlet;
+
+/**
+ * ReadinessTestCase
+ *
+ * @version $Revision: $
+ */
+public final class ReadinessTestCase extends TestCase {
+
+    public void testPathsAreResolvedAgainstContextRoots() throws Exception {
+        HTTPContext context = new HTTPContext("localhost", 9595).add(new Servlet("default", "/app"));
+        List<URL> urls = Readiness.urls(new ProtocolMetaData().addContext(context), Arrays.asList("/", "health"));
+        assertEquals(Arrays.asList(new URL("http://localhost:9595/app/"), new URL("http://localhost:9595/app/health")),
+                urls);
+    }
+
+    public void testNoUrlsWithoutHttpContext() throws Exception {
+        assertTrue(Readiness.urls(new ProtocolMetaData(), Arrays.asList("/")).isEmpty());
+        assertTrue(Readiness.urls(null, Arrays.asList("/")).isEmpty());
+    }
+
+    public void testAwaitsUntilReady() throws Exception {
+        ServerSocket server = serve(2);
+        try {
+            URL url = new URL("http://127.0.0.1:" + server.getLocalPort() + "/");
+            long millis = Readiness.await(Collections.singletonList(url), 10000);
+            assertTrue("Not backed off: " + millis, millis >= Readiness.INITIAL_DELAY_MILLIS * 3);
+        } finally {
+            server.close();
+        }
+    }
+
+    public void testFailsWhenNotReadyInTime() throws Exception {
+        ServerSocket server = serve(Integer.MAX_VALUE);
+        try {
+            URL url = new URL("http://127.0.0.1:" + server.getLocalPort() + "/");
+            Readiness.await(Collections.singletonList(url), 200);
+            fail("Not ready deployment accepted");
+        } catch (DeploymentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("HTTP 503"));
+        } finally {
+            server.close();
+        }
+    }
+
+    public void testDeployedWhenTheContextResponds() throws Exception {
+        assertFalse("Unknown deployment", Readiness.isDeployed(new ProtocolMetaData(), Collections.<String> emptyList()));
+        assertFalse(Readiness.isDeployed(null, Arrays.asList("/health")));
+
+        ServerSocket server = serve(Integer.MAX_VALUE, "404 Not Found");
+        ProtocolMetaData metadata = metadata(server);
+        server.close();
+        assertFalse("Context not found", Readiness.isDeployed(metadata, Collections.<String> emptyList()));
+        assertFalse("Nothing listening", Readiness.isDeployed(metadata, Collections.<String> emptyList()));
+
+        server = serve(Integer.MAX_VALUE, "403 Forbidden");
+        try {
+            assertTrue("Context responding", Readiness.isDeployed(metadata(server), Collections.<String> emptyList()));
+            assertFalse("Readiness path not ready", Readiness.isDeployed(metadata(server), Arrays.asList("/health")));
+        } finally {
+            server.close();
+        }
+
+        server = serve(0);
+        try {
+            assertTrue(Readiness.isDeployed(metadata(server), Arrays.asList("/health")));
+        } finally {
+            server.close();
+        }
+    }
+
+    public void testMetadataOfBaseUrls() throws Exception {
+        URL base = new URL("http://localhost:9595/app/");
+        ProtocolMetaData metadata = Readiness.metadata("app.war", Collections.singletonList(base));
+        assertEquals(Collections.singletonList(base), Readiness.urls(metadata, Collections.singletonList("/")));
+    }
+
+    private static ProtocolMetaData metadata(ServerSocket server) throws Exception {
+        return Readiness.metadata("app.war", Collections.singletonList(new URL("http://127.0.0.1:"
+                + server.getLocalPort() + "/app/")));
+    }
+
+    /**
+     * A server responding 503 to the first requests, then 200.
+     */
+    private static ServerSocket serve(int unavailable) throws Exception {
+        return serve(unavailable, "503 Service Unavailable");
+    }
+
+    /**
+     * A server responding with the status to the first requests, then 200.
+     */
+    private static ServerSocket serve(final int unavailable, final String unavailableStatus) throws Exception {
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int request = 0;; request++) {
+                        Socket socket = server.accept();
+                        try {
+                            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                            for (String line = in.readLine(); line != null && line.length() > 0; line = in.readLine()) {
+                                continue;
+                            }
+                            String status = request < unavailable ? unavailableStatus : "200 OK";
+                            OutputStream out = socket.getOutputStream();
+                            out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                                    .getBytes("US-ASCII"));
+                            out.flush();
+                        } finally {
+                            socket.close();
+                        }
+                    }
+                } catch (Exception e) {
+                    // closed
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+}
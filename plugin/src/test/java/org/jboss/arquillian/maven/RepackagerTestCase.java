@@ -0,0 +1,239 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
+/**
+ * RepackagerTestCase
+ *
+ * @version $Revision: $
+ */
+public final class RepackagerTestCase extends TestCase {
+
+    private final File directory = new File("target/repackager-test");
+
+    private final File cache = new File(directory, "cache");
+
+    @Override
+    protected void setUp() throws Exception {
+        directory.mkdirs();
+    }
+
+    public void testNestedArchivesAreStored() throws Exception {
+        File source = new File(directory, "app.war");
+        ShrinkWrap.create(WebArchive.class, "app.war")
+                .add(new StringAsset(text()), "WEB-INF/classes/A.class")
+                .addAsLibraries(ShrinkWrap.create(JavaArchive.class, "lib.jar").add(new StringAsset(text()), "l.txt"))
+                .as(ZipExporter.class).exportTo(source, true);
+
+        File repackaged = new Repackager(cache, Repackager.STORED, Repackager.KEEP).repackage(source, "app.war");
+        assertEquals("app.war", repackaged.getName());
+        ZipFile zip = new ZipFile(repackaged);
+        try {
+            assertEquals(ZipEntry.STORED, zip.getEntry("WEB-INF/lib/lib.jar").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("WEB-INF/classes/A.class").getMethod());
+            assertEquals(text(), read(zip, "WEB-INF/classes/A.class"));
+        } finally {
+            zip.close();
+        }
+        assertEquals(Fingerprint.of(source), Fingerprint.of(repackaged));
+    }
+
+    public void testEntriesAreCompressedAgain() throws Exception {
+        File source = new File(directory, "stored.jar");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(source));
+        try {
+            // entries written with a data descriptor
+            out.setLevel(Deflater.BEST_SPEED);
+            out.putNextEntry(new ZipEntry("a.txt"));
+            out.write(text().getBytes("UTF-8"));
+            out.putNextEntry(new ZipEntry("nested.jar"));
+            out.write(text().getBytes("UTF-8"));
+            out.setComment("comment");
+        } finally {
+            out.close();
+        }
+
+        File repackaged = new Repackager(cache, Repackager.KEEP, Deflater.BEST_COMPRESSION).repackage(source,
+                "renamed.jar");
+        assertEquals("renamed.jar", repackaged.getName());
+        ZipFile zip = new ZipFile(repackaged);
+        try {
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("a.txt").getMethod());
+            assertEquals(text(), read(zip, "a.txt"));
+            assertEquals(text(), read(zip, "nested.jar"));
+        } finally {
+            zip.close();
+        }
+        assertEquals(Fingerprint.of(source), Fingerprint.of(repackaged));
+    }
+
+    public void testRepackagedArchiveIsCached() throws Exception {
+        File source = new File(directory, "cached.jar");
+        ShrinkWrap.create(JavaArchive.class).add(new StringAsset("a"), "a.txt").as(ZipExporter.class)
+                .exportTo(source, true);
+        Repackager repackager = new Repackager(cache, Repackager.STORED, Repackager.STORED);
+
+        File repackaged = repackager.repackage(source, "cached.jar");
+        long modified = repackaged.lastModified();
+        repackaged.setLastModified(modified - 10000);
+        assertEquals(repackaged, repackager.repackage(source, "cached.jar"));
+        assertEquals(modified - 10000, repackaged.lastModified());
+
+        ShrinkWrap.create(JavaArchive.class).add(new StringAsset("b"), "a.txt").as(ZipExporter.class)
+                .exportTo(source, true);
+        File changed = repackager.repackage(source, "cached.jar");
+        assertFalse(changed.equals(repackaged));
+        assertFalse(repackaged.exists());
+        assertFalse(changed.equals(new Repackager(cache, Repackager.KEEP, Repackager.STORED).repackage(source,
+                "cached.jar")));
+    }
+
+    public void testArchivesOfTheSameNameFromOtherSourcesAreKept() throws Exception {
+        File first = new File(directory, "first/app.war");
+        File second = new File(directory, "second/app.war");
+        first.getParentFile().mkdirs();
+        second.getParentFile().mkdirs();
+        ShrinkWrap.create(WebArchive.class).add(new StringAsset("a"), "index.html").as(ZipExporter.class)
+                .exportTo(first, true);
+        ShrinkWrap.create(WebArchive.class).add(new StringAsset("b"), "index.html").as(ZipExporter.class)
+                .exportTo(second, true);
+        Repackager repackager = new Repackager(cache, Repackager.STORED, Repackager.KEEP);
+
+        // another module deploying an archive of the same name from the same cache directory
+        File deploying = repackager.repackage(first, "app.war");
+        File other = repackager.repackage(second, "app.war");
+        assertFalse(other.equals(deploying));
+        assertTrue(deploying.isFile());
+        assertTrue(other.isFile());
+    }
+
+    public void testConcurrentRepackagingWritesOneValidArchive() throws Exception {
+        File source = new File(directory, "concurrent.war");
+        WebArchive war = ShrinkWrap.create(WebArchive.class, "concurrent.war");
+        for (int i = 0; i < 50; i++) {
+            war.addAsLibraries(ShrinkWrap.create(JavaArchive.class, "lib" + i + ".jar").add(new StringAsset(text()),
+                    "l.txt"));
+        }
+        war.as(ZipExporter.class).exportTo(source, true);
+        final File concurrentCache = new File(directory, "concurrent-cache");
+        File[] stale = concurrentCache.listFiles();
+        for (int i = 0; stale != null && i < stale.length; i++) {
+            File[] files = stale[i].listFiles();
+            for (int j = 0; files != null && j < files.length; j++) {
+                files[j].delete();
+            }
+            stale[i].delete();
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<File>> repackaged = new ArrayList<Future<File>>();
+            for (int i = 0; i < 8; i++) {
+                repackaged.add(executor.submit(new Callable<File>() {
+                    @Override
+                    public File call() throws Exception {
+                        start.await();
+                        return new Repackager(concurrentCache, Repackager.STORED, Repackager.KEEP).repackage(
+                                new File(directory, "concurrent.war"), "concurrent.war");
+                    }
+                }));
+            }
+            start.countDown();
+
+            File first = repackaged.get(0).get();
+            for (Future<File> file : repackaged) {
+                assertEquals(first, file.get());
+            }
+            assertEquals(1, concurrentCache.list().length);
+            assertEquals(Arrays.asList("concurrent.war"), Arrays.asList(first.getParentFile().list()));
+            ZipFile zip = new ZipFile(first);
+            try {
+                assertEquals(50, Collections.list(zip.entries()).size() - 2);
+                assertEquals(ZipEntry.STORED, zip.getEntry("WEB-INF/lib/lib7.jar").getMethod());
+            } finally {
+                zip.close();
+            }
+            assertEquals(Fingerprint.of(source), Fingerprint.of(first));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testLevels() {
+        assertEquals(Repackager.KEEP, Repackager.level("keep"));
+        assertEquals(Repackager.STORED, Repackager.level(" STORED "));
+        assertEquals(Deflater.DEFAULT_COMPRESSION, Repackager.level("DEFAULT"));
+        assertEquals(9, Repackager.level("9"));
+        try {
+            Repackager.level("10");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static String text() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String read(ZipFile zip, String name) throws Exception {
+        InputStream in = zip.getInputStream(zip.getEntry(name));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
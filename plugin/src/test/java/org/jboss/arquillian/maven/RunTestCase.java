@@ -17,6 +17,10 @@
  */
 package org.jboss.arquillian.maven;
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
 /**
  * @author Davide D'Alto
  */
@@ -27,4 +31,20 @@ public final class RunTestCase extends BaseCommandTestBase {
         return "run";
     }
 
+    public void testDeployedSourceIsScannedByDefault() throws Exception {
+        Run run = (Run) lookupMojo(goal(), getTestFile("src/test/resources/empty-configuration-pom.xml"));
+        setVariableValueToObject(run, "targetDir", new File("target/run-test"));
+        setVariableValueToObject(run, "filename", "app.war");
+        assertEquals(Collections.singletonList(new File("target/run-test/app.war")), run.scanTargets());
+
+        File exploded = new File("target/run-test/app");
+        setVariableValueToObject(run, "exploded", true);
+        setVariableValueToObject(run, "explodedDirectory", exploded);
+        assertEquals(Collections.singletonList(exploded), run.scanTargets());
+
+        File[] configured = { new File("target/classes") };
+        setVariableValueToObject(run, "scanTargets", configured);
+        assertEquals(Arrays.asList(configured), run.scanTargets());
+    }
+
 }
@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+/**
+ * ScannerTestCase
+ *
+ * @version $Revision: $
+ */
+public final class ScannerTestCase extends TestCase {
+
+    private File root;
+
+    @Override
+    protected void setUp() throws Exception {
+        root = new File("target/scanner-test");
+        delete(root);
+        assertTrue(root.mkdirs());
+    }
+
+    public void testNoChange() throws Exception {
+        write(new File(root, "a.txt"), "a");
+        Scanner scanner = new Scanner(Collections.singletonList(root));
+        assertFalse(scanner.scan());
+    }
+
+    public void testFileAdded() throws Exception {
+        Scanner scanner = new Scanner(Collections.singletonList(root));
+        write(new File(root, "b.txt"), "b");
+        assertTrue(scanner.scan());
+        assertFalse(scanner.scan());
+    }
+
+    public void testFileModified() throws Exception {
+        File file = new File(root, "c.txt");
+        write(file, "c");
+        Scanner scanner = new Scanner(Collections.singletonList(root));
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+        assertTrue(scanner.scan());
+    }
+
+    private static void write(File file, String content) throws Exception {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
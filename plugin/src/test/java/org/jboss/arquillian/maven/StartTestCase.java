@@ -17,14 +17,55 @@
  */
 package org.jboss.arquillian.maven;
 
+import org.jboss.arquillian.container.spi.Container;
+
 /**
  * @author Davide D'Alto
  */
 public final class StartTestCase extends BaseCommandTestBase {
 
+    private static final String EXPORTED = "arquillian.jetty.bindHttpPort";
+
     @Override
     public String goal() {
         return "start";
     }
 
+    @Override
+    protected void tearDown() throws Exception {
+        System.getProperties().remove(EXPORTED);
+        super.tearDown();
+    }
+
+    public void testConfiguredPortIsExported() throws Exception {
+        Container container = FakeManager.container("jetty");
+        container.getContainerConfiguration().property("bindHttpPort", "9595");
+
+        start(false).configurePorts(container);
+        assertEquals("9595", System.getProperty(EXPORTED));
+        assertEquals("9595", container.getContainerConfiguration().getContainerProperties().get("bindHttpPort"));
+    }
+
+    public void testAllocatedPortIsConfiguredAndExported() throws Exception {
+        Container container = FakeManager.container("jetty");
+        container.getContainerConfiguration().property("bindHttpPort", "9595");
+
+        start(true).configurePorts(container);
+        String allocated = container.getContainerConfiguration().getContainerProperties().get("bindHttpPort");
+        assertFalse("9595".equals(allocated));
+        assertEquals(allocated, System.getProperty(EXPORTED));
+    }
+
+    public void testUnconfiguredPortIsNotExported() throws Exception {
+        start(false).configurePorts(FakeManager.container("jetty"));
+        assertNull(System.getProperty(EXPORTED));
+    }
+
+    private Start start(boolean allocatePorts) throws Exception {
+        Start start = (Start) lookupMojo(goal(), getTestFile("src/test/resources/empty-configuration-pom.xml"));
+        setVariableValueToObject(start, "portProperties", new String[] { " bindHttpPort " });
+        setVariableValueToObject(start, "allocatePorts", allocatePorts);
+        return start;
+    }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.jboss.shrinkwrap.api.GenericArchive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
+/**
+ * StreamingArchiveTestCase
+ *
+ * @version $Revision: $
+ */
+public final class StreamingArchiveTestCase extends TestCase {
+
+    private final File directory = new File("target/streaming-archive-test");
+
+    private File source;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory.mkdirs();
+        source = new File(directory, "app.war");
+        ShrinkWrap.create(WebArchive.class, "app.war").add(new StringAsset("<html/>"), "index.html")
+                .as(ZipExporter.class).exportTo(source, true);
+    }
+
+    public void testZipExportStreamsTheFile() throws Exception {
+        ZipExporter exporter = StreamingArchive.from(source).as(ZipExporter.class);
+        assertTrue(exporter instanceof FileZipExporter);
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        exporter.exportTo(streamed);
+        assertTrue(Arrays.equals(read(source), streamed.toByteArray()));
+        assertTrue(Arrays.equals(read(source), read(exporter.exportAsInputStream())));
+
+        File copy = new File(directory, "copy.war");
+        exporter.exportTo(copy, true);
+        assertTrue(Arrays.equals(read(source), read(copy)));
+    }
+
+    public void testOtherCallsImportTheFile() throws Exception {
+        GenericArchive archive = StreamingArchive.from(source);
+        assertTrue(archive.contains("index.html"));
+        assertEquals(1, archive.getContent().size());
+    }
+
+    public void testNameAndEquality() throws Exception {
+        GenericArchive archive = StreamingArchive.from(source);
+        assertEquals("app.war", archive.getName());
+        assertEquals(archive, archive);
+        assertEquals(archive.hashCode(), archive.hashCode());
+        assertFalse(archive.equals(StreamingArchive.from(source)));
+    }
+
+    private static byte[] read(File file) throws Exception {
+        return read(new FileInputStream(file));
+    }
+
+    private static byte[] read(InputStream in) throws Exception {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
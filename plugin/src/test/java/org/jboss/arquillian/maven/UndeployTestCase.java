@@ -17,6 +17,12 @@
  */
 package org.jboss.arquillian.maven;
 
+import java.io.File;
+import java.util.HashMap;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
 /**
  * @author Davide D'Alto
  */
@@ -27,4 +33,24 @@ public final class UndeployTestCase extends BaseCommandTestBase {
         return "undeploy";
     }
 
+    public void testArchiveDeployedInBuildIsUndeployedWithoutFile() throws Exception {
+        Undeploy undeploy = (Undeploy) lookupMojo(goal(), getTestFile("src/test/resources/empty-configuration-pom.xml"));
+        undeploy.setPluginContext(new HashMap<Object, Object>());
+        setVariableValueToObject(undeploy, "targetDir", new File("target/undeploy-test"));
+        setVariableValueToObject(undeploy, "filename", "deleted.war");
+        try {
+            undeploy.validateInput();
+            fail("Missing file accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        undeploy.deployments().put("jetty", undeploy.source(),
+                Utils.deployment(ShrinkWrap.create(WebArchive.class, "deleted.war")));
+        undeploy.validateInput();
+        assertEquals("deleted.war", undeploy.deployments().remove("jetty", new File("target/undeploy-test/deleted.war"))
+                .getDescription().getArchive().getName());
+        assertFalse(undeploy.deployments().contains(undeploy.source()));
+    }
+
 }
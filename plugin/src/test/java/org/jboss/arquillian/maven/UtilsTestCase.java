@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.maven;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jboss.arquillian.config.descriptor.api.ArquillianDescriptor;
+import org.jboss.arquillian.container.spi.Container;
+import org.jboss.arquillian.core.api.annotation.ApplicationScoped;
+import org.jboss.shrinkwrap.descriptor.api.Descriptors;
+
+/**
+ * UtilsTestCase
+ *
+ * @version $Revision: $
+ */
+public final class UtilsTestCase extends TestCase {
+
+    private final FakeManager manager = new FakeManager("one", "two", "three");
+
+    @Override
+    protected void setUp() throws Exception {
+        ArquillianDescriptor descriptor = Descriptors.create(ArquillianDescriptor.class);
+        descriptor.group("cluster").container("two");
+        descriptor.group("cluster").container("three");
+        manager.bind(ApplicationScoped.class, ArquillianDescriptor.class, descriptor);
+    }
+
+    public void testDefaultContainerIsSelectedWithoutQualifiers() {
+        assertEquals(Arrays.asList("one"), names(Utils.selectContainers(manager, manager.registry(),
+                Collections.<String> emptyList(), null)));
+    }
+
+    public void testContainersAreSelectedByQualifier() {
+        assertEquals(Arrays.asList("three", "one"), names(Utils.selectContainers(manager, manager.registry(),
+                Arrays.asList(" three", "one "), null)));
+    }
+
+    public void testContainersOfTheGroupAreSelected() {
+        assertEquals(Arrays.asList("two", "three"), names(Utils.selectContainers(manager, manager.registry(),
+                Collections.<String> emptyList(), "cluster")));
+    }
+
+    public void testContainersOfTheGroupFollowTheQualifiedOnesOnce() {
+        assertEquals(Arrays.asList("three", "one", "two"), names(Utils.selectContainers(manager, manager.registry(),
+                Arrays.asList("three", "one"), "cluster")));
+    }
+
+    public void testUnknownQualifierIsRejected() {
+        try {
+            Utils.selectContainers(manager, manager.registry(), Arrays.asList("one", "four"), null);
+            fail("Unknown container selected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("'four'"));
+        }
+    }
+
+    public void testUnknownGroupIsRejected() {
+        try {
+            Utils.selectContainers(manager, manager.registry(), Collections.<String> emptyList(), "servers");
+            fail("Unknown group selected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("'servers'"));
+        }
+    }
+
+    private static List<String> names(List<Container> containers) {
+        String[] names = new String[containers.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = containers.get(i).getName();
+        }
+        return Arrays.asList(names);
+    }
+}
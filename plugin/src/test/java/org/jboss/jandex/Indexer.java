@@ -0,0 +1,45 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.jandex;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stand-in for the Jandex indexer, counting the classes it reads.
+ *
+ * @version $Revision: $
+ */
+public final class Indexer {
+
+    public static int indexed;
+
+    private int classes;
+
+    public void index(InputStream in) throws IOException {
+        while (in.read() != -1) {
+            // the class is read whole
+        }
+        classes++;
+        indexed++;
+    }
+
+    public Index complete() {
+        return new Index(classes);
+    }
+}
@@ -42,6 +42,9 @@ public class MySimpleServletITCase {
     }
 
     private String servletPort() throws IOException {
+        if (System.getProperty("servlet.port") != null) {
+            return System.getProperty("servlet.port");
+        }
         Properties properties = new Properties();
         properties.load(Thread.currentThread().getContextClassLoader().getResourceAsStream("test.properties"));
         return properties.getProperty("servlet.port");